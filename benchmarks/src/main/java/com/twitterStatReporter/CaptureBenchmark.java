@@ -0,0 +1,129 @@
+package com.twitterStatReporter;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * CaptureBenchmark measures what capturing the stream costs. The offer benchmark is the time the stream's thread
+ * spends handing a message to the capture backlog, the only work the capture adds to the stream's thread. Messages are
+ * offered faster than the writer can write them, so once the backlog fills the rest are dropped, which is cheaper than
+ * capturing them. Each iteration offers to a new capture with an empty backlog, and the captured and dropped counters
+ * split the offers of the iteration between the two, only an iteration with no drops is the cost of capturing every
+ * message. The append benchmark is the capture writer's
+ * throughput, gathering the messages of the mixed corpus into blocks, compressing and writing them to segments in a
+ * temporary directory, for each block size, and is the most messages per second the capture can keep up with.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CaptureBenchmark {
+
+    @Param({"64", "256", "1024"})
+    public int blockSizeKb;
+
+    // The messages captured.
+    private String[] messages;
+    private int next;
+
+    // The directory the segments are written to.
+    private Path directory;
+
+    // The writer the append benchmark writes to, and the capture of the iteration the offer benchmark hands messages
+    // to, each written to its own directory.
+    private CaptureLog.Writer writer;
+    private CaptureLog capture;
+    private int captures;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        messages = Corpus.load(Corpus.MIXED);
+        directory = Files.createTempDirectory("capture-benchmark");
+        writer = new CaptureLog.Writer(directory.resolve("append"), blockSizeKb * 1024, 64L * 1024 * 1024,
+                TimeUnit.HOURS.toMillis(1));
+        Files.createDirectories(directory.resolve("append"));
+    }
+
+    @Setup(Level.Iteration)
+    public void startCapture(){
+
+        ConfigFileReader config = new ConfigFileReader();
+        config.captureDirectory = directory.resolve("offer-" + captures++).toString();
+        config.captureBlockSize = blockSizeKb;
+        capture = CaptureLog.start(config);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeCapture() throws InterruptedException {
+        capture.close(10, TimeUnit.SECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+
+        writer.close();
+        try(Stream<Path> files = Files.walk(directory)){
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        writer.append(messages[next]);
+        next = (next + 1) % messages.length;
+    }
+
+    /**
+     * The number of messages the offers captured and dropped, reported as rates next to the benchmark.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Offered {
+
+        public long captured;
+        public long dropped;
+
+        // The capture's drop count after the last offer, the capture is only offered to by this thread.
+        private long droppedBefore;
+
+        @Setup(Level.Iteration)
+        public void reset(){
+            captured = 0;
+            dropped = 0;
+            droppedBefore = 0;
+        }
+    }
+
+    @Benchmark
+    public void offer(Offered offered){
+        capture.offer(messages[next]);
+        next = (next + 1) % messages.length;
+
+        long dropped = capture.dropped() - offered.droppedBefore;
+        offered.droppedBefore += dropped;
+        offered.dropped += dropped;
+        offered.captured += 1 - dropped;
+    }
+}
@@ -0,0 +1,84 @@
+package com.twitterStatReporter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Corpus loads the recorded sample stream payloads bundled with the benchmarks. Each payload type is stored as a
+ * NDJSON file under /corpus: deletes, statuses without entities, statuses with hashtags/urls/user mentions, and
+ * statuses with extended media. The mixed payload interleaves them in roughly the proportions seen on the sample
+ * stream.
+ */
+final class Corpus {
+
+    // The payload types that can be loaded, mixed is built from the others.
+    static final String DELETE = "delete";
+    static final String STATUS_PLAIN = "status-plain";
+    static final String STATUS_ENTITIES = "status-entities";
+    static final String STATUS_MEDIA = "status-media";
+    static final String MIXED = "mixed";
+
+    private Corpus(){
+    }
+
+    /**
+     * load returns the messages of the given payload type.
+     * @param payload - One of the payload type names.
+     * @return the raw json messages.
+     */
+    static String[] load(String payload){
+
+        if(!MIXED.equals(payload)){
+            return read(payload).toArray(new String[0]);
+        }
+
+        // Interleave 1 delete, 3 plain, 3 with entities and 1 with media out of every 8 messages.
+        List<String> deletes = read(DELETE);
+        List<String> plain = read(STATUS_PLAIN);
+        List<String> entities = read(STATUS_ENTITIES);
+        List<String> media = read(STATUS_MEDIA);
+
+        List<String> mixed = new ArrayList<>();
+        for(int i = 0; i < deletes.size(); i++){
+            mixed.add(deletes.get(i));
+            for(int j = 0; j < 3; j++){
+                mixed.add(plain.get((i * 3 + j) % plain.size()));
+                mixed.add(entities.get((i * 3 + j) % entities.size()));
+            }
+            mixed.add(media.get(i % media.size()));
+        }
+        return mixed.toArray(new String[0]);
+    }
+
+    /**
+     * read reads the lines of one of the corpus files.
+     * @param name - The payload type name.
+     * @return the lines of the file.
+     */
+    private static List<String> read(String name){
+
+        InputStream in = Corpus.class.getResourceAsStream("/corpus/" + name + ".ndjson");
+        if(in == null){
+            throw new IllegalArgumentException("Unknown corpus payload: " + name);
+        }
+
+        List<String> lines = new ArrayList<>();
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))){
+            String line;
+            while((line = reader.readLine()) != null){
+                if(!line.isBlank()){
+                    lines.add(line);
+                }
+            }
+        }catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+        return lines;
+    }
+}
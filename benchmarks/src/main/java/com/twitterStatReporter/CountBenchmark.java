@@ -0,0 +1,82 @@
+package com.twitterStatReporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CountBenchmark measures the counting functions of IntervalAggregate on tweets whose fields have already been
+ * extracted, so the cost of languageGrabber, entitiesGrabber and urlDomainParser is seen without the parsing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CountBenchmark {
+
+    @Param({Corpus.STATUS_ENTITIES, Corpus.STATUS_MEDIA})
+    public String payload;
+
+    // The extracted fields of each status in the payload.
+    private TweetFields[] tweets;
+
+    // The index of the next tweet.
+    private int next;
+
+    // Aggregate the tweets are counted into.
+    private IntervalAggregate aggregate;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        String[] messages = Corpus.load(payload);
+        TweetFieldExtractor extractor = new StreamingTweetFieldExtractor();
+        tweets = new TweetFields[messages.length];
+        for(int i = 0; i < messages.length; i++){
+            tweets[i] = new TweetFields();
+            extractor.extract(messages[i], tweets[i]);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void newReport(){
+        aggregate = new IntervalAggregate(new ConfigFileReader());
+    }
+
+    /**
+     * nextTweet cycles through the extracted tweets.
+     * @return the next tweet.
+     */
+    private TweetFields nextTweet(){
+        TweetFields tweet = tweets[next];
+        next = next + 1 == tweets.length ? 0 : next + 1;
+        return tweet;
+    }
+
+    @Benchmark
+    public void languageGrabber(){
+        aggregate.languageGrabber(nextTweet());
+    }
+
+    @Benchmark
+    public void entitiesGrabber() {
+        aggregate.entitiesGrabber(nextTweet());
+    }
+
+    @Benchmark
+    public void urlDomainParser() {
+        aggregate.urlDomainParser(nextTweet());
+    }
+}
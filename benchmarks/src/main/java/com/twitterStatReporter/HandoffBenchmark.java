@@ -0,0 +1,163 @@
+package com.twitterStatReporter;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HandoffBenchmark compares the ring buffer and queue transports for each wait strategy. The transfer group has one
+ * thread publishing messages and one thread draining them in batches the way the EventTimeWindows workers do, the
+ * messages counter is the number of messages handed over per second. The roundTrip benchmark sends a message through
+ * one handoff to an echo thread and waits for it to come back through another, sampled so the p99 handoff latency,
+ * including waking up a waiting consumer, can be read from the percentiles.
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandoffBenchmark {
+
+    /**
+     * The handoff settings shared by both benchmarks.
+     */
+    @State(Scope.Benchmark)
+    public static class Settings {
+
+        @Param({"RING", "QUEUE"})
+        public String transport;
+
+        @Param({"SLEEP", "BLOCKING"})
+        public String waitStrategy;
+
+        /**
+         * create builds a handoff with the benchmark's transport and wait strategy.
+         * @param policy - The overload policy of the handoff.
+         * @return a new handoff.
+         */
+        TweetHandoff create(TweetHandoff.Policy policy){
+            return TweetHandoff.Transport.valueOf(transport).create(4096, policy,
+                    RingBufferHandoff.WaitStrategy.valueOf(waitStrategy));
+        }
+    }
+
+    /**
+     * The handoff the transfer group publishes to and drains from. Full handoffs drop the newest message so the
+     * producer never blocks on a consumer that JMH has already stopped at the end of an iteration.
+     */
+    @State(Scope.Group)
+    public static class Transfer {
+
+        TweetHandoff handoff;
+        String[] messages;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(Settings settings){
+            handoff = settings.create(TweetHandoff.Policy.DROP_NEWEST);
+            messages = Corpus.load(Corpus.MIXED);
+        }
+    }
+
+    /**
+     * The number of messages the consumer took, reported as a rate next to the benchmark.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Delivered {
+
+        public long messages;
+
+        @Setup(Level.Iteration)
+        public void reset(){
+            messages = 0;
+        }
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void publish(Transfer transfer){
+        transfer.handoff.publish(transfer.messages[transfer.next]);
+        transfer.next = transfer.next + 1 == transfer.messages.length ? 0 : transfer.next + 1;
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void drain(Transfer transfer, Delivered delivered, Batch batch){
+        delivered.messages += transfer.handoff.drain(batch.messages);
+    }
+
+    /**
+     * The batch a consumer drains into.
+     */
+    @State(Scope.Thread)
+    public static class Batch {
+        String[] messages = new String[TweetHandoff.BATCH_SIZE];
+    }
+
+    /**
+     * A pair of handoffs and the echo thread that sends every message it receives on the first back on the second.
+     */
+    @State(Scope.Thread)
+    public static class Echo {
+
+        TweetHandoff requests;
+        TweetHandoff replies;
+        Thread echo;
+        String message;
+
+        @Setup(Level.Trial)
+        public void setUp(Settings settings){
+            requests = settings.create(TweetHandoff.Policy.BLOCK);
+            replies = settings.create(TweetHandoff.Policy.BLOCK);
+            message = Corpus.load(Corpus.STATUS_ENTITIES)[0];
+            echo = new Thread(() -> {
+                try {
+                    while(!Thread.currentThread().isInterrupted()){
+                        String request = requests.poll(100, TimeUnit.MILLISECONDS);
+                        if(request != null){
+                            replies.publish(request);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // Trial finished.
+                }
+            }, "echo");
+            echo.setDaemon(true);
+            echo.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            echo.interrupt();
+            echo.join();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String roundTrip(Echo echo) throws InterruptedException {
+        echo.requests.publish(echo.message);
+        return echo.replies.poll(1, TimeUnit.SECONDS);
+    }
+}
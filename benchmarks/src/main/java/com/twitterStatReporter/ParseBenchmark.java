@@ -0,0 +1,90 @@
+package com.twitterStatReporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ParseBenchmark measures the per tweet path of ReportGenerator for each payload type and extractor: extracting the
+ * report fields on their own, and processTweet which classifies, extracts and counts a message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"STREAMING", "DOM"})
+    public String parser;
+
+    @Param({Corpus.DELETE, Corpus.STATUS_PLAIN, Corpus.STATUS_ENTITIES, Corpus.STATUS_MEDIA, Corpus.MIXED})
+    public String payload;
+
+    // The messages of the payload, cycled through by the benchmarks.
+    private String[] messages;
+
+    // The index of the next message.
+    private int next;
+
+    // Extractor under test and the holder it fills.
+    private TweetFieldExtractor extractor;
+    private TweetFields fields;
+
+    // Report generator used for the full per tweet path.
+    private ReportGenerator reportGenerator;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        messages = Corpus.load(payload);
+        extractor = TweetFieldExtractor.Parser.valueOf(parser).create();
+        fields = new TweetFields();
+    }
+
+    @Setup(Level.Iteration)
+    public void newReport(){
+        ConfigFileReader config = new ConfigFileReader();
+        config.parser = TweetFieldExtractor.Parser.valueOf(parser);
+        reportGenerator = new ReportGenerator(new IntervalAggregate(config), null, 0, config);
+    }
+
+    /**
+     * nextMessage cycles through the payload messages.
+     * @return the next message.
+     */
+    private String nextMessage(){
+        String message = messages[next];
+        next = next + 1 == messages.length ? 0 : next + 1;
+        return message;
+    }
+
+    @Benchmark
+    public void extract(Blackhole blackhole){
+        String message = nextMessage();
+        try{
+            extractor.extract(message, fields);
+        }catch (IllegalArgumentException e){
+            // Deletes are not statuses, the failed extraction is what is being measured.
+            blackhole.consume(e);
+        }
+        blackhole.consume(fields);
+    }
+
+    @Benchmark
+    public void processTweet(){
+        reportGenerator.processTweet(nextMessage());
+    }
+}
@@ -0,0 +1,67 @@
+package com.twitterStatReporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TopKBenchmark measures ranking finding the k most common entries of an occurrences counter. The
+ * counters are filled with a zipf like distribution, a few keys are very common and most keys only appear once, at
+ * cardinalities from a quiet interval up to an hour of hashtags or user mentions. The exact counter keeps every key,
+ * the Space-Saving counter only keeps the heavy hitters with a budget of 1000 counters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TopKBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int cardinality;
+
+    @Param({"3", "100"})
+    public int k;
+
+    @Param({"exact", "spaceSaving"})
+    public String counter;
+
+    // The occurrences counter the top entries are found in.
+    private OccurrenceCounter occurrences;
+
+    // Report generator ranking is called on.
+    private ReportGenerator reportGenerator;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+
+        occurrences = counter.equals("exact") ? new StringCounter() : new SpaceSavingCounter(1000);
+        Random random = new Random(42);
+        for(int i = 0; i < cardinality; i++){
+            // Scale the rank so the most common keys are not simply the first keys inserted.
+            int rank = random.nextInt(cardinality) + 1;
+            occurrences.add("key" + i, Math.max(1, cardinality / (rank * 10)));
+        }
+
+        reportGenerator = new ReportGenerator(new IntervalAggregate(new ConfigFileReader()), null, 0,
+                new ConfigFileReader());
+    }
+
+    @Benchmark
+    public Report.Ranking ranking(){
+        return reportGenerator.ranking(occurrences, "hashtags", "Hashtag", k);
+    }
+}
@@ -0,0 +1,125 @@
+package com.twitterStatReporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * WriteReportBenchmark measures building the report of the mixed corpus, and rendering it in each report format into
+ * a reused buffer the way the ReportSink does. The write benchmark hands a batch of the reports to a ReportSink and
+ * waits for it to render, encode and write them, to a file in a temporary directory or to a terminal that discards
+ * what it is sent, so the sink's own write path is measured as well. The time is per report, including a share of
+ * starting and stopping the sink's thread for each batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteReportBenchmark {
+
+    @Param({"text", "json", "csv"})
+    public String format;
+
+    // Report generator holding the counted corpus.
+    private ReportGenerator reportGenerator;
+
+    // The report of the corpus, rendered by the format benchmark.
+    private Report report;
+
+    // Renders the report, and the buffer it is rendered into.
+    private ReportFormatter formatter;
+    private final StringBuilder text = new StringBuilder(64 * 1024);
+
+    @Setup(Level.Trial)
+    public void setUp(){
+
+        reportGenerator = new ReportGenerator(new IntervalAggregate(new ConfigFileReader()), null, 0,
+                new ConfigFileReader());
+        for(String message : Corpus.load(Corpus.MIXED)){
+            reportGenerator.processTweet(message);
+        }
+        report = reportGenerator.report(0);
+        formatter = ReportFormatter.Format.valueOf(format.toUpperCase()).create(true);
+    }
+
+    @Benchmark
+    public Report build(){
+        return reportGenerator.report(0);
+    }
+
+    @Benchmark
+    public int format(){
+        text.setLength(0);
+        formatter.format(report, text);
+        return text.length();
+    }
+
+    /**
+     * Where the write benchmark's sink writes the reports. System.out is replaced by a stream that discards what it is
+     * sent for the trial, as the sink writes to it for the terminal and says when it has written each file.
+     */
+    @State(Scope.Thread)
+    public static class Target {
+
+        // The number of reports written by each sink.
+        static final int REPORTS = 100;
+
+        @Param({"file", "terminal"})
+        public String target;
+
+        // The directory the report files are written to, and the terminal while it is replaced.
+        private Path directory;
+        private PrintStream terminal;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("write-report-benchmark");
+            terminal = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            System.setOut(terminal);
+            try(Stream<Path> files = Files.walk(directory)){
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Target.REPORTS)
+    public void write(Target target) throws InterruptedException {
+
+        boolean toFile = "file".equals(target.target);
+        ReportSink sink = ReportSink.start(ReportFormatter.Format.valueOf(format.toUpperCase()).create(toFile),
+                toFile, target.directory);
+        for(int i = 0; i < Target.REPORTS; i++){
+            sink.submit(report);
+        }
+        sink.close();
+        sink.awaitTermination(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,94 @@
+package com.twitterStatReporter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AdaptiveSampler sheds load when the reports fall behind the stream. Once the handoff the raw tweets wait in fills
+ * past the sampling threshold, only a fraction of the statuses have their fields extracted and counted, the rest are
+ * still classified and counted as statuses but skipped. The fraction is lowered each time the handoff is found past the
+ * threshold, down to the minimum rate, and raised again once the handoff has drained below half the threshold, so the
+ * rate settles where the reports keep up with the stream.
+ *
+ * Each parsed status is counted as the 1 / rate statuses it stands for at the rate it was sampled with, a
+ * Horvitz-Thompson estimator that stays unbiased while the rate changes during an interval, and the counts of a
+ * sampled report are written with a 95% Wilson score confidence interval.
+ */
+final class AdaptiveSampler {
+
+    // The factors the rate is lowered and raised by on each batch.
+    private static final double DECREASE = 0.8;
+    private static final double INCREASE = 1.05;
+
+    // The z score of a 95% confidence interval.
+    private static final double Z = 1.96;
+
+    // The fraction of the handoff's capacity that starts the sampling.
+    private final double threshold;
+
+    // The lowest fraction of statuses that are parsed.
+    private final double minRate;
+
+    // The bits of the fraction of statuses currently parsed, changed by every worker with a compare and set so no
+    // adjustment is lost.
+    private final AtomicLong rate = new AtomicLong(Double.doubleToRawLongBits(1.0));
+
+    /**
+     *
+     * @param thresholdPercent - How full the handoff can get, as a percentage of its capacity, before sampling starts.
+     * @param minRate - The lowest fraction of statuses to parse, greater than 0 and at most 1.
+     */
+    AdaptiveSampler(int thresholdPercent, double minRate){
+        this.threshold = thresholdPercent / 100.0;
+        this.minRate = minRate;
+    }
+
+    /**
+     * update adjusts the sampling rate to the depth of the handoff, called once for each batch taken from it.
+     * @param depth - The number of messages waiting in the handoff.
+     * @param capacity - The capacity of the handoff.
+     * @return the fraction of the batch's statuses to parse.
+     */
+    double update(int depth, int capacity){
+
+        double fill = (double) depth / capacity;
+        while(true){
+            long bits = rate.get();
+            double current = Double.longBitsToDouble(bits);
+            double next = current;
+            if(fill > threshold){
+                next = Math.max(minRate, current * DECREASE);
+            }else if(fill < threshold / 2 && current < 1){
+                next = Math.min(1, current * INCREASE);
+            }
+            if(next == current || rate.compareAndSet(bits, Double.doubleToRawLongBits(next))){
+                return next;
+            }
+        }
+    }
+
+    /**
+     * wilsonInterval returns the 95% Wilson score interval of a proportion measured on a sample drawn without
+     * replacement, the sample size is corrected for the fraction of the population that was sampled so the interval
+     * closes as the sample approaches the whole population.
+     * @param successes - The number of sampled items with the property.
+     * @param sampled - The number of items sampled.
+     * @param population - The number of items sampled from.
+     * @return the low and high ends of the interval of the proportion.
+     */
+    static double[] wilsonInterval(double successes, double sampled, double population){
+
+        if(sampled <= 0){
+            return new double[]{0, 1};
+        }
+        double p = Math.min(1, successes / sampled);
+        if(sampled >= population){
+            return new double[]{p, p};
+        }
+
+        double n = sampled * (population - 1) / (population - sampled);
+        double z2 = Z * Z;
+        double centre = (p + z2 / (2 * n)) / (1 + z2 / n);
+        double halfWidth = Z / (1 + z2 / n) * Math.sqrt(p * (1 - p) / n + z2 / (4 * n * n));
+        return new double[]{Math.max(0, centre - halfWidth), Math.min(1, centre + halfWidth)};
+    }
+}
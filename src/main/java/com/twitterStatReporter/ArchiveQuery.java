@@ -0,0 +1,339 @@
+package com.twitterStatReporter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * ArchiveQuery answers questions like "what were the top hashtags last Tuesday from 14:00 to 18:00" from the
+ * IntervalArchive, without the tweets. It merges the archived intervals that start in the asked for range and prints
+ * their totals, percentages and most common values as a report would.
+ *
+ * The intervals are sorted by their start, as intervals replayed from a capture may have been archived out of order,
+ * and put under a segment tree. A range is merged from the O(log n) tree nodes that cover it. A node that hasn't been
+ * worked out yet is merged straight into the result from the nodes under it, and the merge of a node is only kept
+ * once the nodes under it are kept and it holds no more than LARGEST_CACHED_NODE values, so later queries over
+ * overlapping ranges reuse it rather than merging the intervals again. Nodes near the root hold nearly every value in
+ * the archive and are never kept, and the most recently used nodes are kept up to CACHED_ENTRIES values in all, so the
+ * memory used stays bounded however large the archive grows.
+ *
+ * Usage: ArchiveQuery archiveDirectory [from to [k]]
+ * Times are ISO local date times, such as 2024-03-05T14:00, in the system time zone, or milliseconds since the epoch.
+ * With only the archive directory, the archive is summarised and queries of the form "from to [k]" are read from the
+ * terminal, one per line.
+ */
+public final class ArchiveQuery {
+
+    // The number of most common values shown when the query doesn't say.
+    private static final int DEFAULT_K = 10;
+
+    // The most counter values kept in the merged tree nodes, and the most values a single kept node may hold.
+    private static final int CACHED_ENTRIES = 1 << 20;
+    private static final int LARGEST_CACHED_NODE = CACHED_ENTRIES / 16;
+
+    // The archive being queried.
+    private final IntervalArchive.Reader archive;
+
+    // The positions in the archive of the intervals, sorted by their start, and their starts.
+    private final int[] order;
+    private final long[] starts;
+
+    // The merged intervals of the most recently used tree nodes, keyed by the range of sorted intervals they cover,
+    // and the number of counter values they hold.
+    private final LinkedHashMap<Long, ArchivedInterval> nodes = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedEntries;
+
+    /**
+     *
+     * @param archive - The archive to query.
+     */
+    ArchiveQuery(IntervalArchive.Reader archive){
+
+        this.archive = archive;
+        int size = archive.size();
+
+        // Sort the positions by start, intervals with the same start keep the order they were archived in.
+        Integer[] positions = new Integer[size];
+        for(int i = 0; i < size; i++){
+            positions[i] = i;
+        }
+        Arrays.sort(positions, Comparator.comparingLong(archive::start));
+        this.order = new int[size];
+        this.starts = new long[size];
+        for(int i = 0; i < size; i++){
+            order[i] = positions[i];
+            starts[i] = archive.start(positions[i]);
+        }
+    }
+
+    /**
+     * query merges the intervals that start in a range of time.
+     * @param from - The start of the range, in milliseconds since the epoch.
+     * @param to - The end of the range, not included, in milliseconds since the epoch.
+     * @return the merged intervals, with no intervals if none start in the range.
+     * @throws IOException - thrown if a segment of the archive is damaged.
+     */
+    ArchivedInterval query(long from, long to) throws IOException {
+
+        ArchivedInterval result = new ArchivedInterval();
+        int low = firstStartingAtOrAfter(from);
+        int high = firstStartingAtOrAfter(to);
+        if(low < high){
+            collect(0, order.length, low, high, result);
+        }
+        return result;
+    }
+
+    /**
+     * firstStartingAtOrAfter finds the first of the sorted intervals starting at or after a time.
+     * @param time - The time, in milliseconds since the epoch.
+     * @return the position of the interval in the sorted order, or the number of intervals if none do.
+     */
+    private int firstStartingAtOrAfter(long time){
+
+        int low = 0;
+        int high = starts.length;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(starts[middle] < time){
+                low = middle + 1;
+            }else{
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * collect merges the part of a tree node that lies in the query range into the result. A node wholly in the range
+     * is merged from the cache, or else from the nodes under it, and is then kept if the nodes under it were.
+     * @param nodeLow - The first sorted interval under the node.
+     * @param nodeHigh - The end of the sorted intervals under the node, not included.
+     * @param low - The first sorted interval of the query.
+     * @param high - The end of the sorted intervals of the query, not included.
+     * @param result - The interval the query is merged into.
+     * @throws IOException - thrown if a segment of the archive is damaged.
+     */
+    private void collect(int nodeLow, int nodeHigh, int low, int high, ArchivedInterval result) throws IOException {
+
+        if(high <= nodeLow || nodeHigh <= low){
+            return;
+        }
+        boolean covered = low <= nodeLow && nodeHigh <= high;
+        if(covered){
+            ArchivedInterval merged = nodes.get(key(nodeLow, nodeHigh));
+            if(merged != null){
+                result.merge(merged);
+                return;
+            }
+            if(nodeHigh - nodeLow == 1){
+                merged = archive.interval(order[nodeLow]);
+                result.merge(merged);
+                cache(nodeLow, nodeHigh, merged);
+                return;
+            }
+        }
+        int middle = (nodeLow + nodeHigh) >>> 1;
+        collect(nodeLow, middle, low, high, result);
+        collect(middle, nodeHigh, low, high, result);
+
+        // Keep the node if the nodes under it were kept and together they are small enough.
+        if(covered){
+            ArchivedInterval left = nodes.get(key(nodeLow, middle));
+            ArchivedInterval right = nodes.get(key(middle, nodeHigh));
+            if(left != null && right != null && left.entries() + right.entries() <= LARGEST_CACHED_NODE){
+                ArchivedInterval merged = new ArchivedInterval();
+                merged.merge(left);
+                merged.merge(right);
+                cache(nodeLow, nodeHigh, merged);
+            }
+        }
+    }
+
+    /**
+     * cache keeps the merged intervals of a tree node if it is small enough, dropping the least recently used nodes
+     * until the kept nodes hold no more than CACHED_ENTRIES values.
+     * @param nodeLow - The first sorted interval under the node.
+     * @param nodeHigh - The end of the sorted intervals under the node, not included.
+     * @param merged - The merged intervals, which must not be changed once kept.
+     */
+    private void cache(int nodeLow, int nodeHigh, ArchivedInterval merged){
+
+        int entries = merged.entries();
+        if(entries > LARGEST_CACHED_NODE){
+            return;
+        }
+        nodes.put(key(nodeLow, nodeHigh), merged);
+        cachedEntries += entries;
+        Iterator<ArchivedInterval> eldest = nodes.values().iterator();
+        while(cachedEntries > CACHED_ENTRIES){
+            cachedEntries -= eldest.next().entries();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * key returns the key of a tree node in the cache.
+     * @param nodeLow - The first sorted interval under the node.
+     * @param nodeHigh - The end of the sorted intervals under the node, not included.
+     * @return the key.
+     */
+    private static long key(int nodeLow, int nodeHigh){
+        return (long) nodeLow << 32 | nodeHigh;
+    }
+
+    /**
+     * print writes the totals, percentages and most common values of merged intervals to the terminal.
+     * @param merged - The merged intervals.
+     * @param k - The number of most common values to show for each field.
+     */
+    static void print(ArchivedInterval merged, int k){
+
+        StringBuilder out = new StringBuilder();
+        if(merged.intervals == 0){
+            System.out.println("No archived intervals start in that range");
+            return;
+        }
+        out.append("Intervals merged = ").append(merged.intervals).append(" (").append(time(merged.start))
+                .append(" to ").append(time(merged.end)).append(")\n");
+        if(merged.estimated){
+            out.append("Some intervals were sampled, their counts and percentages are estimates\n");
+        }
+        out.append("Total Tweets = ").append(merged.tweets).append('\n');
+        out.append("Number of actual tweets = ").append(merged.actualTweets).append('\n');
+        out.append("Number of deleted tweets = ").append(merged.deletedTweets).append('\n');
+        out.append("Number of messages that arrived after their interval was reported = ")
+                .append(merged.lateMessages).append('\n');
+        out.append("Number of unknown or unparsable messages = ").append(merged.unparsableTweets).append('\n');
+        out.append("Percentage of tweets that contain a URL = ").append(percent(merged.tweetsWithURL, merged))
+                .append('\n');
+        out.append("Percentage of tweets that contain a photo = ").append(percent(merged.tweetsWithPhoto, merged))
+                .append('\n');
+        out.append("Percentage of tweets that were retweeted = ").append(percent(merged.tweetsRetweeted, merged))
+                .append('\n');
+
+        for(int i = 0; i < ArchivedInterval.FIELDS.length; i++){
+            StringCounter counter = merged.counters[i];
+            out.append("Top ").append(k).append(' ').append(ArchivedInterval.FIELDS[i]);
+            if(merged.errorBounds[i] > 0){
+                out.append(" (counts may be over by at most ").append(merged.errorBounds[i]).append(')');
+            }
+            out.append(":\n");
+            for(int id : TopK.select(counter, k)){
+                out.append("    ").append(counter.key(id)).append(" = ").append(counter.count(id)).append('\n');
+            }
+        }
+        System.out.print(out);
+    }
+
+    /**
+     * percent formats a tally as a percentage of the actual tweets.
+     * @param tally - The tally.
+     * @param merged - The merged intervals.
+     * @return the percentage.
+     */
+    private static String percent(long tally, ArchivedInterval merged){
+        if(merged.actualTweets == 0){
+            return "0.0%";
+        }
+        return String.format("%.1f%%", tally * 100.0 / merged.actualTweets);
+    }
+
+    /**
+     * parseTime reads a time given as an ISO local date time in the system time zone or as milliseconds since
+     * the epoch.
+     * @param value - The time.
+     * @return the time, in milliseconds since the epoch.
+     * @throws DateTimeParseException - thrown if the value is not a time.
+     */
+    static long parseTime(String value){
+
+        if(!value.isEmpty() && value.chars().allMatch(Character::isDigit)){
+            return Long.parseLong(value);
+        }
+        return LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * time formats a time as an ISO local date time in the system time zone.
+     * @param millis - The time, in milliseconds since the epoch.
+     * @return the formatted time.
+     */
+    static String time(long millis){
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()).toString();
+    }
+
+    /**
+     * run runs a query given as "from to [k]" and prints its result and how long it took.
+     * @param arguments - The from and to times and optionally k.
+     */
+    private void run(String[] arguments){
+
+        try{
+            long from = parseTime(arguments[0]);
+            long to = parseTime(arguments[1]);
+            int k = arguments.length > 2 ? Integer.parseInt(arguments[2]) : DEFAULT_K;
+            long start = System.nanoTime();
+            ArchivedInterval merged = query(from, to);
+            long took = System.nanoTime() - start;
+            print(merged, k);
+            System.out.println("Query took " + String.format("%.2f", took / 1_000_000.0) + " ms");
+        }catch (DateTimeParseException | NumberFormatException e){
+            System.out.println("Unable to read the query: " + e.getMessage());
+        }catch (IOException e){
+            System.out.println("Unable to read the archive: " + e.getMessage());
+        }
+    }
+
+    /**
+     * main opens the archive and runs the query given on the command line, or the queries read from the terminal.
+     * @param args - The archive directory, then optionally the from and to times and k.
+     * @throws IOException - thrown if the archive cannot be opened.
+     */
+    public static void main(String[] args) throws IOException {
+
+        if(args.length != 1 && args.length != 3 && args.length != 4){
+            System.out.println("Usage: ArchiveQuery archiveDirectory [from to [k]]");
+            return;
+        }
+        Path directory = Paths.get(args[0]);
+        try(IntervalArchive.Reader archive = IntervalArchive.Reader.open(directory)){
+            ArchiveQuery query = new ArchiveQuery(archive);
+            if(args.length > 1){
+                query.run(Arrays.copyOfRange(args, 1, args.length));
+                return;
+            }
+
+            // Summarise the archive, then answer queries until the terminal is closed.
+            if(query.starts.length == 0){
+                System.out.println("The archive at " + directory + " holds no intervals");
+            }else{
+                System.out.println("The archive at " + directory + " holds " + query.starts.length
+                        + " intervals starting from " + time(query.starts[0]) + " to "
+                        + time(query.starts[query.starts.length - 1]));
+            }
+            System.out.println("Enter queries as: from to [k]");
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line;
+            while((line = in.readLine()) != null){
+                String[] arguments = line.trim().split("\\s+");
+                if(arguments.length == 2 || arguments.length == 3){
+                    query.run(arguments);
+                }else if(!line.isBlank()){
+                    System.out.println("Enter queries as: from to [k]");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.twitterStatReporter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ArchivedInterval is the counts of one or more intervals read back from the IntervalArchive: the tallies of the
+ * messages and tweets, and the hashtag, language, domain and user mention counters. Intervals are merged by adding
+ * them together, so the counts of any stretch of time can be built from the intervals it covers.
+ *
+ * An interval is stored as a compact binary segment. The values of every counter are written once, as a dictionary of
+ * UTF-8 strings, and each counter is then written as the dictionary index and count of each of its values. The
+ * dictionary is ordered by counter so each counter's indexes mostly run one after another, they are written as the
+ * difference from the previous index, and every number is written as a varint, so most indexes and counts take a
+ * single byte. A segment of a sampled interval holds the estimated counts over every status.
+ */
+final class ArchivedInterval {
+
+    // The version of the segment layout, written at the start of each segment.
+    private static final byte VERSION = 1;
+
+    // Set in the flags of a segment whose counts are estimated from a sample of the statuses.
+    private static final int ESTIMATED = 1;
+
+    // The number of counters held, and their names in the order they are written.
+    static final String[] FIELDS = {"Hashtag", "Language", "Domain", "User Mentions"};
+
+    // The start and end of the time covered, in milliseconds since the epoch.
+    long start;
+    long end;
+
+    // The number of intervals merged.
+    int intervals;
+
+    // Flag set when any of the merged intervals was sampled.
+    boolean estimated;
+
+    // The tallies of the intervals.
+    long tweets;
+    long actualTweets;
+    long deletedTweets;
+    long tweetsWithURL;
+    long tweetsWithPhoto;
+    long tweetsRetweeted;
+    long lateMessages;
+    long unparsableTweets;
+
+    // The hashtag, language, domain and user mention counts, and how far each counter's counts may be over.
+    final StringCounter[] counters = new StringCounter[FIELDS.length];
+    final long[] errorBounds = new long[FIELDS.length];
+
+    /**
+     * Creates an empty interval, to merge other intervals into.
+     */
+    ArchivedInterval(){
+        for(int i = 0; i < counters.length; i++){
+            counters[i] = new StringCounter();
+        }
+        this.start = Long.MAX_VALUE;
+        this.end = Long.MIN_VALUE;
+    }
+
+    /**
+     * merge adds the counts of another interval to this one.
+     * @param other - The interval to merge.
+     */
+    void merge(ArchivedInterval other){
+
+        start = Math.min(start, other.start);
+        end = Math.max(end, other.end);
+        intervals += other.intervals;
+        estimated |= other.estimated;
+        tweets += other.tweets;
+        actualTweets += other.actualTweets;
+        deletedTweets += other.deletedTweets;
+        tweetsWithURL += other.tweetsWithURL;
+        tweetsWithPhoto += other.tweetsWithPhoto;
+        tweetsRetweeted += other.tweetsRetweeted;
+        lateMessages += other.lateMessages;
+        unparsableTweets += other.unparsableTweets;
+        for(int i = 0; i < counters.length; i++){
+            counters[i].merge(other.counters[i]);
+            errorBounds[i] += other.errorBounds[i];
+        }
+    }
+
+    /**
+     * entries returns the number of values held by the counters, which is most of the memory the interval uses.
+     * @return the number of values.
+     */
+    int entries(){
+        int entries = 0;
+        for(StringCounter counter : counters){
+            entries += counter.size();
+        }
+        return entries;
+    }
+
+    /**
+     * encode writes the counts of an interval as a segment. The counts of a sampled interval are already estimates
+     * over every status.
+     * @param aggregate - The counts of the interval.
+     * @param start - The start of the interval, in milliseconds since the epoch.
+     * @param end - The end of the interval, in milliseconds since the epoch.
+     * @param out - The encoder the segment is written to.
+     */
+    static void encode(IntervalAggregate aggregate, long start, long end, Encoder out){
+
+        OccurrenceCounter[] counters = {aggregate.hashtagOccurrences, aggregate.languageOccurrences,
+                aggregate.hostnameOccurrences, aggregate.userMentionOccurrences};
+
+        out.bytes[out.length++] = VERSION;
+        out.bytes[out.length++] = (byte) (aggregate.isSampled() ? ESTIMATED : 0);
+        out.varint(start);
+        out.varint(end - start);
+        out.varint(aggregate.reportTweetCount);
+        out.varint(Math.round(aggregate.actualTweetCount));
+        out.varint(aggregate.messageHandlers[MessageType.DELETE.ordinal()].messages);
+        out.varint(Math.round(aggregate.numberOfTweetsWithURL));
+        out.varint(Math.round(aggregate.numberOfTweetsWithPhoto));
+        out.varint(Math.round(aggregate.numberOfTweetsRetweeted));
+        out.varint(aggregate.lateMessages);
+        out.varint(aggregate.messageHandlers[MessageType.UNKNOWN.ordinal()].messages + aggregate.unparsableTweets);
+
+        // Give every value with a count an index in the dictionary, counter by counter.
+        Map<String, Integer> dictionary = new HashMap<>();
+        int[][] indexes = new int[counters.length][];
+        long[][] counts = new long[counters.length][];
+        for(int i = 0; i < counters.length; i++){
+            OccurrenceCounter counter = counters[i];
+            long[] entries = new long[counter.size()];
+            int used = 0;
+            for(int id = 0; id < counter.size(); id++){
+                long count = counter.count(id);
+                if(count > 0){
+                    int index = dictionary.computeIfAbsent(counter.key(id), key -> dictionary.size());
+                    entries[used++] = (long) index << 32 | id;
+                }
+            }
+
+            // Sort the values by their index so the differences between the indexes are small.
+            Arrays.sort(entries, 0, used);
+            indexes[i] = new int[used];
+            counts[i] = new long[used];
+            for(int e = 0; e < used; e++){
+                indexes[i][e] = (int) (entries[e] >>> 32);
+                counts[i][e] = counter.count((int) entries[e]);
+            }
+        }
+
+        String[] keys = new String[dictionary.size()];
+        for(Map.Entry<String, Integer> entry : dictionary.entrySet()){
+            keys[entry.getValue()] = entry.getKey();
+        }
+        out.varint(keys.length);
+        for(String key : keys){
+            out.string(key);
+        }
+
+        for(int i = 0; i < counters.length; i++){
+            out.varint(counters[i].errorBound());
+            out.varint(indexes[i].length);
+            int previous = 0;
+            for(int e = 0; e < indexes[i].length; e++){
+                out.varint(indexes[i][e] - previous);
+                out.varint(counts[i][e]);
+                previous = indexes[i][e];
+            }
+        }
+    }
+
+    /**
+     * decode reads an interval from a segment.
+     * @param segment - The segment, from its position to its limit.
+     * @return the interval.
+     * @throws IllegalArgumentException - thrown if the segment was written by a newer version.
+     */
+    static ArchivedInterval decode(ByteBuffer segment){
+
+        byte version = segment.get();
+        if(version != VERSION){
+            throw new IllegalArgumentException("Unknown archive segment version " + version);
+        }
+        ArchivedInterval interval = new ArchivedInterval();
+        interval.intervals = 1;
+        interval.estimated = (segment.get() & ESTIMATED) != 0;
+        interval.start = varint(segment);
+        interval.end = interval.start + varint(segment);
+        interval.tweets = varint(segment);
+        interval.actualTweets = varint(segment);
+        interval.deletedTweets = varint(segment);
+        interval.tweetsWithURL = varint(segment);
+        interval.tweetsWithPhoto = varint(segment);
+        interval.tweetsRetweeted = varint(segment);
+        interval.lateMessages = varint(segment);
+        interval.unparsableTweets = varint(segment);
+
+        String[] keys = new String[(int) varint(segment)];
+        for(int i = 0; i < keys.length; i++){
+            byte[] utf8 = new byte[(int) varint(segment)];
+            segment.get(utf8);
+            keys[i] = new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        for(int i = 0; i < FIELDS.length; i++){
+            interval.errorBounds[i] = varint(segment);
+            int entries = (int) varint(segment);
+            int index = 0;
+            for(int e = 0; e < entries; e++){
+                index += (int) varint(segment);
+                interval.counters[i].add(keys[index], (int) varint(segment));
+            }
+        }
+        return interval;
+    }
+
+    /**
+     * varint reads an unsigned LEB128 varint, seven bits to a byte with the high bit set on every byte but the last.
+     * @param in - The buffer to read from.
+     * @return the number.
+     */
+    private static long varint(ByteBuffer in){
+
+        long value = 0;
+        for(int shift = 0; ; shift += 7){
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if(b >= 0){
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Encoder is a growable byte array segments are written into, reused for every segment.
+     */
+    static final class Encoder {
+
+        byte[] bytes = new byte[64 * 1024];
+        int length;
+
+        /**
+         * reset empties the encoder for the next segment.
+         */
+        void reset(){
+            length = 0;
+        }
+
+        /**
+         * varint writes an unsigned number as an LEB128 varint.
+         * @param value - The number, not negative.
+         */
+        void varint(long value){
+
+            ensure(10);
+            while((value & ~0x7fL) != 0){
+                bytes[length++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        /**
+         * string writes a string as its UTF-8 length and bytes.
+         * @param value - The string.
+         */
+        void string(String value){
+
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, length, utf8.length);
+            length += utf8.length;
+        }
+
+        /**
+         * ensure grows the array so the given number of bytes fit after the bytes already written.
+         * @param needed - The number of bytes about to be written.
+         */
+        private void ensure(int needed){
+            if(length + needed > bytes.length){
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + needed));
+            }
+        }
+    }
+}
@@ -6,7 +6,9 @@ import twitter4j.conf.ConfigurationBuilder;
 import java.util.HashMap;
 
 /**
- * AuthStreamBuilder attempts to create an authenticated stream object using the users passed credentials.
+ * AuthStreamBuilder attempts to create an authenticated stream object using the users passed credentials. The stream
+ * connects to twitter unless another stream base URL is given, such as a StubStreamServer used to load test the
+ * program.
  */
 public final class AuthStreamBuilder {
 
@@ -17,6 +19,17 @@ public final class AuthStreamBuilder {
      * @return an authenticated stream to be used to gather tweets from.
      */
     public TwitterStream authenticate(HashMap<String, String> authTokenMap){
+        return authenticate(authTokenMap, null);
+    }
+
+    /**
+     * Authenticate attempts to use the users credentials passed in the form of a hashmap to create an authenticated
+     * stream that connects to the given stream base URL.
+     * @param authTokenMap - Hashmap in the form of (Token_type, value)
+     * @param streamBaseURL - The base URL of the streaming API, ending in a slash, or null for twitter's.
+     * @return an authenticated stream to be used to gather tweets from.
+     */
+    public TwitterStream authenticate(HashMap<String, String> authTokenMap, String streamBaseURL){
 
         // Create a new Configuration Builder
         ConfigurationBuilder cb = new ConfigurationBuilder();
@@ -42,6 +55,11 @@ public final class AuthStreamBuilder {
         // Set a time out on the connection in milliseconds
         cb.setHttpConnectionTimeout(100000);
 
+        // Point the stream at another server if one was given.
+        if(streamBaseURL != null){
+            cb.setStreamBaseURL(streamBaseURL);
+        }
+
         // Create a new twitter stream using the configuration builder and return it.
         return new TwitterStreamFactory(cb.build()).getInstance();
     }
@@ -0,0 +1,562 @@
+package com.twitterStatReporter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * BatchMain writes the same reports the program writes while gathering, but over archived raw messages, such as a
+ * capture or a day of recorded stream, as fast as the cores and disks allow instead of at the pace of the stream.
+ *
+ * The input files are memory mapped and split at line boundaries into pieces of BatchSplitSize MB. The splits are
+ * counted in parallel on a fork-join pool, each split counting its messages into an aggregate for each interval its
+ * messages fall in, by their timestamp_ms, and the aggregates of the splits are merged pairwise as the tasks join.
+ * Gzip'd files, such as the segments of a CaptureLog, can't be split and are each counted as a single split. The
+ * intervals are aligned to the epoch so the result doesn't depend on how the files were split, every interval from the
+ * first to the last message is reported, numbered from 0, and the reports are written to file in the report format of
+ * the config file. Runs of more than BatchMaxGap empty intervals are skipped, so a stray timestamp far from the rest
+ * doesn't fill the reports and the archive with empty intervals. When an ArchiveDirectory is set the intervals are
+ * also appended to the interval archive.
+ *
+ * Usage: BatchMain file or directory...
+ * The interval length and the report options are read from twitter.config, the files of a directory are read in name
+ * order.
+ */
+public class BatchMain {
+
+    // The aggregate key of the messages of a split without a timestamp that came before any message with one.
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    // The size of the reads used to find the end of the line a split ends in.
+    private static final int SCAN_SIZE = 64 * 1024;
+
+    /**
+     * main counts the messages of the given files and directories and writes a report for each interval.
+     * @param args - The files and directories to analyse.
+     * @throws IOException - thrown if the config file or the input files cannot be read.
+     * @throws InterruptedException - thrown if interrupted while waiting for the reports to be written.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        if(args.length == 0){
+            System.out.println("Usage: BatchMain file or directory...");
+            return;
+        }
+
+        // Load the config file, its defaults are used when there is no config file to load.
+        ConfigFileReader config = new ConfigFileReader();
+        if(new File("twitter.config").exists()){
+            config.loadConfig();
+        }
+        if(config.intervalRunTime < 1){
+            System.out.println("Set IntervalRunTime in twitter.config to the length of the intervals to report, in "
+                    + "seconds");
+            return;
+        }
+        int windowLength = config.windowLength > 0 ? config.windowLength : config.intervalRunTime;
+        if(windowLength < config.intervalRunTime || windowLength % config.intervalRunTime != 0){
+            System.out.println("WindowLength must be a multiple of the interval run time: " + windowLength);
+            return;
+        }
+
+        List<Path> files = new ArrayList<>();
+        for(String arg : args){
+            Path path = Paths.get(arg);
+            if(Files.isDirectory(path)){
+                try(Stream<Path> listing = Files.list(path)){
+                    files.addAll(listing.filter(Files::isRegularFile).sorted().collect(Collectors.toList()));
+                }
+            }else{
+                files.add(path);
+            }
+        }
+
+        long started = System.nanoTime();
+        List<Split> splits = split(files, config.batchSplitSize * 1024L * 1024L);
+        int threads = config.batchThreads > 0 ? config.batchThreads : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Counted counted;
+        try{
+            counted = splits.isEmpty() ? new Counted() : pool.invoke(new CountTask(splits, 0, splits.size(), config));
+        }finally {
+            pool.shutdown();
+        }
+
+        double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+        System.out.println("Counted " + counted.messages + " messages ("
+                + String.format("%.1f", counted.bytes / 1048576.0) + " MB) from " + files.size() + " files in "
+                + splits.size() + " splits on " + threads + " threads in " + String.format("%.2f", seconds)
+                + " seconds (" + String.format("%.0f", counted.messages / Math.max(seconds, 0.001)) + " messages/sec, "
+                + String.format("%.1f", counted.bytes / 1048576.0 / Math.max(seconds, 0.001)) + " MB/sec)");
+
+        report(counted.intervals, config, windowLength);
+    }
+
+    /**
+     * report writes a report for every interval from the first to the last, archives the intervals if an archive
+     * directory is set and saves their sketches if a sketch directory is set. Runs of more than BatchMaxGap intervals
+     * without messages, such as before a message with a stray timestamp, are skipped rather than reported.
+     * @param intervals - The aggregate of each interval, keyed by the interval's number since the epoch.
+     * @param config - The loaded config file, used for the report options.
+     * @param windowLength - The length of the window each report covers, in seconds.
+     * @throws InterruptedException - thrown if interrupted while waiting for the reports to be written.
+     */
+    private static void report(Map<Long, IntervalAggregate> intervals, ConfigFileReader config, int windowLength)
+            throws InterruptedException {
+
+        // Messages without a timestamp in a split without any are counted in the first interval.
+        TreeMap<Long, IntervalAggregate> sorted = new TreeMap<>(intervals);
+        intervals.clear();
+        IntervalAggregate undated = sorted.remove(NO_TIMESTAMP);
+        if(sorted.isEmpty()){
+            if(undated == null){
+                System.out.println("No messages to report");
+                return;
+            }
+            sorted.put(0L, undated);
+        }else if(undated != null){
+            sorted.firstEntry().getValue().merge(undated);
+        }
+        long intervalMillis = TimeUnit.SECONDS.toMillis(config.intervalRunTime);
+
+        IntervalArchive archive = null;
+        if(config.archiveDirectory != null){
+            try{
+                archive = IntervalArchive.open(Paths.get(config.archiveDirectory));
+            }catch (IOException e){
+                System.out.println("Unable to open the interval archive " + config.archiveDirectory + ", intervals "
+                        + "will not be archived: " + e.getMessage());
+            }
+        }
+        int panesPerWindow = windowLength / config.intervalRunTime;
+        SlidingWindow slidingWindow = panesPerWindow > 1 ? new SlidingWindow(panesPerWindow, config) : null;
+
+        // The track count of the last limit notice, carried from each interval into the next.
+        long limitTrack = 0;
+
+        ReportSink sink = ReportSink.start(config, 2);
+        int reportNumber = 0;
+        long interval = sorted.firstKey();
+        while(!sorted.isEmpty()){
+            IntervalAggregate pane = sorted.remove(interval);
+            if(pane == null){
+                long next = sorted.firstKey();
+                if(next - interval > config.batchMaxGap){
+                    System.out.println("Skipped " + (next - interval) + " intervals without messages from "
+                            + Instant.ofEpochMilli(interval * intervalMillis) + " to "
+                            + Instant.ofEpochMilli(next * intervalMillis));
+
+                    // Slide the window past the gap so the reports after it don't cover the messages before it.
+                    for(long i = 0; slidingWindow != null && i < Math.min(next - interval, panesPerWindow); i++){
+                        slidingWindow.slide(new IntervalAggregate(config));
+                    }
+                    interval = next;
+                    continue;
+                }
+                pane = new IntervalAggregate(config);
+            }
+            limitTrack = pane.settleLimitNotices(limitTrack);
+            if(archive != null){
+                try{
+                    archive.append(pane, interval * intervalMillis, (interval + 1) * intervalMillis);
+                }catch (IOException e){
+                    System.out.println("Unable to archive interval " + reportNumber + ": " + e.getMessage());
+                }
+            }
+            IntervalAggregate report = slidingWindow == null ? pane : slidingWindow.slide(pane);
+            sink.submit(new ReportGenerator(report, null, reportNumber++, config).report(0));
+            pane.saveSketches(config.sketchDirectory, interval * intervalMillis);
+            interval++;
+        }
+        sink.close();
+        sink.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+        if(archive != null){
+            try{
+                archive.close();
+            }catch (IOException e){
+                System.out.println("Unable to close the interval archive: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * split divides the files into splits of about the split size, each ending at the end of a line. Gzip'd files
+     * are a single split.
+     * @param files - The files to split.
+     * @param splitSize - The size of a split, in bytes.
+     * @return the splits, in file order.
+     * @throws IOException - thrown if a file cannot be read.
+     */
+    static List<Split> split(List<Path> files, long splitSize) throws IOException {
+
+        List<Split> splits = new ArrayList<>();
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+        for(Path file : files){
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+                long size = channel.size();
+                if(size == 0){
+                    continue;
+                }
+                scan.clear().limit(2);
+                channel.read(scan, 0);
+                if(scan.position() == 2 && scan.get(0) == 0x1f && scan.get(1) == (byte) 0x8b){
+                    splits.add(new Split(file, 0, size, true));
+                    continue;
+                }
+
+                long start = 0;
+                while(start < size){
+                    long end = start + splitSize >= size ? size : lineEnd(channel, start + splitSize, size, scan);
+                    splits.add(new Split(file, start, end, false));
+                    start = end;
+                }
+            }
+        }
+        return splits;
+    }
+
+    /**
+     * lineEnd finds the end of the line a position is in, just past its newline.
+     * @param channel - The file.
+     * @param position - The position.
+     * @param size - The size of the file.
+     * @param scan - The buffer the file is read into.
+     * @return the position after the newline, or the size of the file if the line is the last.
+     * @throws IOException - thrown if the file cannot be read.
+     */
+    private static long lineEnd(FileChannel channel, long position, long size, ByteBuffer scan) throws IOException {
+
+        while(position < size){
+            scan.clear();
+            int read = channel.read(scan, position);
+            if(read <= 0){
+                break;
+            }
+            for(int i = 0; i < read; i++){
+                if(scan.get(i) == '\n'){
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Split is a piece of an input file made of whole lines.
+     */
+    static final class Split {
+
+        final Path file;
+        final long start;
+        final long end;
+
+        // Flag set when the file is gzip'd, the split is then the whole file.
+        final boolean compressed;
+
+        /**
+         *
+         * @param file - The file.
+         * @param start - The position of the first byte of the split.
+         * @param end - The position after the last byte of the split.
+         * @param compressed - Flag set when the file is gzip'd.
+         */
+        Split(Path file, long start, long end, boolean compressed){
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.compressed = compressed;
+        }
+    }
+
+    /**
+     * Counted is the aggregates of the intervals of one or more splits, and the number of messages and bytes they
+     * hold.
+     */
+    static final class Counted {
+
+        final Map<Long, IntervalAggregate> intervals = new HashMap<>();
+        long messages;
+        long bytes;
+
+        /**
+         * merge adds the counts of other splits to these, merging the aggregates of the intervals both have.
+         * @param other - The counts of the other splits, no longer used once merged.
+         */
+        void merge(Counted other){
+
+            for(Map.Entry<Long, IntervalAggregate> entry : other.intervals.entrySet()){
+                IntervalAggregate aggregate = intervals.putIfAbsent(entry.getKey(), entry.getValue());
+                if(aggregate != null){
+                    aggregate.merge(entry.getValue());
+                }
+            }
+            messages += other.messages;
+            bytes += other.bytes;
+        }
+    }
+
+    /**
+     * CountTask counts a range of splits, forking to count the two halves of the range in parallel and merging their
+     * counts.
+     */
+    static final class CountTask extends RecursiveTask<Counted> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Split> splits;
+        private final int from;
+        private final int to;
+        private final ConfigFileReader config;
+
+        /**
+         *
+         * @param splits - The splits.
+         * @param from - The first split of the range.
+         * @param to - The end of the range, not included.
+         * @param config - The loaded config file, used to create the aggregates.
+         */
+        CountTask(List<Split> splits, int from, int to, ConfigFileReader config){
+            this.splits = splits;
+            this.from = from;
+            this.to = to;
+            this.config = config;
+        }
+
+        @Override
+        protected Counted compute() {
+
+            if(to - from == 1){
+                SplitCounter counter = new SplitCounter(config);
+                try{
+                    counter.count(splits.get(from));
+                }catch (IOException e){
+                    System.out.println("Unable to read " + splits.get(from).file + ": " + e.getMessage());
+                }
+                return counter.finish();
+            }
+
+            int middle = (from + to) >>> 1;
+            CountTask right = new CountTask(splits, middle, to, config);
+            right.fork();
+            Counted counted = new CountTask(splits, from, middle, config).compute();
+            counted.merge(right.join());
+            return counted;
+        }
+    }
+
+    /**
+     * SplitCounter counts the messages of a split into the aggregate of the interval of each message. Messages
+     * without a timestamp are counted in the interval of the message before them, or of the first message after them
+     * with a timestamp if they start the split.
+     */
+    static final class SplitCounter {
+
+        private final ConfigFileReader config;
+        private final long intervalMillis;
+        private final Counted counted = new Counted();
+
+        // The timestamp of the message before, -1 before the first message with one.
+        private long previous = -1;
+
+        // The messages without a timestamp seen before the first message with one.
+        private final List<String> undated = new ArrayList<>();
+
+        // The bytes of the line being read, grown to fit the longest line, and the view of the mapped split they are
+        // copied from.
+        private byte[] line = new byte[16 * 1024];
+        private ByteBuffer view;
+
+        /**
+         *
+         * @param config - The loaded config file, used for the interval length and to create the aggregates.
+         */
+        SplitCounter(ConfigFileReader config){
+            this.config = config;
+            this.intervalMillis = TimeUnit.SECONDS.toMillis(config.intervalRunTime);
+        }
+
+        /**
+         * count counts the messages of a split, mapping it into memory unless it is gzip'd.
+         * @param split - The split.
+         * @throws IOException - thrown if the split cannot be read.
+         */
+        void count(Split split) throws IOException {
+
+            if(split.compressed){
+                // The decompressed bytes are counted as they are read, the same bytes a mapped split counts.
+                try(CountingInputStream in = new CountingInputStream(new GZIPInputStream(new BufferedInputStream(
+                        Files.newInputStream(split.file), 1 << 16), 1 << 16));
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8),
+                            1 << 16)){
+                    String message;
+                    while((message = reader.readLine()) != null){
+                        message(message);
+                    }
+                    counted.bytes += in.bytes;
+                }
+                return;
+            }
+
+            MappedByteBuffer buffer;
+            try(FileChannel channel = FileChannel.open(split.file, StandardOpenOption.READ)){
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, split.start, split.end - split.start);
+            }
+            counted.bytes += buffer.capacity();
+            view = buffer.duplicate();
+            int lineStart = 0;
+            int limit = buffer.limit();
+            for(int i = 0; i < limit; i++){
+                if(buffer.get(i) == '\n'){
+                    line(buffer, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            if(lineStart < limit){
+                line(buffer, lineStart, limit);
+            }
+        }
+
+        /**
+         * line decodes a line of the mapped split and counts it.
+         * @param buffer - The mapped split.
+         * @param start - The position of the line.
+         * @param end - The position of its newline, or of the end of the split.
+         */
+        private void line(MappedByteBuffer buffer, int start, int end){
+
+            if(end > start && buffer.get(end - 1) == '\r'){
+                end--;
+            }
+            int length = end - start;
+            if(length > line.length){
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            view.position(start);
+            view.get(line, 0, length);
+            message(new String(line, 0, length, StandardCharsets.UTF_8));
+        }
+
+        /**
+         * message counts a message in the aggregate of its interval, skipping the keep alive blank lines.
+         * @param message - The raw message.
+         */
+        private void message(String message){
+
+            if(message.isBlank()){
+                return;
+            }
+            long timestamp = MessageClassifier.timestampMs(message);
+            if(timestamp < 0){
+                if(previous < 0){
+                    undated.add(message);
+                    return;
+                }
+                timestamp = previous;
+            }else if(previous < 0){
+                for(String earlier : undated){
+                    aggregate(timestamp).processTweet(earlier);
+                    counted.messages++;
+                }
+                undated.clear();
+            }
+            previous = timestamp;
+            aggregate(timestamp).processTweet(message);
+            counted.messages++;
+        }
+
+        /**
+         * aggregate returns the aggregate of the interval a timestamp falls in, creating it the first time.
+         * @param timestamp - The timestamp, in milliseconds since the epoch.
+         * @return the aggregate.
+         */
+        private IntervalAggregate aggregate(long timestamp){
+            return counted.intervals.computeIfAbsent(Math.floorDiv(timestamp, intervalMillis),
+                    interval -> new IntervalAggregate(config));
+        }
+
+        /**
+         * finish counts the messages of a split without any timestamp and returns the counts of the split.
+         * @return the counts of the split.
+         */
+        Counted finish(){
+
+            if(!undated.isEmpty()){
+                IntervalAggregate aggregate = new IntervalAggregate(config);
+                for(String message : undated){
+                    aggregate.processTweet(message);
+                    counted.messages++;
+                }
+                counted.intervals.put(NO_TIMESTAMP, aggregate);
+            }
+            return counted;
+        }
+    }
+
+    /**
+     * CountingInputStream counts the bytes read through it.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        // The number of bytes read.
+        long bytes;
+
+        /**
+         *
+         * @param in - The stream to count the bytes of.
+         */
+        CountingInputStream(InputStream in){
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if(b >= 0){
+                bytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if(read > 0){
+                bytes += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            bytes += skipped;
+            return skipped;
+        }
+    }
+}
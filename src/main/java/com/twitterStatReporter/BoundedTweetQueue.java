@@ -0,0 +1,103 @@
+package com.twitterStatReporter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BoundedTweetQueue is the lock based TweetHandoff, a fixed capacity ArrayBlockingQueue of raw messages with an
+ * overload policy. Producers add messages with publish, which applies the policy once the queue is full instead of
+ * letting the queue grow until the JVM runs out of memory when the reports fall behind. It is kept as a fallback for
+ * the RingBufferHandoff.
+ */
+public class BoundedTweetQueue extends ArrayBlockingQueue<String> implements TweetHandoff {
+
+    private static final long serialVersionUID = 1L;
+
+    // The maximum number of messages held in the queue.
+    private final int capacity;
+
+    // The policy used when the queue is full.
+    private final Policy policy;
+
+    // The number of messages dropped by the policy.
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     *
+     * @param capacity - The maximum number of messages held in the queue.
+     * @param policy - The policy used when a message is published to a full queue.
+     */
+    public BoundedTweetQueue(int capacity, Policy policy){
+        super(capacity);
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    @Override
+    public void publish(String message){
+
+        switch (policy){
+            case BLOCK:
+                // Try without waiting first so a producer that is shutting down still hands over what fits.
+                try {
+                    if(!offer(message)){
+                        put(message);
+                    }
+                } catch (InterruptedException e) {
+                    // The producer is shutting down, the message is lost.
+                    dropped.incrementAndGet();
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            case DROP_NEWEST:
+                if(!offer(message)){
+                    dropped.incrementAndGet();
+                }
+                break;
+            case DROP_OLDEST:
+                while(!offer(message)){
+                    if(poll() != null){
+                        dropped.incrementAndGet();
+                    }
+                }
+                break;
+            case SAMPLE:
+                int half = capacity / 2;
+                int depth = size();
+                if(depth > half && ThreadLocalRandom.current().nextInt(capacity - half) >= capacity - depth){
+                    dropped.incrementAndGet();
+                }else if(!offer(message)){
+                    dropped.incrementAndGet();
+                }
+                break;
+        }
+    }
+
+    @Override
+    public int drain(String[] batch){
+
+        // Each poll takes the queue's lock, the lock free ring buffer claims the whole batch at once.
+        int taken = 0;
+        String message;
+        while(taken < batch.length && (message = poll()) != null){
+            batch[taken++] = message;
+        }
+        return taken;
+    }
+
+    @Override
+    public long dropped(){
+        return dropped.get();
+    }
+
+    @Override
+    public Policy policy(){
+        return policy;
+    }
+
+    @Override
+    public int capacity(){
+        return capacity;
+    }
+}
@@ -0,0 +1,439 @@
+package com.twitterStatReporter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * CaptureLog records the raw messages of the sample stream to disk so they can be audited or replayed through a later
+ * version of the reports. The stream's thread only offers each message to a bounded backlog, which never blocks and
+ * drops the message if the backlog is full, and the messages are written by the capture's own thread so a slow disk
+ * never holds up the stream.
+ *
+ * The capture is split into segment files, a new segment is started once the current one reaches the segment size or
+ * has been open for the segment time. The messages are gathered into blocks in a direct buffer, one message per line,
+ * and each block is compressed as its own gzip member. A segment is a run of gzip members, which gzip and the
+ * ReplayTweetSource read as a single NDJSON capture, and segments can be joined with cat to replay a longer stretch.
+ * Each segment has an index file alongside it holding, for every block, the timestamp of its first message and where
+ * the block starts in the segment, so the messages from a point in time can be found by decompressing from the
+ * nearest block rather than from the start of the segment.
+ */
+final class CaptureLog {
+
+    // The names of the segment and index files are "capture-" followed by the UTC time the segment was started.
+    static final String SEGMENT_SUFFIX = ".ndjson.gz";
+    static final String INDEX_SUFFIX = ".idx";
+    private static final DateTimeFormatter SEGMENT_NAME = DateTimeFormatter.ofPattern("'capture-'yyyyMMdd-HHmmss-SSS")
+            .withZone(ZoneOffset.UTC);
+
+    // The longest time a message waits in a block before the block is written.
+    private static final long FLUSH_MILLIS = 1000;
+
+    // Metrics of the capture.
+    private static final LongAdder CAPTURED = Metrics.counter("twitterstats_capture_messages_total",
+            "Raw messages written to the capture.");
+    private static final LongAdder CAPTURED_BYTES = Metrics.counter("twitterstats_capture_bytes_total",
+            "Compressed bytes written to the capture.");
+    private static final LatencyHistogram BLOCK_TIME = Metrics.histogram("twitterstats_capture_block_seconds",
+            "Time to compress and write a block of the capture.");
+
+    // The messages waiting to be written.
+    private final TweetHandoff backlog;
+
+    // Writes the blocks and segments, only used by the writer thread.
+    private final Writer log;
+
+    // The thread the messages are written on.
+    private final Thread writer;
+
+    // Set when the capture should write the messages waiting and stop, and when it has stopped capturing.
+    private volatile boolean closing;
+    private volatile boolean stopped;
+
+    /**
+     *
+     * @param backlog - The messages waiting to be written.
+     * @param log - Writes the blocks and segments.
+     */
+    private CaptureLog(TweetHandoff backlog, Writer log){
+
+        this.backlog = backlog;
+        this.log = log;
+        this.writer = WorkerThreads.namedThreads("capture-writer").newThread(this::run);
+    }
+
+    /**
+     * start creates the capture in the config file and starts its writer thread. The stream runs without being
+     * captured if the capture directory can't be created.
+     * @param config - The loaded config file, used for the capture directory, backlog, block and segment sizes.
+     * @return the capture, to offer the messages to and close once the stream stops, or null if there isn't one.
+     */
+    static CaptureLog start(ConfigFileReader config){
+
+        if(config.captureDirectory == null){
+            return null;
+        }
+        Path directory = Paths.get(config.captureDirectory);
+        try{
+            Files.createDirectories(directory);
+        }catch (IOException e){
+            System.out.println("Unable to create the capture directory " + directory + ", the stream will not be "
+                    + "captured: " + e.getMessage());
+            return null;
+        }
+
+        // The backlog drops the newest message when full so the stream's thread never waits for the disk.
+        TweetHandoff backlog = config.handoff.create(config.captureBacklog, TweetHandoff.Policy.DROP_NEWEST,
+                config.waitStrategy);
+        Metrics.counter("twitterstats_capture_dropped_total", "Raw messages dropped because the capture backlog "
+                + "was full.", backlog::dropped);
+        Metrics.gauge("twitterstats_capture_backlog", "Raw messages waiting to be written to the capture.",
+                backlog::size);
+
+        CaptureLog capture = new CaptureLog(backlog, new Writer(directory, config.captureBlockSize * 1024,
+                config.captureSegmentSize * 1024L * 1024L, TimeUnit.MINUTES.toMillis(config.captureSegmentMinutes)));
+        capture.writer.start();
+        return capture;
+    }
+
+    /**
+     * offer hands a raw message over to be captured, dropping it if the backlog is full. Only one thread may offer
+     * messages.
+     * @param message - The raw message.
+     */
+    void offer(String message){
+        if(!stopped){
+            backlog.publish(message);
+        }
+    }
+
+    /**
+     * dropped returns the number of messages dropped because the backlog was full.
+     * @return the number of messages dropped since the capture started.
+     */
+    long dropped(){
+        return backlog.dropped();
+    }
+
+    /**
+     * close writes the messages waiting in the backlog, closes the last segment and stops the writer thread, waiting
+     * up to the timeout for it to finish.
+     * @param timeout - The most time to wait.
+     * @param unit - The unit of the timeout.
+     * @throws InterruptedException - thrown if interrupted while waiting.
+     */
+    void close(long timeout, TimeUnit unit) throws InterruptedException {
+        closing = true;
+        writer.join(Math.max(1, unit.toMillis(timeout)));
+    }
+
+    /**
+     * run writes the messages in batches until the capture is closed and the backlog is empty. A block is written
+     * once it is full or its first message has waited the flush time.
+     */
+    private void run(){
+
+        String[] batch = new String[TweetHandoff.BATCH_SIZE];
+        try{
+            while(true){
+                String message = backlog.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+                if(message == null){
+                    if(closing){
+                        break;
+                    }
+                }else{
+                    log.append(message);
+                    int taken = backlog.drain(batch);
+                    for(int i = 0; i < taken; i++){
+                        log.append(batch[i]);
+                        batch[i] = null;
+                    }
+                    CAPTURED.add(taken + 1);
+                }
+                log.flushIfOlderThan(FLUSH_MILLIS);
+            }
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }catch (IOException e){
+            System.out.println("Unable to write the capture, the stream is no longer captured: " + e.getMessage());
+        }finally {
+            stopped = true;
+            try{
+                log.close();
+            }catch (IOException e){
+                System.out.println("Unable to close the capture: " + e.getMessage());
+            }
+        }
+
+        System.out.println("Captured " + log.messages + " messages to " + log.segments + " segments in "
+                + log.directory + " (" + String.format("%.1f", log.rawBytes / 1048576.0) + " MB compressed to "
+                + String.format("%.1f", log.compressedBytes / 1048576.0) + " MB, " + dropped()
+                + " dropped)");
+    }
+
+    /**
+     * Writer gathers messages into blocks, compresses each block as a gzip member and writes it to the current segment
+     * along with its index entry, starting a new segment when the current one is full or old enough. The block and
+     * the compressed block are held in direct buffers reused for every block.
+     */
+    static final class Writer {
+
+        // The gzip member header: the magic number, deflate, no flags, no modification time and an unknown OS.
+        private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+        // The size of an index entry: the timestamp of the block's first message and the offset of the block.
+        private static final int INDEX_ENTRY_SIZE = 16;
+
+        // The directory the segments are written to.
+        final Path directory;
+
+        // The largest segment, in bytes, and the longest time a segment is open, in milliseconds.
+        private final long segmentSize;
+        private final long segmentMillis;
+
+        // The block of messages being gathered and the compressed block being written.
+        private final ByteBuffer block;
+        private final ByteBuffer compressed;
+        private final ByteBuffer indexEntry = ByteBuffer.allocateDirect(INDEX_ENTRY_SIZE);
+
+        // Encodes the messages into the block, compresses the block and checksums it.
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        private final CRC32 crc = new CRC32();
+
+        // The timestamp of the block's first message, -1 before a message is added, and the wall clock time the
+        // block was started at.
+        private long blockTimestamp = -1;
+        private long blockStarted;
+
+        // Flag set when the block starts with the rest of a message too large for the previous block, such a block
+        // gets no index entry as its first line is not a whole message.
+        private boolean continued;
+
+        // The current segment and its index, null before the first block, with the segment's size and start time.
+        private FileChannel segment;
+        private FileChannel index;
+        private long segmentBytes;
+        private long segmentStarted;
+
+        // The totals of the capture.
+        long messages;
+        long segments;
+        long rawBytes;
+        long compressedBytes;
+
+        /**
+         *
+         * @param directory - The directory the segments are written to.
+         * @param blockSize - The size of a block before compression, in bytes.
+         * @param segmentSize - The largest segment, in bytes.
+         * @param segmentMillis - The longest time a segment is open, in milliseconds.
+         */
+        Writer(Path directory, int blockSize, long segmentSize, long segmentMillis){
+
+            this.directory = directory;
+            this.segmentSize = segmentSize;
+            this.segmentMillis = segmentMillis;
+            this.block = ByteBuffer.allocateDirect(blockSize);
+
+            // Deflate can grow incompressible data by a few bytes a block, the header and trailer are added to that.
+            this.compressed = ByteBuffer.allocateDirect(blockSize + blockSize / 1000 + 64);
+        }
+
+        /**
+         * append adds a message to the block as a line, writing the block first if the message may not fit. A
+         * message larger than a block is split across blocks.
+         * @param message - The raw message.
+         * @throws IOException - thrown if a block cannot be written.
+         */
+        void append(String message) throws IOException {
+
+            // A UTF-8 char takes at most three bytes, chars outside the BMP take four for their two chars.
+            if(block.position() > 0 && block.remaining() < message.length() * 3 + 1){
+                flush();
+            }
+            if(block.position() == 0){
+                blockStarted = System.currentTimeMillis();
+            }
+            if(blockTimestamp < 0){
+                long timestamp = MessageClassifier.timestampMs(message);
+                blockTimestamp = timestamp >= 0 ? timestamp : System.currentTimeMillis();
+            }
+
+            CharBuffer chars = CharBuffer.wrap(message);
+            encoder.reset();
+            while(encoder.encode(chars, block, true).isOverflow()){
+                flush();
+                continued = true;
+            }
+            while(encoder.flush(block).isOverflow()){
+                flush();
+                continued = true;
+            }
+            if(!block.hasRemaining()){
+                flush();
+                continued = true;
+            }
+            block.put((byte) '\n');
+            messages++;
+        }
+
+        /**
+         * flushIfOlderThan writes the block if its first message has waited at least the given time.
+         * @param millis - The longest time a message waits in a block.
+         * @throws IOException - thrown if the block cannot be written.
+         */
+        void flushIfOlderThan(long millis) throws IOException {
+            if(block.position() > 0 && System.currentTimeMillis() - blockStarted >= millis){
+                flush();
+            }
+        }
+
+        /**
+         * flush compresses the block as a gzip member and writes it to the segment, with an index entry if a message
+         * starts in it. A new segment is started first if the current one is full or old enough, unless the block
+         * continues a message from the block before.
+         * @throws IOException - thrown if the block cannot be written.
+         */
+        void flush() throws IOException {
+
+            if(block.position() == 0){
+                return;
+            }
+            long start = System.nanoTime();
+
+            // A block that continues a message stays in the segment the message started in, so every segment holds
+            // whole lines.
+            if(segment == null || !continued && (segmentBytes >= segmentSize
+                    || System.currentTimeMillis() - segmentStarted >= segmentMillis)){
+                rotate();
+            }
+
+            block.flip();
+            int length = block.remaining();
+            crc.reset();
+            crc.update(block.duplicate());
+            deflater.reset();
+            deflater.setInput(block);
+            deflater.finish();
+
+            compressed.clear();
+            compressed.put(GZIP_HEADER);
+            long written = 0;
+            while(!deflater.finished()){
+                deflater.deflate(compressed);
+                if(!compressed.hasRemaining()){
+                    written += drain();
+                }
+            }
+            if(compressed.remaining() < 8){
+                written += drain();
+            }
+            compressed.order(ByteOrder.LITTLE_ENDIAN).putInt((int) crc.getValue()).putInt(length)
+                    .order(ByteOrder.BIG_ENDIAN);
+            written += drain();
+
+            if(!continued){
+                indexEntry.clear();
+                indexEntry.putLong(blockTimestamp).putLong(segmentBytes).flip();
+                while(indexEntry.hasRemaining()){
+                    index.write(indexEntry);
+                }
+            }
+
+            segmentBytes += written;
+            rawBytes += length;
+            compressedBytes += written;
+            CAPTURED_BYTES.add(written);
+            block.clear();
+            blockTimestamp = -1;
+            blockStarted = System.currentTimeMillis();
+            continued = false;
+            BLOCK_TIME.record(System.nanoTime() - start);
+        }
+
+        /**
+         * drain writes the compressed bytes so far to the segment.
+         * @return the number of bytes written.
+         * @throws IOException - thrown if the segment cannot be written.
+         */
+        private int drain() throws IOException {
+
+            compressed.flip();
+            int written = compressed.remaining();
+            while(compressed.hasRemaining()){
+                segment.write(compressed);
+            }
+            compressed.clear();
+            return written;
+        }
+
+        /**
+         * rotate closes the current segment and starts a new one.
+         * @throws IOException - thrown if the new segment cannot be created.
+         */
+        private void rotate() throws IOException {
+
+            closeSegment();
+
+            // Segments are named by the millisecond they start in, so no two may start in the same one.
+            segmentStarted = segments == 0 ? System.currentTimeMillis()
+                    : Math.max(System.currentTimeMillis(), segmentStarted + 1);
+            String name = SEGMENT_NAME.format(Instant.ofEpochMilli(segmentStarted));
+            segment = FileChannel.open(directory.resolve(name + SEGMENT_SUFFIX), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            index = FileChannel.open(directory.resolve(name + INDEX_SUFFIX), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            segmentBytes = 0;
+            segments++;
+        }
+
+        /**
+         * closeSegment closes the current segment and its index, if there is one.
+         * @throws IOException - thrown if the segment cannot be closed.
+         */
+        private void closeSegment() throws IOException {
+
+            if(segment == null){
+                return;
+            }
+            try{
+                segment.close();
+            }finally {
+                index.close();
+                segment = null;
+                index = null;
+            }
+        }
+
+        /**
+         * close writes the last block and closes the segment.
+         * @throws IOException - thrown if the block cannot be written or the segment closed.
+         */
+        void close() throws IOException {
+            try{
+                flush();
+            }finally {
+                closeSegment();
+                deflater.end();
+            }
+        }
+    }
+}
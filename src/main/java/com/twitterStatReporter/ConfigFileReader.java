@@ -2,6 +2,8 @@ package com.twitterStatReporter;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -10,11 +12,14 @@ import java.util.Properties;
  */
 public class ConfigFileReader {
 
+    // The most common occurrences a report may list for a field.
+    static final int MAX_TOP_K = 1000;
+
     // Properties object to get the configuration files properties.
     Properties configProp;
 
-    //Input stream to the data from the configuration file.
-    FileInputStream configStream;
+    // The config file's name.
+    private final String fileName;
 
     // Total run time of the program from the config file.
     int totalRunTime = 0;
@@ -22,6 +27,9 @@ public class ConfigFileReader {
     // Interval run time of the program from the config file.
     int intervalRunTime = 0;
 
+    // Flag to roll intervals until the program is stopped instead of for the total run time.
+    boolean continuous = false;
+
     // Choice to write to file or to the terminal.
     int writeToFile = 0;
 
@@ -37,23 +45,120 @@ public class ConfigFileReader {
     // Consumer Secret token string.
     String consumerSecret;
 
+    // Path to a recorded NDJSON capture to replay instead of connecting to twitter, null to use the live stream.
+    String replayFile;
+
+    // The pacing mode used to replay the capture.
+    ReplayTweetSource.Mode replayMode = ReplayTweetSource.Mode.ORIGINAL;
+
+    // Speed multiplier used when replaying the capture in the scaled mode.
+    double replaySpeed = 1.0;
+
+    // The capacity of the queue the stream is read into.
+    int ingestQueueCapacity = 50000;
+
+    // The policy used when the queue is full.
+    TweetHandoff.Policy overloadPolicy = TweetHandoff.Policy.BLOCK;
+
+    // The transport used for the queues, and how the ring buffer waits for messages.
+    TweetHandoff.Transport handoff = TweetHandoff.Transport.RING;
+    RingBufferHandoff.WaitStrategy waitStrategy = RingBufferHandoff.WaitStrategy.SLEEP;
+
+    // The length, in seconds, of the window each report covers, 0 for a single interval.
+    int windowLength = 0;
+
+    // How long, in seconds, an interval stays open after its end for tweets that arrive out of order.
+    int allowedLateness = 1;
+
+    // The most intervals a tweet may be dated after the time of the stream, later ones are counted at the time of the
+    // stream instead.
+    int maxTimestampJump = 60;
+
+    // The number of threads that count the tweets of each report.
+    int reportWorkers = Runtime.getRuntime().availableProcessors();
+
+    // Flag to run the interval and report work on virtual threads, when the JVM supports them.
+    boolean virtualThreads = false;
+
+    // The extractor used to pull the report fields out of the tweets.
+    TweetFieldExtractor.Parser parser = TweetFieldExtractor.Parser.STREAMING;
+
+    // The number of most common hashtags, languages, domains and user mentions written in each report.
+    int hashtagTopK = 3;
+    int languageTopK = 3;
+    int domainTopK = 3;
+    int userMentionTopK = 3;
+
+    // The number of Space-Saving counters used to keep the heavy hitters of the hashtags, domains and user mentions,
+    // 0 counts every value exactly.
+    int hashtagCounters = 0;
+    int domainCounters = 0;
+    int userMentionCounters = 0;
+
+    // True to keep Count-Min Sketches and HyperLogLog estimators for each interval.
+    boolean sketches = false;
+
+    // The sizes of the Count-Min Sketches and the precision of the HyperLogLog estimators.
+    int countMinWidth = 2048;
+    int countMinDepth = 5;
+    int hyperLogLogPrecision = 12;
+
+    // The hashtags and user mentions whose estimated counts are written in each report.
+    List<String> hashtagQueries = new ArrayList<>();
+    List<String> userMentionQueries = new ArrayList<>();
+
+    // Directory the sketches of each interval are saved to for SketchQuery to merge, null to not save them.
+    String sketchDirectory;
+
+    // The format the reports are written in.
+    ReportFormatter.Format reportFormat = ReportFormatter.Format.TEXT;
+
+    // The base URL of the streaming API, ending in a slash, null for twitter's.
+    String streamBaseURL;
+
+    // Directory the raw messages of the live stream are captured to, null to not capture them, with the number of
+    // messages the capture backlog holds, the size of a block in KB, and the size in MB and minutes of a segment.
+    String captureDirectory;
+    int captureBacklog = 20000;
+    int captureBlockSize = 256;
+    int captureSegmentSize = 64;
+    int captureSegmentMinutes = 60;
+
+    // The number of threads BatchMain counts with, 0 for one per core, and the size in MB of the splits it counts.
+    int batchThreads = 0;
+    int batchSplitSize = 64;
+
+    // The most intervals without messages in a row BatchMain reports, longer runs are skipped.
+    int batchMaxGap = 60;
+
+    // Directory the counts of each interval are archived in so time ranges can be queried later, null to not archive
+    // them.
+    String archiveDirectory;
+
+    // Flag to shed load by only parsing a fraction of the statuses once the stream queue fills past the sampling
+    // threshold, a percentage of its capacity, and the lowest fraction parsed.
+    boolean adaptiveSampling = false;
+    int samplingThreshold = 50;
+    double minSamplingRate = 0.05;
+
+    // File the metrics are written to as Prometheus text, null to not write them, and how often, in seconds.
+    String metricsFile;
+    int metricsInterval = 10;
+
+    // Port the metrics are served on as Prometheus text, 0 to not serve them.
+    int metricsPort = 0;
+
     /**
      * ConfigurationFileReader constructor, used to create and gather the configuration information in the twitter
      * config file.
-     * @throws IOException
      */
-    public ConfigFileReader() throws IOException {
+    public ConfigFileReader() {
 
         // The config file's set name.
-        String fileName = "twitter.config";
+        this.fileName = "twitter.config";
 
         // Create a properties object to get the config settings from.
         this.configProp = new Properties();
-
-        // Create a file input stream.
-        this.configStream = new FileInputStream(fileName);
-
-
     }
 
     /**
@@ -62,7 +167,10 @@ public class ConfigFileReader {
      */
     public void loadConfig() throws IOException {
 
-        configProp.load(configStream);
+        // Create a file input stream and load the properties from it.
+        try(FileInputStream configStream = new FileInputStream(fileName)){
+            configProp.load(configStream);
+        }
 
         // Get the total run time from the config file and convert it to an int for use in the program.
         if(configProp.getProperty("TotalRunTime") != null){
@@ -74,6 +182,11 @@ public class ConfigFileReader {
             intervalRunTime = Integer.parseInt(configProp.getProperty("IntervalRunTime"));
         }
 
+        // Get the flag to run continuously.
+        if(configProp.getProperty("Continuous") != null){
+            continuous = Boolean.parseBoolean(configProp.getProperty("Continuous").trim());
+        }
+
         // Get the access token from the config file.
         if(configProp.getProperty("AccessToken") != null){
             accessToken = configProp.getProperty("AccessToken");
@@ -98,5 +211,241 @@ public class ConfigFileReader {
             writeToFile = Integer.parseInt(configProp.getProperty("WriteFlag"));
         }
 
+        // Get the capture file to replay, an empty value means the live stream is used.
+        if(configProp.getProperty("ReplayFile") != null && !configProp.getProperty("ReplayFile").isBlank()){
+            replayFile = configProp.getProperty("ReplayFile").trim();
+        }
+
+        // Get the replay pacing mode.
+        if(configProp.getProperty("ReplayMode") != null){
+            replayMode = ReplayTweetSource.Mode.valueOf(configProp.getProperty("ReplayMode").trim().toUpperCase());
+        }
+
+        // Get the replay speed multiplier.
+        if(configProp.getProperty("ReplaySpeed") != null){
+            replaySpeed = Double.parseDouble(configProp.getProperty("ReplaySpeed"));
+        }
+
+        // Get the queue capacity and the policy used when the queue is full.
+        ingestQueueCapacity = atLeastOne("IngestQueueCapacity", ingestQueueCapacity);
+        if(configProp.getProperty("OverloadPolicy") != null){
+            overloadPolicy = TweetHandoff.Policy.valueOf(
+                    configProp.getProperty("OverloadPolicy").trim().toUpperCase());
+        }
+        if(configProp.getProperty("Handoff") != null){
+            handoff = TweetHandoff.Transport.valueOf(configProp.getProperty("Handoff").trim().toUpperCase());
+        }
+        if(configProp.getProperty("WaitStrategy") != null){
+            waitStrategy = RingBufferHandoff.WaitStrategy.valueOf(
+                    configProp.getProperty("WaitStrategy").trim().toUpperCase());
+        }
+
+        // Get the number of threads that count the tweets of each report.
+        reportWorkers = atLeastOne("ReportWorkers", reportWorkers);
+
+        // Get the length of the window each report covers.
+        if(configProp.getProperty("WindowLength") != null){
+            windowLength = Integer.parseInt(configProp.getProperty("WindowLength").trim());
+        }
+
+        // Get how long an interval stays open for tweets that arrive out of order.
+        if(configProp.getProperty("AllowedLateness") != null){
+            allowedLateness = Integer.parseInt(configProp.getProperty("AllowedLateness").trim());
+            if(allowedLateness < 0){
+                throw new IOException("AllowedLateness must not be negative: " + allowedLateness);
+            }
+        }
+        maxTimestampJump = atLeastOne("MaxTimestampJump", maxTimestampJump);
+        if(configProp.getProperty("VirtualThreads") != null){
+            virtualThreads = Boolean.parseBoolean(configProp.getProperty("VirtualThreads").trim());
+        }
+
+        // Get the parser used to extract the report fields.
+        if(configProp.getProperty("ParserMode") != null){
+            parser = TweetFieldExtractor.Parser.valueOf(configProp.getProperty("ParserMode").trim().toUpperCase());
+        }
+
+        // Get the number of most common occurrences to report for each field.
+        hashtagTopK = topK("HashtagTopK", hashtagTopK);
+        languageTopK = topK("LanguageTopK", languageTopK);
+        domainTopK = topK("DomainTopK", domainTopK);
+        userMentionTopK = topK("UserMentionTopK", userMentionTopK);
+
+        // Get the memory budget of each field that should only keep its heavy hitters.
+        hashtagCounters = notNegative("HashtagCounters", hashtagCounters);
+        domainCounters = notNegative("DomainCounters", domainCounters);
+        userMentionCounters = notNegative("UserMentionCounters", userMentionCounters);
+
+        // Get the sketch options.
+        if(configProp.getProperty("Sketches") != null){
+            sketches = Boolean.parseBoolean(configProp.getProperty("Sketches").trim());
+        }
+        countMinWidth = atLeastOne("CountMinWidth", countMinWidth);
+        countMinDepth = atLeastOne("CountMinDepth", countMinDepth);
+        if(countMinDepth > CountMinSketch.MAX_DEPTH){
+            throw new IOException("CountMinDepth must be at most " + CountMinSketch.MAX_DEPTH + ": " + countMinDepth);
+        }
+        if(CountMinSketch.cells(countMinWidth, countMinDepth) > CountMinSketch.MAX_CELLS){
+            throw new IOException("CountMinWidth, rounded up to a power of two, times CountMinDepth must be at most "
+                    + CountMinSketch.MAX_CELLS + " counts: " + countMinWidth + " x " + countMinDepth);
+        }
+        if(configProp.getProperty("HyperLogLogPrecision") != null){
+            hyperLogLogPrecision = Integer.parseInt(configProp.getProperty("HyperLogLogPrecision").trim());
+            if(hyperLogLogPrecision < 4 || hyperLogLogPrecision > 18){
+                throw new IOException("HyperLogLogPrecision must be between 4 and 18: " + hyperLogLogPrecision);
+            }
+        }
+        hashtagQueries = queries("HashtagQueries", '#');
+        userMentionQueries = queries("UserMentionQueries", '@');
+        if(configProp.getProperty("SketchDirectory") != null && !configProp.getProperty("SketchDirectory").isBlank()){
+            sketchDirectory = configProp.getProperty("SketchDirectory").trim();
+        }
+
+        // Get the format the reports are written in.
+        if(configProp.getProperty("ReportFormat") != null){
+            reportFormat = ReportFormatter.Format.valueOf(configProp.getProperty("ReportFormat").trim().toUpperCase());
+        }
+
+        // Get the base URL of the streaming API, adding the slash twitter4j expects at the end.
+        if(configProp.getProperty("StreamBaseURL") != null && !configProp.getProperty("StreamBaseURL").isBlank()){
+            streamBaseURL = configProp.getProperty("StreamBaseURL").trim();
+            if(!streamBaseURL.endsWith("/")){
+                streamBaseURL += "/";
+            }
+        }
+
+        // Get the capture options.
+        if(configProp.getProperty("CaptureDirectory") != null && !configProp.getProperty("CaptureDirectory").isBlank()){
+            captureDirectory = configProp.getProperty("CaptureDirectory").trim();
+        }
+        captureBacklog = atLeastOne("CaptureBacklog", captureBacklog);
+        captureBlockSize = atLeastOne("CaptureBlockSize", captureBlockSize);
+        captureSegmentSize = atLeastOne("CaptureSegmentSize", captureSegmentSize);
+        captureSegmentMinutes = atLeastOne("CaptureSegmentMinutes", captureSegmentMinutes);
+
+        // Get the batch analysis options.
+        if(configProp.getProperty("BatchThreads") != null){
+            batchThreads = Integer.parseInt(configProp.getProperty("BatchThreads").trim());
+            if(batchThreads < 0){
+                throw new IOException("BatchThreads must be at least 0: " + batchThreads);
+            }
+        }
+        batchSplitSize = atLeastOne("BatchSplitSize", batchSplitSize);
+        if(batchSplitSize > 1024){
+            throw new IOException("BatchSplitSize must be at most 1024 MB: " + batchSplitSize);
+        }
+        if(configProp.getProperty("BatchMaxGap") != null){
+            batchMaxGap = Integer.parseInt(configProp.getProperty("BatchMaxGap").trim());
+            if(batchMaxGap < 0){
+                throw new IOException("BatchMaxGap must be at least 0: " + batchMaxGap);
+            }
+        }
+
+        // Get the directory the intervals are archived in.
+        if(configProp.getProperty("ArchiveDirectory") != null && !configProp.getProperty("ArchiveDirectory").isBlank()){
+            archiveDirectory = configProp.getProperty("ArchiveDirectory").trim();
+        }
+
+        // Get the adaptive sampling options.
+        if(configProp.getProperty("AdaptiveSampling") != null){
+            adaptiveSampling = Boolean.parseBoolean(configProp.getProperty("AdaptiveSampling").trim());
+        }
+        samplingThreshold = atLeastOne("SamplingThreshold", samplingThreshold);
+        if(samplingThreshold > 100){
+            throw new IOException("SamplingThreshold must be a percentage between 1 and 100: " + samplingThreshold);
+        }
+        if(configProp.getProperty("MinSamplingRate") != null){
+            minSamplingRate = Double.parseDouble(configProp.getProperty("MinSamplingRate").trim());
+            if(minSamplingRate <= 0 || minSamplingRate > 1){
+                throw new IOException("MinSamplingRate must be greater than 0 and at most 1: " + minSamplingRate);
+            }
+        }
+
+        // Get where the metrics are published.
+        if(configProp.getProperty("MetricsFile") != null && !configProp.getProperty("MetricsFile").isBlank()){
+            metricsFile = configProp.getProperty("MetricsFile").trim();
+        }
+        metricsInterval = atLeastOne("MetricsInterval", metricsInterval);
+        metricsPort = notNegative("MetricsPort", metricsPort);
+    }
+
+    /**
+     * queries reads a comma separated list of values to look up in the sketches.
+     * @param property - The name of the config field.
+     * @param prefix - The symbol the values may be written with, # or @, it is removed.
+     * @return the values, empty if the field is not present.
+     */
+    private List<String> queries(String property, char prefix){
+
+        List<String> values = new ArrayList<>();
+        if(configProp.getProperty(property) == null){
+            return values;
+        }
+        for(String value : configProp.getProperty(property).split(",")){
+            value = value.trim();
+            if(!value.isEmpty() && value.charAt(0) == prefix){
+                value = value.substring(1);
+            }
+            if(!value.isEmpty()){
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * notNegative reads a number that must not be negative, such as the number of heavy hitter counters a field may
+     * use or the port the metrics are served on.
+     * @param property - The name of the config field.
+     * @param defaultValue - The value used if the field is not present.
+     * @return the number read, 0 to turn the option off.
+     * @throws IOException thrown if the value is negative.
+     */
+    private int notNegative(String property, int defaultValue) throws IOException {
+
+        if(configProp.getProperty(property) == null){
+            return defaultValue;
+        }
+        int value = Integer.parseInt(configProp.getProperty(property).trim());
+        if(value < 0){
+            throw new IOException(property + " must not be negative: " + value);
+        }
+        return value;
+    }
+
+    /**
+     * topK reads the number of most common occurrences to report for a field, which must be from 1 to MAX_TOP_K.
+     * @param property - The name of the config field.
+     * @param defaultValue - The value used if the field is not present.
+     * @return the number read.
+     * @throws IOException thrown if the value is less than 1 or more than MAX_TOP_K.
+     */
+    private int topK(String property, int defaultValue) throws IOException {
+
+        int value = atLeastOne(property, defaultValue);
+        if(value > MAX_TOP_K){
+            throw new IOException(property + " must be at most " + MAX_TOP_K + ": " + value);
+        }
+        return value;
+    }
+
+    /**
+     * atLeastOne reads a number that must be at least 1, such as the number of most common occurrences to report for
+     * a field or the size of a sketch.
+     * @param property - The name of the config field.
+     * @param defaultValue - The value used if the field is not present.
+     * @return the number read.
+     * @throws IOException thrown if the value is less than 1.
+     */
+    private int atLeastOne(String property, int defaultValue) throws IOException {
+
+        if(configProp.getProperty(property) == null){
+            return defaultValue;
+        }
+        int value = Integer.parseInt(configProp.getProperty(property).trim());
+        if(value < 1){
+            throw new IOException(property + " must be at least 1: " + value);
+        }
+        return value;
     }
 }
@@ -0,0 +1,162 @@
+package com.twitterStatReporter;
+
+import java.io.Serializable;
+
+/**
+ * CountMinSketch answers point queries, how many times a given value occurred, in a fixed amount of memory no matter
+ * how many distinct values are added (Cormode and Muthukrishnan). The sketch is a depth by width table of counts,
+ * each value increments one count in every row and its estimate is the smallest of those counts. Estimates are never
+ * under the true count, and are over by at most e / width * total with a probability of 1 - e^-depth.
+ *
+ * Sketches with the same width and depth can be merged by adding their tables, the merged sketch is the same as one
+ * that saw both streams, so the sketches of several intervals can be combined later.
+ */
+public final class CountMinSketch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // The most rows, and the most counts a sketch may hold in all, 32 MB of counts.
+    static final int MAX_DEPTH = 32;
+    static final int MAX_CELLS = 1 << 22;
+
+    // The number of counts in each row, a power of two so the row index is a mask.
+    private final int width;
+
+    // The number of rows.
+    private final int depth;
+
+    // The rows of counts, row r starts at r * width.
+    private final long[] table;
+
+    // The total number of occurrences added.
+    private long total;
+
+    /**
+     *
+     * @param width - The number of counts in each row, rounded up to a power of two.
+     * @param depth - The number of rows.
+     */
+    public CountMinSketch(int width, int depth){
+
+        if(width < 1){
+            throw new IllegalArgumentException("Count-Min width must be at least 1: " + width);
+        }
+        if(depth < 1 || depth > MAX_DEPTH){
+            throw new IllegalArgumentException("Count-Min depth must be between 1 and " + MAX_DEPTH + ": " + depth);
+        }
+        if(cells(width, depth) > MAX_CELLS){
+            throw new IllegalArgumentException("A " + width + " by " + depth + " Count-Min Sketch holds "
+                    + cells(width, depth) + " counts once its width is rounded up to a power of two, more than the "
+                    + MAX_CELLS + " a sketch may hold");
+        }
+        this.width = Integer.highestOneBit(width * 2 - 1);
+        this.depth = depth;
+        this.table = new long[this.width * depth];
+    }
+
+    /**
+     * cells returns the number of counts a sketch of the given size holds, once its width is rounded up to a power of
+     * two.
+     * @param width - The number of counts in each row, at least 1.
+     * @param depth - The number of rows.
+     * @return the number of counts in the table.
+     */
+    static long cells(int width, int depth){
+        return Long.highestOneBit((long) width * 2 - 1) * depth;
+    }
+
+    /**
+     * add adds a number of occurrences of a value.
+     * @param key - The value that occurred.
+     * @param occurrences - The number of times it occurred.
+     */
+    public void add(String key, long occurrences){
+
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int mask = width - 1;
+
+        // Each row index is derived from the two halves of one hash (Kirsch and Mitzenmacher).
+        for(int row = 0; row < depth; row++){
+            table[row * width + ((h1 + row * h2) & mask)] += occurrences;
+        }
+        total += occurrences;
+    }
+
+    /**
+     * estimate returns the estimated number of occurrences of a value, never under the true count.
+     * @param key - The value to look up.
+     * @return the estimated number of occurrences.
+     */
+    public long estimate(String key){
+
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int mask = width - 1;
+
+        long estimate = Long.MAX_VALUE;
+        for(int row = 0; row < depth; row++){
+            estimate = Math.min(estimate, table[row * width + ((h1 + row * h2) & mask)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * merge adds the counts of another sketch into this one.
+     * @param other - The sketch to merge, it must have the same width and depth.
+     */
+    public void merge(CountMinSketch other){
+
+        if(other.width != width || other.depth != depth){
+            throw new IllegalArgumentException("Cannot merge a " + other.width + "x" + other.depth
+                    + " Count-Min Sketch into a " + width + "x" + depth + " sketch");
+        }
+        for(int i = 0; i < table.length; i++){
+            table[i] += other.table[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * subtract removes the counts of another sketch from this one, the other sketch's counts must all have been
+     * merged into this one. Used to take an expired pane out of a sliding window.
+     * @param other - The sketch to subtract, it must have the same width and depth.
+     */
+    public void subtract(CountMinSketch other){
+
+        if(other.width != width || other.depth != depth){
+            throw new IllegalArgumentException("Cannot subtract a " + other.width + "x" + other.depth
+                    + " Count-Min Sketch from a " + width + "x" + depth + " sketch");
+        }
+        for(int i = 0; i < table.length; i++){
+            table[i] -= other.table[i];
+        }
+        total -= other.total;
+    }
+
+    /**
+     * errorBound returns how far an estimate can be over its true count at the sketch's confidence, e / width * total.
+     * @return the error bound of the estimates.
+     */
+    public long errorBound(){
+        return (long) Math.ceil(Math.E / width * total);
+    }
+
+    /**
+     * confidence returns the probability that an estimate is within the error bound, 1 - e^-depth.
+     * @return the confidence of the error bound.
+     */
+    public double confidence(){
+        return 1 - Math.exp(-depth);
+    }
+
+    /**
+     * total returns the total number of occurrences added.
+     * @return the total occurrences.
+     */
+    public long total(){
+        return total;
+    }
+}
@@ -0,0 +1,122 @@
+package com.twitterStatReporter;
+
+/**
+ * CsvReportFormatter renders each report as rows of a long format csv table, one row per value of the report, so
+ * every report of a run can be appended to the same file and loaded into a spreadsheet or data frame. Each row holds
+ * the report number, the section of the report, the name of the value and the value, followed by the low and high
+ * ends of the confidence interval of an estimate from a sampled report and how far an approximate count may be over.
+ * Columns that don't apply to a row are left empty. Values are quoted as RFC 4180 describes.
+ */
+final class CsvReportFormatter implements ReportFormatter {
+
+    // The columns of each row.
+    private static final String HEADER = "report,section,name,value,low,high,error\n";
+
+    @Override
+    public String header() {
+        return HEADER;
+    }
+
+    @Override
+    public String fileName(Report report) {
+        return "Reports.csv";
+    }
+
+    @Override
+    public void format(Report report, StringBuilder out) {
+
+        int number = report.number;
+        row(number, "tweets", "total", out).append(report.tweets).append(",,,\n");
+        row(number, "tweets", "actual", out).append(report.actualTweets).append(",,,\n");
+        row(number, "tweets", "deleted", out).append(report.deletedTweets).append(",,,\n");
+        if(report.sampling != null){
+            row(number, "sampling", "statuses", out).append(report.sampling.statuses).append(",,,\n");
+            row(number, "sampling", "parsed", out).append(report.sampling.parsed).append(",,,\n");
+        }
+
+        for(Report.Count count : report.messageCounts){
+            row(number, "messages", count.name, out).append(count.value).append(",,,\n");
+        }
+        if(report.dropped != null){
+            row(number, "messages", "dropped", out).append(report.dropped.messages).append(",,,\n");
+        }
+        row(number, "messages", "late", out).append(report.lateMessages).append(",,,\n");
+
+        for(Report.Ranking ranking : report.rankings()){
+            for(Report.Entry entry : ranking.entries){
+                row(number, ranking.name, entry.value, out).append(entry.count).append(',');
+                if(report.estimated){
+                    out.append(entry.low).append(',').append(entry.high);
+                }else{
+                    out.append(',');
+                }
+                out.append(',');
+                if(ranking.approximate){
+                    out.append(entry.error);
+                }
+                out.append('\n');
+            }
+        }
+        for(Report.Share share : report.shares()){
+            row(number, "percentages", share.name, out).append(share.percent).append(',');
+            if(report.estimated){
+                out.append(share.low).append(',').append(share.high);
+            }else{
+                out.append(',');
+            }
+            out.append(",\n");
+        }
+
+        if(report.sketches != null){
+            for(Report.Count distinct : report.sketches.distinct){
+                row(number, "distinct", distinct.name, out).append(distinct.value).append(",,,\n");
+            }
+            for(Report.PointQuery query : report.sketches.queries){
+                row(number, query.kind.replace(' ', '_') + "_queries", query.value, out).append(query.estimate)
+                        .append(",,,").append(query.errorBound).append('\n');
+            }
+        }
+    }
+
+    /**
+     * row appends the report number, section and name that start a row.
+     * @param number - The number of the report.
+     * @param section - The section of the report the value is in.
+     * @param name - The name of the value.
+     * @param out - The buffer the report is appended to.
+     * @return the buffer, to append the rest of the row to.
+     */
+    private static StringBuilder row(int number, String section, String name, StringBuilder out){
+
+        out.append(number).append(',').append(section).append(',');
+        field(name, out);
+        return out.append(',');
+    }
+
+    /**
+     * field appends a value, quoting it if it holds a comma, quote or line break.
+     * @param value - The value.
+     * @param out - The buffer the report is appended to.
+     */
+    private static void field(String value, StringBuilder out){
+
+        boolean quote = false;
+        for(int i = 0; i < value.length() && !quote; i++){
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if(!quote){
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            if(c == '"'){
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,68 @@
+package com.twitterStatReporter;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * DomTweetFieldExtractor extracts the report fields by converting the whole tweet into a JSONObject and reading the
+ * lang, user, entities, extended_entities and retweet_count sections from it. This builds a full tree for every
+ * tweet, it is kept to compare against the StreamingTweetFieldExtractor.
+ */
+public class DomTweetFieldExtractor implements TweetFieldExtractor {
+
+    @Override
+    public void extract(String rawJSON, TweetFields fields) {
+
+        fields.reset();
+
+        try{
+            //Convert the tweet from string to JSON object.
+            JSONObject jsonTweet = new JSONObject(rawJSON);
+
+            // Grab the lang section.
+            fields.language = jsonTweet.optString("lang", null);
+
+            // Grab the entities object.
+            JSONObject entities = jsonTweet.getJSONObject("entities");
+
+            // Grab the hashtag text from each of the hashtag objects.
+            JSONArray hashtags = entities.getJSONArray("hashtags");
+            for(int i = 0; i < hashtags.length(); i++){
+                fields.addHashtag(hashtags.getJSONObject(i).getString("text"));
+            }
+
+            // Grab the expanded url from each of the url objects.
+            JSONArray urls = entities.getJSONArray("urls");
+            for(int i = 0; i < urls.length(); i++){
+                fields.addUrl(urls.getJSONObject(i).optString("expanded_url", null));
+            }
+
+            // Grab the screen name from each of the user mention objects.
+            JSONArray userMentions = entities.getJSONArray("user_mentions");
+            for(int i = 0; i < userMentions.length(); i++){
+                fields.addUserMention(userMentions.getJSONObject(i).getString("screen_name"));
+            }
+
+            // If the extended entities exist check if one of the media objects is a photo.
+            if(!jsonTweet.isNull("extended_entities")){
+                JSONArray media = jsonTweet.getJSONObject("extended_entities").getJSONArray("media");
+                for(int i = 0; i < media.length() && !fields.hasPhoto; i++){
+                    fields.hasPhoto = "photo".equals(media.getJSONObject(i).optString("type"));
+                }
+            }
+
+            // Grab the number of times the tweet was retweeted.
+            fields.retweetCount = jsonTweet.optInt("retweet_count");
+
+            // Grab the id of the user that posted the tweet.
+            JSONObject user = jsonTweet.optJSONObject("user");
+            if(user != null){
+                fields.userId = user.optLong("id", -1);
+            }
+
+        }catch (JSONException e){
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,570 @@
+package com.twitterStatReporter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * EventTimeWindows is the windowing stage that turns the raw tweets into reports. It assigns each message to a tumbling
+ * window of intervalRunTime by the timestamp_ms of the message, counting from the timestamp of the first message, so
+ * the boundaries of the reports are exact no matter when the message is taken off the handoff. Messages without a
+ * timestamp are given the current time of the stream, the latest timestamp seen when they arrived, and so are messages
+ * dated more than MaxTimestampJump intervals after it, allowing for the wall clock time since it was seen, so a stray
+ * timestamp far in the future can't move the stream on past every window still to come.
+ *
+ * A number of workers take messages straight from the handoff, each counting them into its own IntervalAggregate per
+ * open window, so every message is read once and never copied into another queue. The time of the stream is the latest
+ * timestamp seen, moved on by the wall clock while no messages arrive. A window is closed once the time of the stream
+ * has passed its end by the allowed lateness, messages for a window their worker already closed are counted as late
+ * instead. In a bounded run the messages whose window comes after the last report are counted and shown on the last
+ * report, and only move the time of the stream on as far as it takes to close the last report. Once every worker has
+ * closed a window their partial aggregates are merged and its report is built, in window order, on the report writer
+ * and handed to the ReportSink to be written. A worker that closes a window also closes it for the workers waiting for
+ * messages, and waiting workers only wait until the next window is due, so a report is written as soon as its window
+ * closes. The messages taken, the time each batch took to count and how long after its window was due each report was
+ * written are recorded in the Metrics, and each window is recorded as a flight recorder event from its first message
+ * until it closes. When the window length set in the config file is longer than the interval, each interval is a pane
+ * of a SlidingWindow and the reports cover the panes of the last window length.
+ */
+final class EventTimeWindows {
+
+    // The time a worker waits for a message before moving the time of the stream on by the wall clock.
+    private static final long POLL_MILLIS = 1000;
+
+    // Marks the origin and time of the stream before the first message arrives.
+    private static final long NOT_SET = Long.MIN_VALUE;
+
+    // Metrics of the stage, shared by every worker.
+    private static final LongAdder TAKEN = Metrics.counter("twitterstats_messages_taken_total",
+            "Messages taken from the handoff by the window workers.");
+    private static final LongAdder LATE = Metrics.counter("twitterstats_messages_late_total",
+            "Messages that arrived after their window was closed.");
+    private static final LongAdder PAST_LAST_REPORT = Metrics.counter("twitterstats_messages_past_last_report_total",
+            "Messages of a bounded run whose window came after the last report.");
+    private static final LongAdder OUTLIERS = Metrics.counter("twitterstats_messages_outlier_timestamp_total",
+            "Messages dated too far after the time of the stream, counted at the time of the stream instead.");
+    private static final LatencyHistogram COUNT_TIME = Metrics.histogram("twitterstats_count_batch_seconds",
+            "Time to count a batch of messages taken from the handoff into their windows.");
+
+    // The handoff the raw tweets are taken from.
+    private final TweetHandoff rawTweets;
+
+    // The length of each window, how long after its end a window stays open for late messages, and the furthest a
+    // message may be dated after the time of the stream, in milliseconds.
+    private final long intervalMillis;
+    private final long allowedLatenessMillis;
+    private final long maxJumpMillis;
+
+    // The number of windows to report, IntervalScheduler.CONTINUOUS to keep reporting until stopped.
+    private final int numberOfReports;
+
+    // Writes the reports to file or to the terminal.
+    private final ReportSink sink;
+
+    // The archive each closed interval is appended to, null when intervals aren't archived. Only used by the report
+    // writer.
+    private final IntervalArchive archive;
+
+    // The loaded config file, used to create the aggregates and report generators.
+    private final ConfigFileReader config;
+
+    // The single thread the reports are built on, in window order.
+    private final ExecutorService reportWriter;
+
+    // The sampler that sheds load when the handoff backs up, null when every status is parsed.
+    private final AdaptiveSampler sampler;
+
+    // The window each interval slides along, null when the reports cover a single interval. Only used by the report
+    // writer.
+    private final SlidingWindow slidingWindow;
+
+    // The track count of the last limit notice reported, carried into the next window. Only used by the report writer.
+    private long limitTrack = 0;
+
+    // The timestamp of the first message, the start of the first window.
+    private final AtomicLong origin = new AtomicLong(NOT_SET);
+
+    // The latest timestamp seen, and the wall clock time it was seen at.
+    private final AtomicLong streamTime = new AtomicLong(NOT_SET);
+    private volatile long streamTimeSeenAt;
+
+    // The highest window a message has been counted in.
+    private final AtomicLong highestWindow = new AtomicLong(-1);
+
+    // The highest window each worker has closed, Long.MAX_VALUE once a worker has stopped.
+    private final AtomicLongArray closedThrough;
+
+    // The merged partial aggregates of the windows that are not yet closed by every worker.
+    private final ConcurrentHashMap<Long, IntervalAggregate> closing = new ConcurrentHashMap<>();
+
+    // The number of messages that arrived after their window was closed, since the last report was written.
+    private final AtomicLong lateMessages = new AtomicLong();
+
+    // The number of messages of a bounded run whose window came after the last report.
+    private final AtomicLong pastLastReport = new AtomicLong();
+
+    // The number of workers still running.
+    private final AtomicInteger runningWorkers;
+
+    // The workers of the stage.
+    private final Worker[] workers;
+
+    // The highest window the time of the stream has passed, and the wall clock time each window was due to close.
+    private final AtomicLong highestClosable = new AtomicLong(-1);
+    private final ConcurrentHashMap<Long, Long> closableAt = new ConcurrentHashMap<>();
+
+    // The flight recorder events of the windows a message has been counted in that have not been reported yet.
+    private final ConcurrentHashMap<Long, PipelineEvents.Interval> intervalEvents = new ConcurrentHashMap<>();
+
+    // The next window to write a report for, only changed while holding this.
+    private volatile long nextReport;
+
+    // Set when the stage should take the remaining messages, close every window and stop.
+    private volatile boolean stopping;
+
+    // Set once the last report of a bounded run has been handed to the report writer.
+    private volatile boolean finished;
+
+    /**
+     *
+     * @param rawTweets - The handoff the tweet source publishes the raw tweets to.
+     * @param intervalRunTime - The length of each window, in seconds.
+     * @param numberOfReports - The number of windows to report, or IntervalScheduler.CONTINUOUS.
+     * @param config - The loaded config file, used for the number of workers, the lateness and report options.
+     * @param reportWriter - The single thread executor the reports are built on, shut down once the stage stops.
+     * @param sink - Writes the reports, closed once the last report has been handed to it.
+     * @param archive - The archive closed intervals are appended to, or null. Closed along with the sink.
+     */
+    EventTimeWindows(TweetHandoff rawTweets, int intervalRunTime, int numberOfReports, ConfigFileReader config,
+                     ExecutorService reportWriter, ReportSink sink, IntervalArchive archive){
+
+        this.rawTweets = rawTweets;
+        this.intervalMillis = TimeUnit.SECONDS.toMillis(intervalRunTime);
+        this.allowedLatenessMillis = TimeUnit.SECONDS.toMillis(config.allowedLateness);
+        this.maxJumpMillis = config.maxTimestampJump * intervalMillis;
+        this.numberOfReports = numberOfReports;
+        this.sink = sink;
+        this.archive = archive;
+        this.config = config;
+        this.reportWriter = reportWriter;
+
+        // The window length must be a whole number of intervals.
+        int windowLength = config.windowLength > 0 ? config.windowLength : intervalRunTime;
+        if(windowLength < intervalRunTime || windowLength % intervalRunTime != 0){
+            throw new IllegalArgumentException("WindowLength must be a multiple of the interval run time: "
+                    + windowLength);
+        }
+        this.slidingWindow = windowLength > intervalRunTime
+                ? new SlidingWindow(windowLength / intervalRunTime, config)
+                : null;
+
+        this.sampler = config.adaptiveSampling
+                ? new AdaptiveSampler(config.samplingThreshold, config.minSamplingRate)
+                : null;
+
+        // Every worker starts with no window closed.
+        this.closedThrough = new AtomicLongArray(config.reportWorkers);
+        this.workers = new Worker[config.reportWorkers];
+        for(int i = 0; i < config.reportWorkers; i++){
+            closedThrough.set(i, -1);
+            workers[i] = new Worker(i);
+        }
+        this.runningWorkers = new AtomicInteger(config.reportWorkers);
+
+        Metrics.gauge("twitterstats_windows_open", "Windows counted into that have not been reported yet.",
+                () -> Math.max(0, highestWindow.get() - nextReport + 1));
+    }
+
+    /**
+     * worker creates the worker with the given index, there are config.reportWorkers workers to run.
+     * @param index - The index of the worker.
+     * @return the worker.
+     */
+    Runnable worker(int index){
+        return () -> runWorker(workers[index]);
+    }
+
+    /**
+     * start fixes the start of the first window at the timestamp of the oldest message waiting in the handoff, so
+     * the workers agree on where the windows start whichever of them counts its first batch first.
+     */
+    void start(){
+
+        String first = rawTweets.peek();
+        if(first != null){
+            long timestamp = MessageClassifier.timestampMs(first);
+            origin.compareAndSet(NOT_SET, timestamp >= 0 ? timestamp : System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * stop asks the workers to take the messages left in the handoff, close every open window and stop.
+     */
+    void stop(){
+        stopping = true;
+    }
+
+    /**
+     * runWorker takes batches of messages from the handoff and counts each into the partial aggregate of its window,
+     * closing the windows the time of the stream has passed after each batch. While the handoff is empty it waits no
+     * longer than the time the stream's next boundary is due, so a quiet window is closed on time.
+     * @param worker - The worker.
+     */
+    private void runWorker(Worker worker){
+
+        // Batch the tweets are drained into.
+        String[] batch = new String[TweetHandoff.BATCH_SIZE];
+
+        try{
+            while(!finished){
+                // Take every waiting message in one batch, only polling when the handoff is empty.
+                int taken = rawTweets.drain(batch);
+                if(taken == 0){
+                    String tweet = rawTweets.poll(millisUntilDue(worker), TimeUnit.MILLISECONDS);
+                    if(tweet != null){
+                        batch[0] = tweet;
+                        taken = 1;
+                    }
+                }
+                if(taken == 0 && stopping){
+                    // Nothing is left to take, close every window this worker has open.
+                    break;
+                }
+
+                long through;
+                worker.lock.lock();
+                try{
+                    if(taken > 0){
+                        assign(worker, batch, taken);
+                    }
+                    through = closableWindow(taken == 0);
+                    close(worker, through);
+                }finally {
+                    worker.lock.unlock();
+                }
+                closeIdleWorkers(through);
+            }
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }finally {
+            worker.lock.lock();
+            try{
+                close(worker, Long.MAX_VALUE);
+            }finally {
+                worker.lock.unlock();
+            }
+            if(runningWorkers.decrementAndGet() == 0){
+                // The sink and archive are closed once the reports already handed to the report writer have been
+                // built.
+                reportWriter.execute(() -> {
+                    sink.close();
+                    closeArchive();
+                });
+                reportWriter.shutdown();
+            }
+        }
+    }
+
+    /**
+     * closeIdleWorkers closes the windows up to the given window for the other workers that are waiting for messages,
+     * so a window is reported as soon as one worker sees it close instead of when the others next wake up. Workers
+     * busy with a batch close their windows themselves once it is counted.
+     * @param through - The highest window to close.
+     */
+    private void closeIdleWorkers(long through){
+
+        for(Worker other : workers){
+            if(closedThrough.get(other.index) < through && other.lock.tryLock()){
+                try{
+                    close(other, through);
+                }finally {
+                    other.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * millisUntilDue returns how long a worker can wait for a message before the next window it has open is due to
+     * close, capped at the poll time.
+     * @param worker - The worker.
+     * @return the time to wait, in milliseconds.
+     */
+    private long millisUntilDue(Worker worker){
+
+        long start = origin.get();
+        long time = streamTime.get();
+        if(start == NOT_SET || time == NOT_SET){
+            return POLL_MILLIS;
+        }
+        long due = dueAt(closedThrough.get(worker.index) + 1, start, time);
+        return Math.max(1, Math.min(POLL_MILLIS, due - System.currentTimeMillis()));
+    }
+
+    /**
+     * dueAt returns the wall clock time a window is due to close, when the time of the stream passes its end by the
+     * allowed lateness, assuming the time of the stream moves on with the wall clock from when it was last seen.
+     * @param window - The window.
+     * @param start - The timestamp of the first message.
+     * @param time - The time of the stream.
+     * @return the wall clock time in milliseconds, the time the stream's time was seen if that has already passed.
+     */
+    private long dueAt(long window, long start, long time){
+        long end = start + (window + 1) * intervalMillis + allowedLatenessMillis;
+        return streamTimeSeenAt + Math.max(0, end - time);
+    }
+
+    /**
+     * assign counts each message of a batch into the partial aggregate of its window.
+     * @param worker - The worker, its lock must be held.
+     * @param batch - The batch of messages.
+     * @param taken - The number of messages in the batch.
+     */
+    private void assign(Worker worker, String[] batch, int taken){
+
+        long began = System.nanoTime();
+        double samplingRate = sampler != null ? sampler.update(rawTweets.size(), rawTweets.capacity()) : 1.0;
+        long closed = closedThrough.get(worker.index);
+        long latest = streamTime.get();
+        long highest = -1;
+        int late = 0;
+        int past = 0;
+        int outliers = 0;
+
+        // Messages may be dated up to the jump after the time of the stream, moved on by the wall clock since it was
+        // seen so messages after a quiet spell aren't taken for outliers.
+        long slack = Math.max(0, System.currentTimeMillis() - streamTimeSeenAt) + maxJumpMillis;
+
+        for(int i = 0; i < taken; i++){
+            String tweet = batch[i];
+            batch[i] = null;
+
+            // Messages without a timestamp arrived at the current time of the stream.
+            long timestamp = MessageClassifier.timestampMs(tweet);
+            if(timestamp < 0){
+                timestamp = latest != NOT_SET ? latest : System.currentTimeMillis();
+            }else if(latest != NOT_SET && timestamp - latest > slack){
+                // As are messages dated too far ahead of it.
+                timestamp = latest;
+                outliers++;
+            }
+
+            long start = origin.get();
+            if(start == NOT_SET){
+                origin.compareAndSet(NOT_SET, timestamp);
+                start = origin.get();
+            }
+
+            long window = Math.floorDiv(timestamp - start, intervalMillis);
+            if(window < 0 || window <= closed){
+                late++;
+            }else if(numberOfReports == IntervalScheduler.CONTINUOUS || window < numberOfReports){
+                worker.open.computeIfAbsent(window, w -> new IntervalAggregate(config))
+                        .processTweet(tweet, samplingRate);
+                highest = Math.max(highest, window);
+                latest = Math.max(latest, timestamp);
+            }else{
+                // Past the last report, only move the time of the stream on as far as closing the last report needs.
+                past++;
+                latest = Math.max(latest, start + numberOfReports * intervalMillis + allowedLatenessMillis);
+            }
+        }
+
+        // Move the time of the stream on once per batch.
+        if(latest > streamTime.getAndAccumulate(latest, Math::max)){
+            streamTimeSeenAt = System.currentTimeMillis();
+        }
+        long previous = highestWindow.getAndAccumulate(highest, Math::max);
+        for(long window = previous + 1; window <= highest; window++){
+            PipelineEvents.Interval event = new PipelineEvents.Interval();
+            event.begin();
+            intervalEvents.put(window, event);
+        }
+
+        if(late > 0){
+            lateMessages.addAndGet(late);
+            LATE.add(late);
+        }
+        if(past > 0){
+            pastLastReport.addAndGet(past);
+            PAST_LAST_REPORT.add(past);
+        }
+        if(outliers > 0){
+            OUTLIERS.add(outliers);
+        }
+        TAKEN.add(taken);
+        COUNT_TIME.record(System.nanoTime() - began);
+    }
+
+    /**
+     * closableWindow finds the highest window the time of the stream has passed the end of, by the allowed lateness.
+     * @param idle - Flag to indicate no message arrived for the poll time, the wall clock time since the latest
+     *             timestamp was seen is then added to the time of the stream.
+     * @return the highest window that can be closed, -1 if there is none.
+     */
+    private long closableWindow(boolean idle){
+
+        long start = origin.get();
+        long time = streamTime.get();
+        if(start == NOT_SET || time == NOT_SET){
+            return -1;
+        }
+        long streamTimeNow = idle ? time + Math.max(0, System.currentTimeMillis() - streamTimeSeenAt) : time;
+        long through = Math.floorDiv(streamTimeNow - allowedLatenessMillis - start, intervalMillis) - 1;
+
+        // Note when each newly closable window was due, to measure how long its report took to be written. A bounded
+        // run has no reports past the last one to note.
+        if(numberOfReports != IntervalScheduler.CONTINUOUS){
+            through = Math.min(through, numberOfReports - 1);
+        }
+        long previous = highestClosable.getAndAccumulate(through, Math::max);
+        for(long window = previous + 1; window <= through; window++){
+            closableAt.putIfAbsent(window, dueAt(window, start, time));
+        }
+        return through;
+    }
+
+    /**
+     * close hands the partial aggregates of the windows up to the given window over to be merged, and writes the
+     * reports of the windows every worker has now closed.
+     * @param worker - The worker, its lock must be held.
+     * @param through - The highest window to close.
+     */
+    private void close(Worker worker, long through){
+
+        if(through <= closedThrough.get(worker.index)){
+            return;
+        }
+
+        Iterator<Map.Entry<Long, IntervalAggregate>> windows = worker.open.entrySet().iterator();
+        while(windows.hasNext()){
+            Map.Entry<Long, IntervalAggregate> window = windows.next();
+            if(window.getKey() <= through){
+                closing.merge(window.getKey(), window.getValue(), (merged, partial) -> {
+                    merged.merge(partial);
+                    return merged;
+                });
+                windows.remove();
+            }
+        }
+        closedThrough.set(worker.index, through);
+        writeClosedReports();
+    }
+
+    /**
+     * writeClosedReports hands the report of each window every worker has closed to the report writer, in window
+     * order. Windows no message was counted in get an empty report.
+     */
+    private synchronized void writeClosedReports(){
+
+        long through = Long.MAX_VALUE;
+        for(int i = 0; i < closedThrough.length(); i++){
+            through = Math.min(through, closedThrough.get(i));
+        }
+
+        // Once every worker has stopped only the windows that had messages are left to report.
+        if(through == Long.MAX_VALUE){
+            through = highestWindow.get();
+        }
+
+        while(nextReport <= through && !finished){
+            IntervalAggregate aggregate = closing.remove(nextReport);
+            if(aggregate == null){
+                aggregate = new IntervalAggregate(config);
+            }
+            aggregate.lateMessages = lateMessages.getAndSet(0);
+            if(numberOfReports != IntervalScheduler.CONTINUOUS && nextReport == numberOfReports - 1){
+                // The messages counted past the end of the run so far are shown on the last report.
+                aggregate.messagesPastLastReport = pastLastReport.getAndSet(0);
+            }
+
+            PipelineEvents.Interval event = intervalEvents.remove(nextReport);
+            if(event != null && event.shouldCommit()){
+                event.reportNumber = nextReport;
+                event.messages = aggregate.reportTweetCount;
+                event.lateMessages = aggregate.lateMessages;
+                event.commit();
+            }
+
+            // Archive, slide and save the sketches on the report writer so the window aggregate isn't changed while a
+            // report is built, the sketches are saved once the report is handed to the sink so they don't hold it up.
+            IntervalAggregate pane = aggregate;
+            int reportNumber = (int) nextReport;
+            Long due = closableAt.remove(nextReport);
+            long paneStart = origin.get() + nextReport * intervalMillis;
+            reportWriter.execute(() -> {
+                limitTrack = pane.settleLimitNotices(limitTrack);
+                archive(pane, paneStart);
+                IntervalAggregate report = slidingWindow == null ? pane : slidingWindow.slide(pane);
+                sink.submit(new ReportGenerator(report, rawTweets, reportNumber, config)
+                        .report(due != null ? due : 0));
+                pane.saveSketches(config.sketchDirectory, paneStart);
+            });
+
+            nextReport++;
+            if(numberOfReports != IntervalScheduler.CONTINUOUS && nextReport == numberOfReports){
+                finished = true;
+            }
+        }
+    }
+
+    /**
+     * archive appends a closed interval to the archive, if intervals are archived. Only called by the report writer.
+     * @param pane - The counts of the interval.
+     * @param start - The start of the interval, in milliseconds since the epoch.
+     */
+    private void archive(IntervalAggregate pane, long start){
+        if(archive == null){
+            return;
+        }
+        try{
+            archive.append(pane, start, start + intervalMillis);
+        }catch (IOException e){
+            System.out.println("Unable to archive the interval starting at " + start + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * closeArchive closes the archive, if intervals are archived. Only called by the report writer.
+     */
+    private void closeArchive(){
+        if(archive == null){
+            return;
+        }
+        try{
+            archive.close();
+        }catch (IOException e){
+            System.out.println("Unable to close the interval archive: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Worker is the state of one worker, the partial aggregates of the windows it has open. The lock is held by the
+     * worker while it counts a batch and closes its windows, and by another worker closing its windows for it while
+     * it waits for messages.
+     */
+    private static final class Worker {
+
+        // The index of the worker.
+        final int index;
+
+        // The partial aggregates of the windows the worker has open.
+        final Map<Long, IntervalAggregate> open = new HashMap<>();
+
+        // Held while the open windows are used.
+        final ReentrantLock lock = new ReentrantLock();
+
+        Worker(int index){
+            this.index = index;
+        }
+    }
+}
@@ -1,10 +1,7 @@
 package com.twitterStatReporter;
 
-import twitter4j.TwitterStream;
-
 import java.util.HashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
@@ -13,56 +10,86 @@ import java.util.concurrent.ScheduledExecutorService;
  * GatheringThread is used to create a thread that will gather tweets from the stream using TwitterStream.
  * The constructor takes the users credentials, totalRunTime, IntervalRunTime, and a flag to indicate that
  * the user would like the reports written to file or outputted to the terminal. It then creates an authenticated
- * stream for the program to sample tweets from. When a thread is created using this class it will create a new
- * rawSampleStream used to gather tweets in their JSON form and add them to a blocking queue that the intervalThread
- * will gather from. It then creates a future object to interrupt the gathering thread after totalRunTime has elapsed.
- * Finally it calls IntervalScheduler to schedule the interval and report generator threads.
+ * stream for the program to sample tweets from. Alternatively it can be passed any other TweetSource, such as a
+ * ReplayTweetSource, to gather tweets from. When a thread is created using this class it will run the tweet source
+ * used to gather tweets in their JSON form and add them to a TweetHandoff that the EventTimeWindows workers take them
+ * from. It then creates a future object to interrupt the gathering thread after totalRunTime has elapsed, unless it is
+ * running continuously. Finally it calls IntervalScheduler to start the window workers and the report writer. A
+ * shutdown hook stops the tweet source and writes the report of the interval in progress when the program is stopped,
+ * for example by SIGTERM.
  */
 public class GatheringThread implements Runnable{
 
-    // Authenticated stream.
-    private final TwitterStream authStream;
+    // The most time, in seconds, the shutdown hook waits for the in progress reports to be written.
+    private static final int SHUTDOWN_TIMEOUT = 30;
+
+    // Source of the raw tweets, either the authenticated sample stream or a recorded capture.
+    private final TweetSource tweetSource;
 
     // Total runtime of the program.
     private final int totalRunTime;
 
-    // Interval runtime that the intervalThread will use.
+    // The length of each interval, in seconds, the windows are reported over.
     private final int intervalRunTime;
 
-    // The number of reports that will need to be generated.
+    // The number of reports that will need to be generated, IntervalScheduler.CONTINUOUS when running continuously.
     private final int numberOfReports;
 
     // Flag used to indicate that the user wants the reports written to the terminal or to a file.
     private final int writeToFile;
 
+    // The loaded config file, used for the report tuning options.
+    private final ConfigFileReader config;
+
     /**
      *
      * @param userCreds - Hashmap that holds the user credentials in the form of (tokentype, key)
      * @param totalRunTime - total runtime, in seconds, that the program should run.
-     * @param intervalRunTime - total run time an interval thread should last gathering tweets.
+     * @param intervalRunTime - The length of each interval, in seconds, a report is written for.
      * @param writeToFile - Flag used to indicate if a user would like the report written to the terminal (1) or
      *                    to file (2).
+     * @param config - The loaded config file, used for the report tuning options.
      */
-    public GatheringThread(HashMap<String, String> userCreds, int totalRunTime, int intervalRunTime, int writeToFile){
+    public GatheringThread(HashMap<String, String> userCreds, int totalRunTime, int intervalRunTime, int writeToFile,
+                           ConfigFileReader config){
+
+        // Create the authenticated auth stream and sample it, capturing it if a capture directory is set.
+        this(new gatherRawSampleStream(new AuthStreamBuilder().authenticate(userCreds, config.streamBaseURL),
+                config.handoff.create(config.ingestQueueCapacity, config.overloadPolicy, config.waitStrategy),
+                CaptureLog.start(config)),
+                totalRunTime,
+                intervalRunTime, writeToFile, config);
+    }
 
-        // Create a new AuthStreamBuilder
-        AuthStreamBuilder authStreamBuilder = new AuthStreamBuilder();
+    /**
+     *
+     * @param tweetSource - The source the raw tweets should be gathered from.
+     * @param totalRunTime - total runtime, in seconds, that the program should run.
+     * @param intervalRunTime - The length of each interval, in seconds, a report is written for.
+     * @param writeToFile - Flag used to indicate if a user would like the report written to the terminal (1) or
+     *                    to file (2).
+     * @param config - The loaded config file, used for the report tuning options.
+     */
+    public GatheringThread(TweetSource tweetSource, int totalRunTime, int intervalRunTime, int writeToFile,
+                           ConfigFileReader config){
 
-        // Create the authenticated auth stream.
-        this.authStream = authStreamBuilder.authenticate(userCreds);
+        // Set the tweet source.
+        this.tweetSource = tweetSource;
 
         // Set total run time of the gathering thread.
         this.totalRunTime = totalRunTime;
 
-        // Set the interval run time that the interval threads will use.
+        // Set the length of the intervals the windows are reported over.
         this.intervalRunTime = intervalRunTime;
 
-        // Calculate the total number of reports.
-        this.numberOfReports = totalRunTime/intervalRunTime;
+        // Calculate the total number of reports, there is no limit when running continuously.
+        this.numberOfReports = config.continuous ? IntervalScheduler.CONTINUOUS : totalRunTime/intervalRunTime;
 
         // Store the users option to have the reports written to file or to the terminal.
         this.writeToFile = writeToFile;
 
+        // Store the config file for the report tuning options.
+        this.config = config;
     }
     @Override
     public void run() {
@@ -71,32 +98,46 @@ public class GatheringThread implements Runnable{
             //Create a new executor service to stop the stream after a period of time.
             ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
 
-            // Reporters stream sampler.
-            gatherRawSampleStream sampleStream = new gatherRawSampleStream(authStream);
-
-            // Set the blocking queue here to the main queue in the gatherRawSampleStream.
+            // Set the blocking queue here to the main queue in the tweet source.
             // Blocking queue to hold the raw tweets.
-            BlockingQueue<String> rawTweets = sampleStream.rawTweets;
+            TweetHandoff rawTweets = tweetSource.rawTweets();
 
-            // Submit the sampleStream job to be stopped after the given amount of time.
-            Future<?> future = executor.submit(sampleStream);
+            // Submit the tweet source job to be stopped after the given amount of time.
+            Future<?> future = executor.submit(tweetSource);
 
             // We need to wait for tweets to start filling up the blocking queue in order to start processing them.
             while(rawTweets.isEmpty()){
                 Thread.sleep(500);
             }
 
+            // Publish the metrics of the pipeline.
+            MetricsReporter metrics = MetricsReporter.start(config, rawTweets);
+
             // Create an interval scheduler to schedule a thread to gather tweets in a given interval.
-            IntervalScheduler scheduler = new IntervalScheduler(numberOfReports, intervalRunTime, rawTweets, writeToFile);
+            IntervalScheduler scheduler = new IntervalScheduler(numberOfReports, intervalRunTime, rawTweets, writeToFile,
+                    config);
 
             // Create the schedules.
             scheduler.scheduler();
 
-            //Set the total runtime the stream should be open.
-            executor.schedule(() -> {
+            // When the program is stopped, stop the tweet source and write the report of the interval in progress.
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 future.cancel(true);
-
-            }, this.totalRunTime, TimeUnit.SECONDS);
+                try {
+                    scheduler.shutdown(SHUTDOWN_TIMEOUT);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                metrics.stop();
+            }, "shutdown"));
+
+            //Set the total runtime the stream should be open, a continuous run stays open until it is stopped.
+            if(numberOfReports != IntervalScheduler.CONTINUOUS){
+                executor.schedule(() -> {
+                    future.cancel(true);
+
+                }, this.totalRunTime, TimeUnit.SECONDS);
+            }
             executor.shutdown();
 
         }catch (Exception e){
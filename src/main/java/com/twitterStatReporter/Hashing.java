@@ -0,0 +1,46 @@
+package com.twitterStatReporter;
+
+/**
+ * Hashing holds the 64 bit hash functions shared by the sketches. String.hashCode only has 32 bits and clusters for
+ * similar strings, which is not enough for a HyperLogLog that looks at the leading zeros of the hash or for a
+ * Count-Min Sketch that derives several row indexes from one hash. The hashes are stable across runs so sketches
+ * that are saved and merged later agree on where each value lands.
+ */
+public final class Hashing {
+
+    // FNV-1a 64 bit offset basis and prime.
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing(){
+    }
+
+    /**
+     * hash64 hashes the characters of a string, FNV-1a over the UTF-16 characters followed by the mix64 finalizer to
+     * spread the bits.
+     * @param value - The string to hash.
+     * @return the 64 bit hash.
+     */
+    static long hash64(CharSequence value){
+        long hash = FNV_OFFSET;
+        for(int i = 0; i < value.length(); i++){
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return mix64(hash);
+    }
+
+    /**
+     * mix64 is the MurmurHash3 64 bit finalizer, every input bit affects every output bit. Used directly to hash
+     * numeric ids.
+     * @param value - The value to mix.
+     * @return the mixed value.
+     */
+    static long mix64(long value){
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,204 @@
+package com.twitterStatReporter;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HostExtractor reads the host out of an expanded url by scanning its characters, instead of building a java.net.URI
+ * for every url. The host is lower cased and a leading www. is removed, so www.YouTube.com and youtube.com are counted
+ * as the same domain. Urls whose authority can't be read are counted as malformed and have no host, rather than
+ * throwing and losing the rest of the tweet.
+ *
+ * The hosts of the most recently seen authorities, the part of the url between the scheme and the path, are kept in a
+ * fixed size cache so the host of a popular site is found without creating any strings, and every url of the site
+ * gets the same host instance. The cache is set associative: an authority can only be kept in the WAYS slots of the
+ * set its hash picks, the ways of each set are kept in least recently used order and the last is evicted. An
+ * extractor is not thread safe, each counting thread uses its own.
+ */
+final class HostExtractor {
+
+    // The number of authorities cached, and the number of slots each authority can be kept in.
+    private static final int CACHE_SIZE = 1024;
+    private static final int WAYS = 4;
+    private static final int SET_MASK = CACHE_SIZE / WAYS - 1;
+
+    // The number of urls whose host could not be read, across every extractor.
+    private static final LongAdder MALFORMED = Metrics.counter("twitterstats_urls_malformed_total",
+            "Expanded urls whose host could not be read.");
+
+    // The cached authorities, their hash codes and their hosts, by set * WAYS + way with the most recently used way
+    // of each set first.
+    private final String[] authorities = new String[CACHE_SIZE];
+    private final int[] hashes = new int[CACHE_SIZE];
+    private final String[] hosts = new String[CACHE_SIZE];
+
+    /**
+     * host reads the host of a url.
+     * @param url - The url.
+     * @return the lower cased host without a leading www., or null if the url has no host or is malformed.
+     */
+    String host(String url){
+
+        int length = url.length();
+
+        // Skip the scheme, urls without one or without an authority after it have no host.
+        int pos = 0;
+        while(pos < length && isSchemeChar(url.charAt(pos), pos)){
+            pos++;
+        }
+        if(pos == 0 || pos + 2 >= length || url.charAt(pos) != ':' || url.charAt(pos + 1) != '/'
+                || url.charAt(pos + 2) != '/'){
+            // A url starting with a colon has an empty scheme.
+            if(length > 0 && url.charAt(0) == ':'){
+                MALFORMED.increment();
+            }
+            return null;
+        }
+
+        // The authority runs until the path, query or fragment.
+        int start = pos + 3;
+        int end = start;
+        int hash = 0;
+        char c;
+        while(end < length && (c = url.charAt(end)) != '/' && c != '?' && c != '#'){
+            hash = 31 * hash + c;
+            end++;
+        }
+
+        int set = (mix(hash) & SET_MASK) * WAYS;
+        for(int way = 0; way < WAYS; way++){
+            String authority = authorities[set + way];
+            if(authority != null && hashes[set + way] == hash && authority.length() == end - start
+                    && url.regionMatches(start, authority, 0, end - start)){
+                String host = hosts[set + way];
+                moveToFront(set, way, authority, hash, host);
+                return host;
+            }
+        }
+
+        String host = readHost(url, start, end);
+        if(host != null){
+            moveToFront(set, WAYS - 1, url.substring(start, end), hash, host);
+        }
+        return host;
+    }
+
+    /**
+     * readHost reads the host out of an authority, dropping any user info and port.
+     * @param url - The url.
+     * @param start - The start of the authority.
+     * @param end - The end of the authority.
+     * @return the normalised host, or null if there is none or the authority is malformed.
+     */
+    private static String readHost(String url, int start, int end){
+
+        // The host follows the user info, if there is any.
+        int hostStart = start;
+        for(int i = start; i < end; i++){
+            if(url.charAt(i) == '@'){
+                hostStart = i + 1;
+            }
+        }
+
+        int hostEnd;
+        if(hostStart < end && url.charAt(hostStart) == '['){
+            // An IPv6 address is kept with its brackets, the way URI.getHost returns it.
+            hostEnd = url.indexOf(']', hostStart);
+            if(hostEnd < 0 || hostEnd >= end){
+                MALFORMED.increment();
+                return null;
+            }
+            hostEnd++;
+        }else{
+            hostEnd = hostStart;
+            char c;
+            while(hostEnd < end && (c = url.charAt(hostEnd)) != ':'){
+                if(!isHostChar(c)){
+                    MALFORMED.increment();
+                    return null;
+                }
+                hostEnd++;
+            }
+        }
+
+        // Anything after the host must be a port.
+        if(hostEnd < end && url.charAt(hostEnd) != ':'){
+            MALFORMED.increment();
+            return null;
+        }
+        for(int i = hostEnd + 1; i < end; i++){
+            if(url.charAt(i) < '0' || url.charAt(i) > '9'){
+                MALFORMED.increment();
+                return null;
+            }
+        }
+        if(hostStart == hostEnd){
+            return null;
+        }
+
+        String host = url.substring(hostStart, hostEnd);
+        for(int i = 0; i < host.length(); i++){
+            if(Character.isUpperCase(host.charAt(i))){
+                host = host.toLowerCase(Locale.ROOT);
+                break;
+            }
+        }
+        if(host.length() > 4 && host.startsWith("www.")){
+            host = host.substring(4);
+        }
+        return host;
+    }
+
+    /**
+     * moveToFront makes an authority the most recently used way of its set, shifting the more recently used ways
+     * back one, the way at the given position is overwritten.
+     * @param set - The first slot of the set.
+     * @param way - The way the authority was found in, or the last way to evict it.
+     * @param authority - The authority.
+     * @param hash - The hash code of the authority.
+     * @param host - The host of the authority.
+     */
+    private void moveToFront(int set, int way, String authority, int hash, String host){
+
+        if(way > 0){
+            System.arraycopy(authorities, set, authorities, set + 1, way);
+            System.arraycopy(hashes, set, hashes, set + 1, way);
+            System.arraycopy(hosts, set, hosts, set + 1, way);
+        }
+        authorities[set] = authority;
+        hashes[set] = hash;
+        hosts[set] = host;
+    }
+
+    /**
+     * isSchemeChar checks if a character can be part of a url scheme, which must start with a letter.
+     * @param c - The character.
+     * @param index - The position of the character in the scheme.
+     * @return true if the character can be at that position of a scheme.
+     */
+    private static boolean isSchemeChar(char c, int index){
+        boolean letter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        return letter || (index > 0 && ((c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.'));
+    }
+
+    /**
+     * isHostChar checks if a character can be part of a host name. Non ascii characters are allowed so
+     * internationalised domain names are kept.
+     * @param c - The character.
+     * @return true if the character can be part of a host.
+     */
+    private static boolean isHostChar(char c){
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.'
+                || c == '_' || c > 0x7f;
+    }
+
+    /**
+     * mix spreads the bits of a hash code so that authorities with similar hash codes don't share a set.
+     * @param hash - The hash code.
+     * @return the mixed hash.
+     */
+    private static int mix(int hash){
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
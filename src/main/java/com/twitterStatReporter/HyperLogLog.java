@@ -0,0 +1,128 @@
+package com.twitterStatReporter;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog estimates the number of distinct values added in a fixed amount of memory (Flajolet, Fusy, Gandouet and
+ * Meunier). The hash of each value picks one of 2^precision registers and the register keeps the longest run of
+ * leading zeros seen in the rest of the hash, the harmonic mean of the registers gives the estimate. The standard
+ * error is 1.04 / sqrt(2^precision), linear counting is used while many registers are still empty so small intervals
+ * are estimated accurately too.
+ *
+ * Estimators with the same precision can be merged by taking the larger of each register, the merged estimator is the
+ * same as one that saw both streams, so the distinct counts of several intervals can be combined later.
+ */
+public final class HyperLogLog implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // The number of hash bits used to pick the register.
+    private final int precision;
+
+    // The registers, the longest run of leading zeros plus one seen for each.
+    private final byte[] registers;
+
+    /**
+     *
+     * @param precision - The number of hash bits used to pick a register, between 4 and 18. Each extra bit doubles
+     *                  the memory used and divides the error by sqrt(2).
+     */
+    public HyperLogLog(int precision){
+
+        if(precision < 4 || precision > 18){
+            throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 18: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * add adds a string value.
+     * @param value - The value to add.
+     */
+    public void add(String value){
+        addHash(Hashing.hash64(value));
+    }
+
+    /**
+     * add adds a numeric value, such as a user id.
+     * @param value - The value to add.
+     */
+    public void add(long value){
+        addHash(Hashing.mix64(value));
+    }
+
+    /**
+     * addHash updates the register picked by the top bits of the hash with the leading zeros of the remaining bits.
+     * @param hash - The 64 bit hash of the value.
+     */
+    private void addHash(long hash){
+
+        int index = (int) (hash >>> (64 - precision));
+
+        // The guard bit caps the run of zeros if every remaining bit is 0.
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if(rank > registers[index]){
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * estimate returns the estimated number of distinct values added.
+     * @return the estimated distinct count.
+     */
+    public long estimate(){
+
+        int m = registers.length;
+        double sum = 0;
+        int emptyRegisters = 0;
+        for(byte register : registers){
+            sum += 1.0 / (1L << register);
+            if(register == 0){
+                emptyRegisters++;
+            }
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+
+        // Use linear counting for small cardinalities where the raw estimate is biased.
+        if(estimate <= 2.5 * m && emptyRegisters > 0){
+            estimate = m * Math.log((double) m / emptyRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * merge combines the registers of another estimator into this one.
+     * @param other - The estimator to merge, it must have the same precision.
+     */
+    public void merge(HyperLogLog other){
+
+        if(other.precision != precision){
+            throw new IllegalArgumentException("Cannot merge a HyperLogLog with precision " + other.precision
+                    + " into one with precision " + precision);
+        }
+        for(int i = 0; i < registers.length; i++){
+            if(other.registers[i] > registers[i]){
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * clear resets every register, leaving the estimator as if nothing had been added.
+     */
+    public void clear(){
+        Arrays.fill(registers, (byte) 0);
+    }
+
+    /**
+     * relativeError returns the standard error of the estimate relative to the true count, 1.04 / sqrt(2^precision).
+     * @return the relative standard error.
+     */
+    public double relativeError(){
+        return 1.04 / Math.sqrt(registers.length);
+    }
+}
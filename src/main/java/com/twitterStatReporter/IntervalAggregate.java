@@ -0,0 +1,518 @@
+package com.twitterStatReporter;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * IntervalAggregate holds the counts a report is built from: the language, hashtag, url domain and user mention
+ * counters, the number of tweets with urls, photos and retweets, the message handlers that count each type of stream
+ * message, and the interval's sketches if they are turned on. Each message is classified by its top level key and
+ * routed to the MessageHandler for its type, statuses have their report fields pulled out by a TweetFieldExtractor
+ * and counted.
+ *
+ * An aggregate is only ever used by one thread. The EventTimeWindows stage splits the tweets of an interval between
+ * several workers, each counting into its own partial aggregate, and merges the partials into one once the interval
+ * closes. A SlidingWindow adds the aggregate of each interval to the aggregate of its window and subtracts the one
+ * that slid out.
+ *
+ * One in every PARSE_SAMPLE statuses has the time its fields took to extract recorded, in the Metrics and as a
+ * TweetParse flight recorder event, so the parse time can be watched without reading the clock twice for every tweet.
+ *
+ * When the AdaptiveSampler is shedding load only a fraction of the statuses are extracted and counted, every status is
+ * still counted by its message handler. Each extracted status is counted as the 1 / rate statuses it stands for, at
+ * the rate in effect when it was sampled, so the counts and tallies are Horvitz-Thompson estimates over every status
+ * even when the rate changes during the interval. The counters only hold whole numbers, so a status's values are
+ * counted 1 / rate times rounded up or down at random, which is 1 / rate times on average.
+ */
+public class IntervalAggregate {
+
+    // One in this many statuses has its parse time recorded, a power of two.
+    private static final int PARSE_SAMPLE = 64;
+
+    // Metrics of the parser, shared by every aggregate.
+    private static final LatencyHistogram PARSE_TIME = Metrics.histogram("twitterstats_parse_seconds",
+            "Time to extract the report fields of a status, sampled.");
+    // The host extractor of each counting thread, so its cache of hosts outlives the aggregate of each interval.
+    private static final ThreadLocal<HostExtractor> HOSTS = ThreadLocal.withInitial(HostExtractor::new);
+
+    private static final LongAdder UNPARSABLE = Metrics.counter("twitterstats_statuses_unparsable_total",
+            "Statuses whose report fields could not be extracted.");
+    private static final LongAdder SAMPLED_OUT = Metrics.counter("twitterstats_statuses_sampled_out_total",
+            "Statuses skipped by the adaptive sampler.");
+
+    // Counter to hold language and occurrences of that language.
+    final LanguageCounter languageOccurrences;
+
+    // Counter to hold hashtags and their occurrences
+    final OccurrenceCounter hashtagOccurrences;
+
+    // Counter to hold hostnames and their occurrences
+    final OccurrenceCounter hostnameOccurrences;
+
+    // Counter to hold the user mentions and their occurrences.
+    final OccurrenceCounter userMentionOccurrences;
+
+    // The number of tweets that contain a url.
+    float numberOfTweetsWithURL = 0;
+
+    // The number of tweets that contain a photo url.
+    float numberOfTweetsWithPhoto = 0;
+
+    // The number of tweets that have been retweeted.
+    float numberOfTweetsRetweeted = 0;
+
+    // Number of tweets captured this interval
+    int reportTweetCount = 0;
+
+    // Number of tweets that weren't deleted
+    float actualTweetCount = 0;
+
+    // Number of statuses that could not be parsed.
+    int unparsableTweets = 0;
+
+    // The number of messages that arrived after their interval was closed, since the previous report was written.
+    long lateMessages = 0;
+
+    // The number of messages of a bounded run whose window came after the last report, only set on the last report.
+    long messagesPastLastReport = 0;
+
+    // The number of statuses whose fields were extracted and counted, fewer than the statuses seen when sampled.
+    long statusesSampled = 0;
+
+    // The number of extracted statuses that weren't deleted, not weighted, the size of the sample when sampled.
+    long actualTweetsSampled = 0;
+
+    // Handlers for each type of message, indexed by the ordinal of the message type.
+    final MessageHandler[] messageHandlers;
+
+    // The approximate aggregators of the interval, null if sketches are turned off.
+    final IntervalSketches sketches;
+
+    // Extractor used to pull the report fields out of each raw tweet.
+    private final TweetFieldExtractor extractor;
+
+    // Reused holder for the fields of the tweet currently being processed.
+    private final TweetFields tweetFields;
+
+    // The number of statuses extracted, used to pick the ones whose parse time is recorded.
+    private int statusesExtracted = 0;
+
+    // The fraction of statuses to extract for the message being processed.
+    private double samplingRate = 1.0;
+
+    // The number of statuses the status being processed stands for, and the whole number of times its values are
+    // counted, 1 unless it was sampled.
+    private double weight = 1;
+    private int occurrences = 1;
+
+    /**
+     *
+     * @param config - The loaded config file, used for the parser, counter budgets and sketch options.
+     */
+    public IntervalAggregate(ConfigFileReader config){
+
+        // Create a counter to hold the language occurrences
+        this.languageOccurrences = new LanguageCounter();
+
+        // Create a counter to hold the hashtag occurrences, only the heavy hitters are kept if a budget was set.
+        this.hashtagOccurrences = createCounter(config.hashtagCounters);
+
+        // Create a counter to hold the hostname occurrences
+        this.hostnameOccurrences = createCounter(config.domainCounters);
+
+        // Create a counter to hold the user mention occurrences.
+        this.userMentionOccurrences = createCounter(config.userMentionCounters);
+
+        // Create the extractor selected in the config file and the holder it fills in.
+        this.extractor = config.parser.create();
+        this.tweetFields = new TweetFields();
+
+        // Create the sketches if they were turned on in the config file.
+        this.sketches = config.sketches
+                ? new IntervalSketches(config.countMinWidth, config.countMinDepth, config.hyperLogLogPrecision)
+                : null;
+
+        // Create the handler for each type of message, the sampled statuses are handled by processStatus.
+        this.messageHandlers = new MessageHandler[MessageType.values().length];
+        for(MessageType type : MessageType.values()){
+            messageHandlers[type.ordinal()] = new MessageHandler(type);
+        }
+        messageHandlers[MessageType.STATUS.ordinal()] = new MessageHandler(MessageType.STATUS){
+            @Override
+            void handle(String rawJSON) {
+                super.handle(rawJSON);
+                if(samplingRate >= 1){
+                    weight = 1;
+                    occurrences = 1;
+                    statusesSampled++;
+                    processStatus(rawJSON);
+                }else if(ThreadLocalRandom.current().nextDouble() < samplingRate){
+                    // The status stands for 1 / rate statuses, its values are counted that many times on average.
+                    weight = 1 / samplingRate;
+                    occurrences = (int) weight
+                            + (ThreadLocalRandom.current().nextDouble() < weight - (int) weight ? 1 : 0);
+                    statusesSampled++;
+                    processStatus(rawJSON);
+                }else{
+                    SAMPLED_OUT.increment();
+                }
+            }
+        };
+        messageHandlers[MessageType.LIMIT.ordinal()] = new LimitHandler();
+        messageHandlers[MessageType.WARNING.ordinal()] = new WarningHandler();
+    }
+
+    /**
+     * createCounter creates the counter for a report field. Fields with a memory budget are counted with a
+     * SpaceSavingCounter that only keeps the heavy hitters, every other field is counted exactly.
+     * @param budget - The number of counters the field may use, 0 to count every value exactly.
+     * @return the counter for the field.
+     */
+    private static OccurrenceCounter createCounter(int budget){
+        return budget > 0 ? new SpaceSavingCounter(budget) : new StringCounter();
+    }
+
+    /**
+     * processTweet processes a single raw message from the interval. The message is classified by its top level key
+     * and routed to the handler for its type.
+     * @param tweet - The raw json of the message.
+     */
+    void processTweet(String tweet){
+
+        // Keep track of the number of tweets processed during this interval.
+        reportTweetCount++;
+
+        messageHandlers[MessageClassifier.classify(tweet).ordinal()].handle(tweet);
+    }
+
+    /**
+     * processTweet processes a single raw message, extracting the fields of a status with the given probability.
+     * @param tweet - The raw json of the message.
+     * @param samplingRate - The fraction of statuses to extract, 1 to extract them all.
+     */
+    void processTweet(String tweet, double samplingRate){
+        this.samplingRate = samplingRate;
+        processTweet(tweet);
+    }
+
+    /**
+     * settleLimitNotices counts the tweets the limit notices of the interval show were missed, once every worker's
+     * part of the interval has been merged. The intervals must be settled in time order.
+     * @param previousTrack - The track count of the last limit notice of the intervals before, 0 if there was none.
+     * @return the track count of the last limit notice, to settle the next interval with.
+     */
+    long settleLimitNotices(long previousTrack){
+        return ((LimitHandler) messageHandlers[MessageType.LIMIT.ordinal()]).settle(previousTrack);
+    }
+
+    /**
+     * saveSketches saves the sketches of the interval to the sketch directory, so SketchQuery can merge them with the
+     * sketches of other intervals. Nothing is saved if sketches are turned off or no sketch directory was set.
+     * @param sketchDirectory - The directory the sketches are saved to, or null.
+     * @param start - The start of the interval, in milliseconds since the epoch.
+     */
+    void saveSketches(String sketchDirectory, long start){
+
+        if(sketches == null || sketchDirectory == null){
+            return;
+        }
+        try {
+            sketches.write(IntervalSketches.file(Paths.get(sketchDirectory), start));
+        } catch (IOException e) {
+            System.out.println("Unable to save the sketches of the interval starting at " + start + ": "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * isSampled checks if only some of the statuses of the aggregate were extracted and counted.
+     * @return true if the counts of the report fields are from a sample.
+     */
+    boolean isSampled(){
+        return statusesSampled < messageHandlers[MessageType.STATUS.ordinal()].messages;
+    }
+
+    /**
+     * processStatus extracts the report fields from a status and counts them with languageGrabber and
+     * entitiesGrabber.
+     * @param tweet - The raw json of the status.
+     */
+    private void processStatus(String tweet){
+
+        // Pull the report fields out of the tweet, counting the statuses that can't be parsed.
+        try {
+            if((statusesExtracted++ & (PARSE_SAMPLE - 1)) == 0){
+                PipelineEvents.TweetParse event = new PipelineEvents.TweetParse();
+                event.begin();
+                long start = System.nanoTime();
+                extractor.extract(tweet, tweetFields);
+                PARSE_TIME.record(System.nanoTime() - start);
+                if(event.shouldCommit()){
+                    event.length = tweet.length();
+                    event.hashtags = tweetFields.hashtagCount;
+                    event.urls = tweetFields.urlCount;
+                    event.userMentions = tweetFields.userMentionCount;
+                    event.commit();
+                }
+            }else{
+                extractor.extract(tweet, tweetFields);
+            }
+        } catch (IllegalArgumentException e) {
+            unparsableTweets++;
+            UNPARSABLE.increment();
+            return;
+        }
+
+        // Store the language.
+        languageGrabber(tweetFields);
+
+        // Add the author to the distinct users.
+        if(sketches != null && tweetFields.userId >= 0){
+            sketches.addUser(tweetFields.userId);
+        }
+
+        // Count the entities section
+        entitiesGrabber(tweetFields);
+
+        // Document if this was an actual tweet and not a deleted one.
+        actualTweetCount += weight;
+        actualTweetsSampled++;
+    }
+
+    /**
+     * Language grabber is used to grab the lang field extracted from the twitters json. This field holds the language
+     * of that tweet. Here we grab the field and increment its count in the languageOccurrences counter.
+     * @param tweet - The fields extracted from the tweet.
+     */
+    void languageGrabber(TweetFields tweet){
+
+        // Grab the lang section, tweets without one aren't counted.
+        String language = tweet.language;
+        if(language == null){
+            return;
+        }
+
+        // Increment the count of the language once for each status the tweet stands for.
+        languageOccurrences.add(language, occurrences);
+    }
+
+    /**
+     * entitiesGrabber is used to count the information extracted from the entities and extended_entities sections of
+     * a tweet such as hashtags, urls, user_mentions, retweet_count. It passes the extracted fields to the
+     * corresponding functions to process the information contained within.
+     * @param tweet - The fields extracted from the tweet.
+     */
+    void entitiesGrabber(TweetFields tweet) {
+
+        // If one of the extended entities was a photo count it.
+        numberOfTweetsWithPhoto(tweet);
+
+        // If there are hashtags present parse them.
+        if(tweet.hashtagCount > 0){
+            // Parse our the hashtags from the hashtag array.
+            hashtagsArrayParser(tweet);
+        }
+
+        // If the urls section contains urls parse them.
+        if(tweet.urlCount > 0){
+            this.numberOfTweetsWithURL += weight;
+            urlDomainParser(tweet);
+        }
+
+        // If the user mentions section contains user mentions parse them.
+        if(tweet.userMentionCount > 0){
+            userMentionParser(tweet);
+        }
+
+        // If the tweet was retweeted, increment the counter.
+        if(tweet.retweetCount > 0){
+            numberOfTweetsRetweeted += weight;
+        }
+    }
+
+    /**
+     * hashtagsArrayParser parses the array that contains the hashtag strings and increments the count of each
+     * hashtag in the hashtagOccurrences counter.
+     * @param tweet - The fields extracted from the tweet, holding its hashtags.
+     */
+    private void hashtagsArrayParser(TweetFields tweet){
+
+        for(int i = 0; i < tweet.hashtagCount; i++){
+
+            // Grab the text field from the hashtag object, this is the actual hashtag minus the # symbol
+            String hashtagText = tweet.hashtags[i];
+
+            // Increment the count of the hashtag once for each status the tweet stands for.
+            hashtagOccurrences.add(hashtagText, occurrences);
+            if(sketches != null){
+                sketches.addHashtag(hashtagText, occurrences);
+            }
+        }
+    }
+
+    /**
+     * urlDomainParser attempts to parse the url information contained in the urls section of a tweet. This function
+     * attempts to grab the url that is contained within the expanded_url section. It then uses the HostExtractor of
+     * the thread to get the domain information, and increments the count of the hostname in the hostnameOccurrences
+     * counter. Malformed urls are counted by the HostExtractor and skipped.
+     * @param tweet - The fields extracted from the tweet, holding the expanded urls of its urls section.
+     */
+    void urlDomainParser(TweetFields tweet) {
+
+        HostExtractor hosts = HOSTS.get();
+        for(int i = 0; i < tweet.urlCount; i++){
+
+            // Get the expanded url from the urls section.
+            String urlText = tweet.expandedUrls[i];
+
+            String hostname = hosts.host(urlText);
+
+            // Increment the count of the hostname, urls without a host aren't counted.
+            if(hostname != null){
+                hostnameOccurrences.add(hostname, occurrences);
+                if(sketches != null){
+                    sketches.addDomain(hostname);
+                }
+            }
+
+        }
+    }
+
+    /**
+     * userMentionParser is used to try and parse out the users that mention in a tweet from the user_mentions section.
+     * The function grabs the users screen name and increments its count in the userMentionOccurrences counter.
+     * @param tweet - The fields extracted from the tweet, holding its user mentions.
+     */
+    private void userMentionParser(TweetFields tweet){
+
+        for(int i = 0; i < tweet.userMentionCount; i++){
+
+            // Grab the screen name of the mentioned user.
+            String userName = tweet.userMentions[i];
+
+            // Increment the count of the user mention once for each status the tweet stands for.
+            userMentionOccurrences.add(userName, occurrences);
+            if(sketches != null){
+                sketches.addUserMention(userName, occurrences);
+            }
+        }
+
+    }
+
+    /**
+     * numberOfTweetsWithPhoto checks if the extractor found a photo in the media objects of the extended_entities
+     * section of a tweet. If it did it increments a counter used to count the number of tweets with a photo, multiple
+     * photos in the same tweet are only counted once.
+     * @param tweet - The fields extracted from the tweet.
+     */
+    private void numberOfTweetsWithPhoto(TweetFields tweet){
+
+        if(tweet.hasPhoto){
+            numberOfTweetsWithPhoto += weight;
+        }
+    }
+
+    /**
+     * merge adds the counts of another aggregate of the same interval into this one. The other aggregate must have
+     * been created from the same config and is left unchanged.
+     * @param other - The partial aggregate to merge.
+     */
+    void merge(IntervalAggregate other){
+
+        // Merge the counters.
+        languageOccurrences.merge(other.languageOccurrences);
+        hashtagOccurrences.merge(other.hashtagOccurrences);
+        hostnameOccurrences.merge(other.hostnameOccurrences);
+        userMentionOccurrences.merge(other.userMentionOccurrences);
+
+        // Add up the tallies.
+        numberOfTweetsWithURL += other.numberOfTweetsWithURL;
+        numberOfTweetsWithPhoto += other.numberOfTweetsWithPhoto;
+        numberOfTweetsRetweeted += other.numberOfTweetsRetweeted;
+        reportTweetCount += other.reportTweetCount;
+        actualTweetCount += other.actualTweetCount;
+        unparsableTweets += other.unparsableTweets;
+        statusesSampled += other.statusesSampled;
+        actualTweetsSampled += other.actualTweetsSampled;
+
+        // Merge the message handlers and the sketches.
+        for(int i = 0; i < messageHandlers.length; i++){
+            messageHandlers[i].merge(other.messageHandlers[i]);
+        }
+        if(sketches != null){
+            sketches.merge(other.sketches);
+        }
+    }
+
+    /**
+     * subtract removes the counts of an aggregate that has slid out of a window from this window aggregate. Exact
+     * counts are subtracted, the parts that can't be subtracted, the heavy hitter counters, the distinct counts and
+     * the lowest and highest values kept by the message handlers, are rebuilt from the aggregates still in the window.
+     * Either way the cost depends on the size of the aggregates, not on the number of tweets in the window.
+     * @param expired - The aggregate to remove, already merged into this one.
+     * @param remaining - The aggregates still in the window.
+     */
+    void subtract(IntervalAggregate expired, Iterable<IntervalAggregate> remaining){
+
+        // Subtract or rebuild the counters.
+        subtract(languageOccurrences, expired.languageOccurrences, remaining, pane -> pane.languageOccurrences);
+        subtract(hashtagOccurrences, expired.hashtagOccurrences, remaining, pane -> pane.hashtagOccurrences);
+        subtract(hostnameOccurrences, expired.hostnameOccurrences, remaining, pane -> pane.hostnameOccurrences);
+        subtract(userMentionOccurrences, expired.userMentionOccurrences, remaining,
+                pane -> pane.userMentionOccurrences);
+
+        // Take the tallies back out.
+        numberOfTweetsWithURL -= expired.numberOfTweetsWithURL;
+        numberOfTweetsWithPhoto -= expired.numberOfTweetsWithPhoto;
+        numberOfTweetsRetweeted -= expired.numberOfTweetsRetweeted;
+        reportTweetCount -= expired.reportTweetCount;
+        actualTweetCount -= expired.actualTweetCount;
+        unparsableTweets -= expired.unparsableTweets;
+        statusesSampled -= expired.statusesSampled;
+        actualTweetsSampled -= expired.actualTweetsSampled;
+
+        // Rebuild the message handlers, they are only a few numbers each.
+        for(int i = 0; i < messageHandlers.length; i++){
+            messageHandlers[i].reset();
+            for(IntervalAggregate pane : remaining){
+                messageHandlers[i].merge(pane.messageHandlers[i]);
+            }
+        }
+
+        if(sketches != null){
+            List<IntervalSketches> remainingSketches = new ArrayList<>();
+            for(IntervalAggregate pane : remaining){
+                remainingSketches.add(pane.sketches);
+            }
+            sketches.subtract(expired.sketches, remainingSketches);
+        }
+    }
+
+    /**
+     * subtract removes the counts of an expired counter from a window counter. Heavy hitter counters can't be
+     * subtracted from, they are cleared and the counters still in the window merged back in.
+     * @param window - The counter of the window.
+     * @param expired - The counter to remove.
+     * @param remaining - The aggregates still in the window.
+     * @param field - Gets the counter of the same field from an aggregate.
+     */
+    private static void subtract(OccurrenceCounter window, OccurrenceCounter expired,
+                                 Iterable<IntervalAggregate> remaining,
+                                 Function<IntervalAggregate, OccurrenceCounter> field){
+
+        if(!(window instanceof SpaceSavingCounter)){
+            window.subtract(expired);
+            return;
+        }
+        SpaceSavingCounter heavyHitters = (SpaceSavingCounter) window;
+        heavyHitters.clear();
+        for(IntervalAggregate pane : remaining){
+            heavyHitters.merge(field.apply(pane));
+        }
+    }
+}
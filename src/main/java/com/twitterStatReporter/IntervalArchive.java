@@ -0,0 +1,348 @@
+package com.twitterStatReporter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * IntervalArchive keeps the counts of every finished interval, so the top hashtags or any other report value can be
+ * worked out for a stretch of time long after the tweets are gone. Each interval is appended to the archive directory
+ * as an ArchivedInterval segment, and the archive is kept across runs so the intervals of every run build up in it.
+ *
+ * The directory holds two files. intervals.dat holds the segments one after another. intervals.idx is the time index,
+ * a fixed size entry for each segment holding the start and end of its interval, where the segment is in the data file,
+ * its length and its CRC32. Both files start with an 8 byte magic number. The segment is written before its index
+ * entry, so an interval is only in the archive once its index entry is complete. When the archive is opened to append,
+ * a half written index entry or segment left by a crash is cut off.
+ *
+ * Intervals are appended by the report writer thread only. The archive is read with a Reader, which maps the files
+ * into memory so a query only reads the segments it merges. The data file is mapped in chunks, as it grows past the
+ * 2 GB a single map can hold.
+ */
+final class IntervalArchive {
+
+    // The names of the data and index files in the archive directory.
+    static final String DATA_FILE = "intervals.dat";
+    static final String INDEX_FILE = "intervals.idx";
+
+    // The magic numbers the data and index files start with.
+    private static final byte[] DATA_MAGIC = "TSRADAT1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INDEX_MAGIC = "TSRAIDX1".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_SIZE = 8;
+
+    // The size of an index entry: the start, end and offset as longs, then the length and CRC32 as ints.
+    private static final int ENTRY_SIZE = 32;
+
+    // The data and index files.
+    private final FileChannel data;
+    private final FileChannel index;
+
+    // The end of the last complete segment and of the last complete index entry.
+    private long dataEnd;
+    private long indexEnd;
+
+    // The segment being written, reused for every interval, and its checksum.
+    private final ArchivedInterval.Encoder encoder = new ArchivedInterval.Encoder();
+    private final CRC32 crc = new CRC32();
+
+    // The index entry being written.
+    private final ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+
+    /**
+     *
+     * @param data - The data file.
+     * @param index - The index file.
+     * @param dataEnd - The end of the last complete segment.
+     * @param indexEnd - The end of the last complete index entry.
+     */
+    private IntervalArchive(FileChannel data, FileChannel index, long dataEnd, long indexEnd){
+        this.data = data;
+        this.index = index;
+        this.dataEnd = dataEnd;
+        this.indexEnd = indexEnd;
+    }
+
+    /**
+     * open opens the archive in a directory to append to it, creating the directory and the archive if they don't
+     * exist. Anything after the last complete index entry, and after the segment it points to, is cut off.
+     * @param directory - The archive directory.
+     * @return the archive.
+     * @throws IOException - thrown if the archive cannot be opened or the files are not an archive.
+     */
+    static IntervalArchive open(Path directory) throws IOException {
+
+        Files.createDirectories(directory);
+        FileChannel data = FileChannel.open(directory.resolve(DATA_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel index = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try{
+            checkHeader(data, DATA_MAGIC, directory.resolve(DATA_FILE), true);
+            checkHeader(index, INDEX_MAGIC, directory.resolve(INDEX_FILE), true);
+
+            // Only whole index entries count, and the data ends with the segment of the last one.
+            long entries = (index.size() - HEADER_SIZE) / ENTRY_SIZE;
+            long indexEnd = HEADER_SIZE + entries * ENTRY_SIZE;
+            long dataEnd = HEADER_SIZE;
+            if(entries > 0){
+                ByteBuffer last = ByteBuffer.allocate(ENTRY_SIZE);
+                read(index, last, indexEnd - ENTRY_SIZE);
+                dataEnd = last.getLong(16) + last.getInt(24);
+            }
+            if(data.size() < dataEnd){
+                throw new IOException(directory.resolve(DATA_FILE) + " is shorter than its index");
+            }
+            index.truncate(indexEnd);
+            data.truncate(dataEnd);
+            return new IntervalArchive(data, index, dataEnd, indexEnd);
+        }catch (IOException e){
+            data.close();
+            index.close();
+            throw e;
+        }
+    }
+
+    /**
+     * checkHeader checks a file starts with the magic number, writing it first if the file is empty and being created.
+     * @param file - The file.
+     * @param magic - The magic number.
+     * @param path - The path of the file, used in the error.
+     * @param create - Flag set when an empty file is being created rather than read.
+     * @throws IOException - thrown if the file doesn't start with the magic number.
+     */
+    private static void checkHeader(FileChannel file, byte[] magic, Path path, boolean create) throws IOException {
+
+        if(create && file.size() == 0){
+            write(file, ByteBuffer.wrap(magic), 0);
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if(file.size() < HEADER_SIZE || read(file, header, 0) < HEADER_SIZE
+                || !header.flip().equals(ByteBuffer.wrap(magic))){
+            throw new IOException(path + " is not an interval archive");
+        }
+    }
+
+    /**
+     * append adds an interval to the archive.
+     * @param aggregate - The counts of the interval.
+     * @param start - The start of the interval, in milliseconds since the epoch.
+     * @param end - The end of the interval, in milliseconds since the epoch.
+     * @throws IOException - thrown if the archive cannot be written.
+     */
+    void append(IntervalAggregate aggregate, long start, long end) throws IOException {
+
+        encoder.reset();
+        ArchivedInterval.encode(aggregate, start, end, encoder);
+        crc.reset();
+        crc.update(encoder.bytes, 0, encoder.length);
+
+        write(data, ByteBuffer.wrap(encoder.bytes, 0, encoder.length), dataEnd);
+
+        entry.clear();
+        entry.putLong(start).putLong(end).putLong(dataEnd).putInt(encoder.length).putInt((int) crc.getValue());
+        entry.flip();
+        write(index, entry, indexEnd);
+
+        dataEnd += encoder.length;
+        indexEnd += ENTRY_SIZE;
+    }
+
+    /**
+     * close flushes the archive to disk and closes it.
+     * @throws IOException - thrown if the archive cannot be flushed.
+     */
+    void close() throws IOException {
+        try{
+            data.force(true);
+            index.force(true);
+        }finally {
+            data.close();
+            index.close();
+        }
+    }
+
+    /**
+     * write writes the whole buffer to a file at a position.
+     * @param file - The file.
+     * @param buffer - The bytes to write.
+     * @param position - The position in the file.
+     * @throws IOException - thrown if the file cannot be written.
+     */
+    private static void write(FileChannel file, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()){
+            position += file.write(buffer, position);
+        }
+    }
+
+    /**
+     * read fills the buffer from a file at a position, stopping early at the end of the file.
+     * @param file - The file.
+     * @param buffer - The buffer to fill.
+     * @param position - The position in the file.
+     * @return the number of bytes read.
+     * @throws IOException - thrown if the file cannot be read.
+     */
+    private static int read(FileChannel file, ByteBuffer buffer, long position) throws IOException {
+
+        int total = 0;
+        while(buffer.hasRemaining()){
+            int read = file.read(buffer, position + total);
+            if(read < 0){
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Reader reads an archive by mapping its files into memory. The index entries are read straight from the map,
+     * and a segment is only read when its interval is asked for. The data file grows from run to run, so it is mapped
+     * in chunks of CHUNK_SIZE bytes, each mapped the first time a segment in it is read. The few segments that cross
+     * the end of a chunk are read from the file instead.
+     */
+    static final class Reader implements AutoCloseable {
+
+        // The size of the chunks the data file is mapped in, a map can't be larger than 2 GB.
+        private static final int CHUNK_SIZE = 1 << 30;
+
+        // The data file, its size and its chunks, null until a chunk is first read.
+        private final FileChannel dataFile;
+        private final long dataSize;
+        private final MappedByteBuffer[] chunks;
+
+        // The mapped index file.
+        private final MappedByteBuffer index;
+
+        // The number of complete index entries.
+        private final int size;
+
+        /**
+         *
+         * @param dataFile - The data file, closed with the reader.
+         * @param index - The mapped index file.
+         * @throws IOException - thrown if the size of the data file cannot be read.
+         */
+        private Reader(FileChannel dataFile, MappedByteBuffer index) throws IOException {
+            this.dataFile = dataFile;
+            this.dataSize = dataFile.size();
+            this.chunks = new MappedByteBuffer[(int) ((dataSize + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+            this.index = index;
+            this.size = (index.capacity() - HEADER_SIZE) / ENTRY_SIZE;
+        }
+
+        /**
+         * open maps the archive in a directory for reading.
+         * @param directory - The archive directory.
+         * @return the reader.
+         * @throws IOException - thrown if the archive cannot be read or the files are not an archive.
+         */
+        static Reader open(Path directory) throws IOException {
+
+            FileChannel dataFile = FileChannel.open(directory.resolve(DATA_FILE), StandardOpenOption.READ);
+            try(FileChannel indexFile = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.READ)){
+                checkHeader(dataFile, DATA_MAGIC, directory.resolve(DATA_FILE), false);
+                checkHeader(indexFile, INDEX_MAGIC, directory.resolve(INDEX_FILE), false);
+                MappedByteBuffer index = indexFile.map(FileChannel.MapMode.READ_ONLY, 0, indexFile.size());
+                return new Reader(dataFile, index);
+            }catch (IOException e){
+                dataFile.close();
+                throw e;
+            }
+        }
+
+        /**
+         * size returns the number of intervals in the archive.
+         * @return the number of intervals.
+         */
+        int size(){
+            return size;
+        }
+
+        /**
+         * start returns the start of an interval.
+         * @param i - The position of the interval in the index.
+         * @return the start, in milliseconds since the epoch.
+         */
+        long start(int i){
+            return index.getLong(HEADER_SIZE + i * ENTRY_SIZE);
+        }
+
+        /**
+         * end returns the end of an interval.
+         * @param i - The position of the interval in the index.
+         * @return the end, in milliseconds since the epoch.
+         */
+        long end(int i){
+            return index.getLong(HEADER_SIZE + i * ENTRY_SIZE + 8);
+        }
+
+        /**
+         * interval reads the segment of an interval, checking it against its CRC32.
+         * @param i - The position of the interval in the index.
+         * @return the interval.
+         * @throws IOException - thrown if the segment is damaged.
+         */
+        ArchivedInterval interval(int i) throws IOException {
+
+            int entry = HEADER_SIZE + i * ENTRY_SIZE;
+            long offset = index.getLong(entry + 16);
+            int length = index.getInt(entry + 24);
+            if(offset < HEADER_SIZE || length < 0 || offset + length > dataSize){
+                throw new IOException("Archive segment " + i + " is outside the data file");
+            }
+            ByteBuffer segment = segment(offset, length);
+            CRC32 crc = new CRC32();
+            crc.update(segment.duplicate());
+            if((int) crc.getValue() != index.getInt(entry + 28)){
+                throw new IOException("Archive segment " + i + " is damaged");
+            }
+            try{
+                return ArchivedInterval.decode(segment);
+            }catch (RuntimeException e){
+                throw new IOException("Archive segment " + i + " cannot be read", e);
+            }
+        }
+
+        /**
+         * segment returns the bytes of a segment, a slice of its chunk if the segment is inside one chunk.
+         * @param offset - Where the segment starts in the data file.
+         * @param length - The length of the segment.
+         * @return the segment.
+         * @throws IOException - thrown if the data file cannot be read.
+         */
+        private ByteBuffer segment(long offset, int length) throws IOException {
+
+            int chunk = (int) (offset / CHUNK_SIZE);
+            int start = (int) (offset % CHUNK_SIZE);
+            if(start + (long) length <= CHUNK_SIZE){
+                if(chunks[chunk] == null){
+                    long chunkStart = (long) chunk * CHUNK_SIZE;
+                    chunks[chunk] = dataFile.map(FileChannel.MapMode.READ_ONLY, chunkStart,
+                            Math.min(CHUNK_SIZE, dataSize - chunkStart));
+                }
+                return chunks[chunk].duplicate().position(start).limit(start + length).slice();
+            }
+
+            // The segment crosses the end of a chunk.
+            ByteBuffer segment = ByteBuffer.allocate(length);
+            if(read(dataFile, segment, offset) < length){
+                throw new IOException("Archive segment at " + offset + " is outside the data file");
+            }
+            return segment.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Mapped chunks are unmapped once the buffers are garbage collected.
+            dataFile.close();
+        }
+    }
+}
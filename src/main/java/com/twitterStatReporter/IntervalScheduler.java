@@ -1,117 +1,133 @@
 package com.twitterStatReporter;
 
-import java.util.ArrayList;
-import java.util.concurrent.BlockingQueue;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
- * IntervalScheduler is use to create and schedule intervalThreads, intervalTerminators, and ReportGenerator Objects.
- * Using the numberOfReports, IntervalScheduler creates an intervalThread, intervalTerminator, and reportGenerator
- * objects. It passes the intervalThread and reportGenerator objects a blocking queue that is shared by both to produce
- * and consume tweets respectively. The intervalTerminator objects are passed the intervalThread objects and their
- * intervalRunTime to schedule them to stop after the given time. Once the intervalThread and reportGenerator objects
- * are created it schedules the time for them to run via intervalRunTime*reportNumber.
+ * IntervalScheduler is used to start the EventTimeWindows stage that splits the raw tweets into intervals and writes a
+ * report for each. The boundaries of the intervals come from the timestamps of the tweets rather than from timers, so
+ * no thread is needed per interval. It runs the workers of the stage on a worker executor and the reports on a single
+ * report writer thread that hands them to the ReportSink, the number of threads and the memory used at startup stay the
+ * same no matter how many reports the run will produce. When run continuously the intervals roll until shutdown is
+ * called, each interval only being held until its report has been written.
  */
 public class IntervalScheduler {
 
+    // The number of reports used to roll intervals until shutdown is called.
+    static final int CONTINUOUS = -1;
+
     // The number of reports calculated from the total run time / interval run time.
     private final int numberOfReports;
 
-    // Interval runtime set by the user.
-    private final int intervalRunTime;
+    // The loaded config file, used for the number of workers.
+    private final ConfigFileReader config;
 
-    // The streams blocking queue where all the tweets in json for are stored.
-    private final BlockingQueue<String> rawTweets;
+    // The stage that splits the tweets into intervals.
+    private final EventTimeWindows windows;
 
-    // Array list to hold a number of intervalThread objects up to the total number of reports.
-    private final ArrayList<IntervalThread> intervalThreads;
+    // The executor the workers of the stage run on.
+    private final ExecutorService workers;
 
-    // Array list to hold a number of intervalTerminator objects up to the total number of reports.
-    private final ArrayList<IntervalTerminator> intervalTerminators;
+    // The single thread the reports are built on.
+    private final ExecutorService reportWriter;
 
-    // Arraylist to hold a number of reportGenerator objects up to the total number of reports.
-    private final ArrayList<ReportGenerator> reportGenerators;
+    // Writes the reports on its own thread.
+    private final ReportSink sink;
 
-    // Flag used to indicate if a user would like their report written to file or printed on the terminal.
-    private final int writeToFile;
+    // The archive the closed intervals are appended to, null when intervals aren't archived.
+    private final IntervalArchive archive;
 
     /**
      *
      * @param numberOfReports - The total number of reports that need to be created, calculated from
-     *                        totalRunTime/intervalRunTime
+     *                        totalRunTime/intervalRunTime, or CONTINUOUS to roll intervals until shutdown.
      * @param intervalRunTime - The user set intervalRunTime in seconds.
      * @param rawTweets - The blocking queue created in gatheringThread that holds the tweets in a json format.
      * @param writeToFile - flag used to indicate if a user would like the file written to the terminal or to a file.
+     * @param config - The loaded config file, used for the report tuning options.
      */
-    public IntervalScheduler(int numberOfReports, int intervalRunTime, BlockingQueue<String> rawTweets, int writeToFile){
+    public IntervalScheduler(int numberOfReports, int intervalRunTime, TweetHandoff rawTweets, int writeToFile,
+                             ConfigFileReader config){
 
         // Set number of reports
         this.numberOfReports = numberOfReports;
+        this.config = config;
+
+        // Create the report writer, the sink and the worker executor, then the stage that uses them.
+        this.reportWriter = Executors.newSingleThreadExecutor(WorkerThreads.namedThreads("report-writer"));
+        this.sink = ReportSink.start(config, writeToFile);
+        this.archive = openArchive(config);
+        this.workers = WorkerThreads.newPool("window-worker", config.reportWorkers, config.virtualThreads);
+        this.windows = new EventTimeWindows(rawTweets, intervalRunTime, numberOfReports, config, reportWriter,
+                sink, archive);
+    }
 
-        // Set interval run time.
-        this.intervalRunTime = intervalRunTime;
-
-        // Set the rawTweets blocking queue.
-        this.rawTweets = rawTweets;
+    /**
+     * openArchive opens the interval archive in the config file, if there is one. The run carries on without
+     * archiving its intervals if the archive can't be opened.
+     * @param config - The loaded config file, used for the archive directory.
+     * @return the archive, or null if intervals aren't archived.
+     */
+    private static IntervalArchive openArchive(ConfigFileReader config){
 
-        // Create a new arraylist for the interval threads, terminators, and report generators.
-        this.intervalThreads = new ArrayList<>();
-        this.intervalTerminators = new ArrayList<>();
-        this.reportGenerators = new ArrayList<>();
-        this.writeToFile = writeToFile;
+        if(config.archiveDirectory == null){
+            return null;
+        }
+        try{
+            return IntervalArchive.open(Paths.get(config.archiveDirectory));
+        }catch (IOException e){
+            System.out.println("Unable to open the interval archive " + config.archiveDirectory + ", intervals "
+                    + "will not be archived: " + e.getMessage());
+            return null;
+        }
     }
 
     /**
-     * Scheduler is used to create the intervalThread, intervalTerminator, and Report generator objects and then
-     * schedule when they should run. Using the number of reports it creates a number of intervalThread,
-     * intervalTerminator, and reportGenerator objects. In the interval thread objects a blocking queue is created
-     * that is shared between itself and the corresponding report generator object. Each intervalTerminator object
-     * is passed its corresponding intervalThread along with the intervalRuntime and delay. It uses this information
-     * to stop the interval thread after the intervalRunTime has elapsed. After all the objects have been created,
-     * scheduler schedules each intervalTerminator and ReportGenerator to run.
+     * Scheduler starts the workers of the stage. They stop once the last report has been handed to the report writer,
+     * or when shutdown is called.
      */
     public void scheduler(){
 
-        // Keep track of the interval delay that each interval thread will need to start at
-        int delay = 0;
-
-        for(int i = 0; i < numberOfReports; i++){
-            // Create a number of interval threads equal to the number of reports.
-            IntervalThread intervalThread = new IntervalThread(rawTweets, intervalRunTime);
-
-            // Create a number of interval terminators equal to the number of reports using the created interval thread.
-            IntervalTerminator intervalTerminator = new IntervalTerminator(intervalThread, intervalRunTime, delay);
-
-            // Create a number of report generators equal to the number of reports. Pass each the that intervals blocking queue and future.
-            ReportGenerator reportGenerator = new ReportGenerator(intervalThread.intervalQueue, intervalTerminator.future, i, delay, writeToFile);
-
-            // Add the objects to their respective list.
-            intervalThreads.add(intervalThread);
-            intervalTerminators.add(intervalTerminator);
-            reportGenerators.add(reportGenerator);
-
-            // Increase the delay by the interval run time.
-            delay += intervalRunTime;
+        if(numberOfReports != CONTINUOUS && numberOfReports < 1){
+            workers.shutdown();
+            reportWriter.shutdown();
+            sink.close();
+            if(archive != null){
+                try{
+                    archive.close();
+                }catch (IOException e){
+                    System.out.println("Unable to close the interval archive: " + e.getMessage());
+                }
+            }
+            return;
         }
 
-        // Create a schedule executor with a thread pool equal to the number of reports that need to run.
-        ScheduledExecutorService scheduledIntervals = Executors.newScheduledThreadPool(numberOfReports);
+        windows.start();
+        for(int i = 0; i < config.reportWorkers; i++){
+            workers.execute(windows.worker(i));
+        }
+        workers.shutdown();
+    }
 
-        // Create a schedule executor with a thread pool equal to the number of reports that need to run.
-        ScheduledExecutorService scheduledReports = Executors.newScheduledThreadPool(numberOfReports);
+    /**
+     * shutdown stops the intervals early, used to stop a continuous run. The messages already gathered are taken, the
+     * interval in progress is closed, and its report is written along with any other report still being written.
+     * @param timeout - The most time to wait for the in progress reports to be written, in seconds.
+     * @throws InterruptedException - thrown if interrupted while waiting.
+     */
+    public void shutdown(int timeout) throws InterruptedException {
 
-        //Schedule each ot the interval terminators
-        for(IntervalTerminator scheduler : intervalTerminators){
-            scheduledIntervals.schedule(scheduler, scheduler.intervalDelay, TimeUnit.SECONDS);
-        }
-        scheduledIntervals.shutdown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
 
-        // Schedule each of the reportGenerators
-        for(ReportGenerator reportGenerator : reportGenerators){
-            scheduledReports.schedule(reportGenerator, reportGenerator.delay, TimeUnit.SECONDS);
+        windows.stop();
+        boolean written = workers.awaitTermination(timeout, TimeUnit.SECONDS)
+                && reportWriter.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                && sink.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        if(!written){
+            System.out.println("Reports still being written after " + timeout + " seconds, stopping anyway");
         }
-        scheduledReports.shutdown();
     }
 }
@@ -0,0 +1,189 @@
+package com.twitterStatReporter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * IntervalSketches holds the approximate aggregators of a report interval. Count-Min Sketches answer how many times a
+ * given hashtag or user mention occurred, and HyperLogLog estimators count the distinct hashtags, tweet authors,
+ * mentioned users and url domains. They are fed by the ReportGenerator from the same parse pass as the exact counters
+ * and use a fixed amount of memory no matter how many distinct values the interval holds.
+ *
+ * The sketches of each interval can be saved to the sketch directory once its report is written, and SketchQuery
+ * reads back and merges the sketches of several intervals to answer the same questions over a longer period.
+ */
+public final class IntervalSketches implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // The names of the sketch files are "Interval " followed by the start of the interval.
+    private static final String FILE_PREFIX = "Interval ";
+    private static final String FILE_SUFFIX = ".sketches";
+
+    // Point query sketches of the hashtags and user mentions.
+    final CountMinSketch hashtagCounts;
+    final CountMinSketch userMentionCounts;
+
+    // Distinct count estimators of the hashtags, tweet authors, mentioned users and url domains.
+    final HyperLogLog distinctHashtags;
+    final HyperLogLog distinctUsers;
+    final HyperLogLog distinctUserMentions;
+    final HyperLogLog distinctDomains;
+
+    /**
+     *
+     * @param countMinWidth - The width of the Count-Min Sketches.
+     * @param countMinDepth - The depth of the Count-Min Sketches.
+     * @param hyperLogLogPrecision - The precision of the HyperLogLog estimators.
+     */
+    public IntervalSketches(int countMinWidth, int countMinDepth, int hyperLogLogPrecision){
+
+        // Create the point query sketches.
+        this.hashtagCounts = new CountMinSketch(countMinWidth, countMinDepth);
+        this.userMentionCounts = new CountMinSketch(countMinWidth, countMinDepth);
+
+        // Create the distinct count estimators.
+        this.distinctHashtags = new HyperLogLog(hyperLogLogPrecision);
+        this.distinctUsers = new HyperLogLog(hyperLogLogPrecision);
+        this.distinctUserMentions = new HyperLogLog(hyperLogLogPrecision);
+        this.distinctDomains = new HyperLogLog(hyperLogLogPrecision);
+    }
+
+    /**
+     * addHashtag adds the occurrences of a hashtag.
+     * @param hashtag - The hashtag text.
+     * @param occurrences - The number of occurrences, more than 1 for a sampled status.
+     */
+    void addHashtag(String hashtag, int occurrences){
+        hashtagCounts.add(hashtag, occurrences);
+        distinctHashtags.add(hashtag);
+    }
+
+    /**
+     * addUserMention adds the occurrences of a user mention.
+     * @param screenName - The screen name of the mentioned user.
+     * @param occurrences - The number of occurrences, more than 1 for a sampled status.
+     */
+    void addUserMention(String screenName, int occurrences){
+        userMentionCounts.add(screenName, occurrences);
+        distinctUserMentions.add(screenName);
+    }
+
+    /**
+     * addUser adds the author of a tweet.
+     * @param userId - The id of the author.
+     */
+    void addUser(long userId){
+        distinctUsers.add(userId);
+    }
+
+    /**
+     * addDomain adds the domain of a url.
+     * @param hostname - The hostname of the url.
+     */
+    void addDomain(String hostname){
+        distinctDomains.add(hostname);
+    }
+
+    /**
+     * merge merges the sketches of another interval into this one.
+     * @param other - The sketches to merge, created with the same sizes.
+     */
+    public void merge(IntervalSketches other){
+        hashtagCounts.merge(other.hashtagCounts);
+        userMentionCounts.merge(other.userMentionCounts);
+        distinctHashtags.merge(other.distinctHashtags);
+        distinctUsers.merge(other.distinctUsers);
+        distinctUserMentions.merge(other.distinctUserMentions);
+        distinctDomains.merge(other.distinctDomains);
+    }
+
+    /**
+     * subtract removes the sketches of an interval that has slid out of a window from this one. The Count-Min
+     * Sketches are subtracted, the distinct counts can't be so they are rebuilt from the intervals still in the
+     * window.
+     * @param expired - The sketches of the interval to remove, already merged into this one.
+     * @param remaining - The sketches of the intervals still in the window.
+     */
+    void subtract(IntervalSketches expired, Iterable<IntervalSketches> remaining){
+
+        hashtagCounts.subtract(expired.hashtagCounts);
+        userMentionCounts.subtract(expired.userMentionCounts);
+
+        distinctHashtags.clear();
+        distinctUsers.clear();
+        distinctUserMentions.clear();
+        distinctDomains.clear();
+        for(IntervalSketches interval : remaining){
+            distinctHashtags.merge(interval.distinctHashtags);
+            distinctUsers.merge(interval.distinctUsers);
+            distinctUserMentions.merge(interval.distinctUserMentions);
+            distinctDomains.merge(interval.distinctDomains);
+        }
+    }
+
+    /**
+     * file returns the file the sketches of an interval are saved to, "Interval S.sketches" in the sketch directory
+     * where S is the start of the interval in milliseconds since the epoch. Each interval has its own file, so the
+     * sketches of one run don't overwrite those of another unless they are of the same interval.
+     * @param directory - The sketch directory.
+     * @param start - The start of the interval, in milliseconds since the epoch.
+     * @return the path of the sketch file.
+     */
+    static Path file(Path directory, long start){
+        return directory.resolve(FILE_PREFIX + start + FILE_SUFFIX);
+    }
+
+    /**
+     * start reads the start of the interval from the name of a sketch file.
+     * @param file - The sketch file.
+     * @return the start of the interval, in milliseconds since the epoch, or -1 if the file isn't a sketch file.
+     */
+    static long start(Path file){
+
+        String name = file.getFileName().toString();
+        if(!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)){
+            return -1;
+        }
+        try{
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        }catch (NumberFormatException e){
+            return -1;
+        }
+    }
+
+    /**
+     * write saves the sketches to a file.
+     * @param file - The file to write.
+     * @throws IOException - thrown if the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        try(ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))){
+            out.writeObject(this);
+        }
+    }
+
+    /**
+     * read reads sketches saved with write. Only the sketch classes and their arrays are accepted from the file.
+     * @param file - The file to read.
+     * @return the sketches held in the file.
+     * @throws IOException - thrown if the file cannot be read or does not hold sketches.
+     */
+    public static IntervalSketches read(Path file) throws IOException {
+        try(ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))){
+            in.setObjectInputFilter(ObjectInputFilter.Config.createFilter(
+                    "com.twitterStatReporter.IntervalSketches;com.twitterStatReporter.CountMinSketch;"
+                            + "com.twitterStatReporter.HyperLogLog;[J;[B;!*"));
+            return (IntervalSketches) in.readObject();
+        }catch (ClassNotFoundException | ClassCastException e){
+            throw new IOException(file + " does not hold interval sketches", e);
+        }
+    }
+}
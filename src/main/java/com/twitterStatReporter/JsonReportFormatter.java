@@ -0,0 +1,210 @@
+package com.twitterStatReporter;
+
+/**
+ * JsonReportFormatter renders each report as a single line json object, so a run's reports form a json lines file
+ * that can be read by jq or loaded into most analysis tools. Every report has the same fields in the same order, the
+ * sampling, dropped and sketches fields are null when the report doesn't have them. Confidence intervals are only
+ * written for sampled reports and errors only for fields that counted their heavy hitters. Percentages of an
+ * interval with no tweets are null.
+ */
+final class JsonReportFormatter implements ReportFormatter {
+
+    @Override
+    public String header() {
+        return "";
+    }
+
+    @Override
+    public String fileName(Report report) {
+        return "Reports.jsonl";
+    }
+
+    @Override
+    public void format(Report report, StringBuilder out) {
+
+        out.append("{\"report\":").append(report.number);
+        out.append(",\"closed_at\":").append(report.closedAt);
+        out.append(",\"tweets\":").append(report.tweets);
+        out.append(",\"actual_tweets\":");
+        number(report.actualTweets, out);
+        out.append(",\"deleted_tweets\":").append(report.deletedTweets);
+        out.append(",\"estimated\":").append(report.estimated);
+
+        out.append(",\"sampling\":");
+        if(report.sampling == null){
+            out.append("null");
+        }else{
+            out.append("{\"statuses\":").append(report.sampling.statuses).append(",\"parsed\":")
+                    .append(report.sampling.parsed).append('}');
+        }
+
+        out.append(",\"messages\":{");
+        for(int i = 0; i < report.messageCounts.size(); i++){
+            Report.Count count = report.messageCounts.get(i);
+            if(i > 0){
+                out.append(',');
+            }
+            string(count.name, out);
+            out.append(':').append(count.value);
+        }
+        out.append('}');
+
+        out.append(",\"dropped\":");
+        if(report.dropped == null){
+            out.append("null");
+        }else{
+            out.append("{\"messages\":").append(report.dropped.messages).append(",\"policy\":");
+            string(report.dropped.policy, out);
+            out.append(",\"capacity\":").append(report.dropped.capacity).append('}');
+        }
+        out.append(",\"late_messages\":").append(report.lateMessages);
+
+        for(Report.Ranking ranking : report.rankings()){
+            out.append(',');
+            string(ranking.name, out);
+            ranking(report, ranking, out);
+        }
+        for(Report.Share share : report.shares()){
+            out.append(',');
+            string(share.name, out);
+            out.append(":{\"percent\":");
+            number(share.percent, out);
+            if(report.estimated){
+                out.append(",\"low\":");
+                number(share.low, out);
+                out.append(",\"high\":");
+                number(share.high, out);
+            }
+            out.append('}');
+        }
+
+        out.append(",\"sketches\":");
+        if(report.sketches == null){
+            out.append("null");
+        }else{
+            sketches(report.sketches, out);
+        }
+        out.append("}\n");
+    }
+
+    /**
+     * ranking appends the most common values of a field as an object holding the list of values.
+     * @param report - The report.
+     * @param ranking - The most common values of the field.
+     * @param out - The buffer the report is appended to.
+     */
+    private static void ranking(Report report, Report.Ranking ranking, StringBuilder out){
+
+        out.append(":{\"k\":").append(ranking.k).append(",\"approximate\":").append(ranking.approximate);
+        if(ranking.approximate){
+            out.append(",\"error_bound\":").append(ranking.errorBound);
+        }
+        out.append(",\"top\":[");
+        for(int i = 0; i < ranking.entries.size(); i++){
+            Report.Entry entry = ranking.entries.get(i);
+            if(i > 0){
+                out.append(',');
+            }
+            out.append("{\"value\":");
+            string(entry.value, out);
+            out.append(",\"count\":").append(entry.count);
+            if(report.estimated){
+                out.append(",\"low\":").append(entry.low).append(",\"high\":").append(entry.high);
+            }
+            if(ranking.approximate){
+                out.append(",\"error\":").append(entry.error);
+            }
+            out.append('}');
+        }
+        out.append("]}");
+    }
+
+    /**
+     * sketches appends the estimates of the sketches.
+     * @param sketches - The estimates.
+     * @param out - The buffer the report is appended to.
+     */
+    private static void sketches(Report.Sketches sketches, StringBuilder out){
+
+        out.append("{\"relative_error\":");
+        number(sketches.relativeError, out);
+        out.append(",\"distinct\":{");
+        for(int i = 0; i < sketches.distinct.size(); i++){
+            Report.Count distinct = sketches.distinct.get(i);
+            if(i > 0){
+                out.append(',');
+            }
+            string(distinct.name, out);
+            out.append(':').append(distinct.value);
+        }
+        out.append("},\"queries\":[");
+        for(int i = 0; i < sketches.queries.size(); i++){
+            Report.PointQuery query = sketches.queries.get(i);
+            if(i > 0){
+                out.append(',');
+            }
+            out.append("{\"kind\":");
+            string(query.kind, out);
+            out.append(",\"value\":");
+            string(query.value, out);
+            out.append(",\"estimate\":").append(query.estimate).append(",\"error_bound\":")
+                    .append(query.errorBound).append(",\"confidence\":");
+            number(query.confidence, out);
+            out.append('}');
+        }
+        out.append("]}");
+    }
+
+    /**
+     * number appends a json number, json has no NaN or infinity so they are written as null.
+     * @param value - The number.
+     * @param out - The buffer the report is appended to.
+     */
+    private static void number(double value, StringBuilder out){
+        if(Double.isNaN(value) || Double.isInfinite(value)){
+            out.append("null");
+        }else{
+            out.append(value);
+        }
+    }
+
+    /**
+     * number appends a json number, json has no NaN or infinity so they are written as null.
+     * @param value - The number.
+     * @param out - The buffer the report is appended to.
+     */
+    private static void number(float value, StringBuilder out){
+        if(Float.isNaN(value) || Float.isInfinite(value)){
+            out.append("null");
+        }else{
+            out.append(value);
+        }
+    }
+
+    /**
+     * string appends a quoted json string, escaping quotes, backslashes and control characters.
+     * @param value - The string.
+     * @param out - The buffer the report is appended to.
+     */
+    private static void string(String value, StringBuilder out){
+
+        out.append('"');
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            if(c == '"' || c == '\\'){
+                out.append('\\').append(c);
+            }else if(c == '\n'){
+                out.append("\\n");
+            }else if(c == '\r'){
+                out.append("\\r");
+            }else if(c == '\t'){
+                out.append("\\t");
+            }else if(c < 0x20 || c == 0x2028 || c == 0x2029){
+                out.append(String.format("\\u%04x", (int) c));
+            }else{
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,105 @@
+package com.twitterStatReporter;
+
+/**
+ * LanguageCounter is an OccurrenceCounter for the lang field of a tweet. Twitter's language codes are almost all two
+ * or three lowercase letters (en, ja, und, fil), so those codes are packed into an index into a fixed count array and
+ * counted without hashing or any lookup. The few codes that don't fit, such as zh-cn, are counted in a StringCounter.
+ * Ids below DIRECT_SLOTS are the packed codes and the ids after them are the ids of the StringCounter.
+ */
+public final class LanguageCounter implements OccurrenceCounter {
+
+    // The number of codes of two or three lowercase letters, the third letter is stored as 1-26 or 0 if missing.
+    private static final int DIRECT_SLOTS = 26 * 26 * 27;
+
+    // Counts for the two and three letter codes, indexed by their packed code.
+    private final int[] directCounts = new int[DIRECT_SLOTS];
+
+    // Counts for any codes that can't be packed.
+    private final StringCounter otherCounts = new StringCounter();
+
+    @Override
+    public void add(String key, int occurrences) {
+
+        int slot = slot(key);
+        if(slot >= 0){
+            directCounts[slot] += occurrences;
+        }else{
+            otherCounts.add(key, occurrences);
+        }
+    }
+
+    @Override
+    public void merge(OccurrenceCounter other) {
+
+        if(!(other instanceof LanguageCounter)){
+            OccurrenceCounter.super.merge(other);
+            return;
+        }
+
+        // Add the packed counts slot by slot rather than unpacking each code.
+        LanguageCounter partial = (LanguageCounter) other;
+        for(int slot = 0; slot < DIRECT_SLOTS; slot++){
+            directCounts[slot] += partial.directCounts[slot];
+        }
+        otherCounts.merge(partial.otherCounts);
+    }
+
+    @Override
+    public void subtract(OccurrenceCounter other) {
+
+        if(!(other instanceof LanguageCounter)){
+            OccurrenceCounter.super.subtract(other);
+            return;
+        }
+
+        LanguageCounter expired = (LanguageCounter) other;
+        for(int slot = 0; slot < DIRECT_SLOTS; slot++){
+            directCounts[slot] -= expired.directCounts[slot];
+        }
+        otherCounts.subtract(expired.otherCounts);
+    }
+
+    /**
+     * slot packs a two or three letter lowercase code into an index into the direct counts.
+     * @param code - The language code.
+     * @return the packed code or -1 if the code can't be packed.
+     */
+    private static int slot(String code){
+
+        int length = code.length();
+        if(length < 2 || length > 3){
+            return -1;
+        }
+        int first = code.charAt(0) - 'a';
+        int second = code.charAt(1) - 'a';
+        int third = length == 3 ? code.charAt(2) - 'a' : -1;
+        if(first < 0 || first > 25 || second < 0 || second > 25 || third < -1 || third > 25){
+            return -1;
+        }
+        return (first * 26 + second) * 27 + third + 1;
+    }
+
+    @Override
+    public int size() {
+        return DIRECT_SLOTS + otherCounts.size();
+    }
+
+    @Override
+    public String key(int id) {
+
+        if(id >= DIRECT_SLOTS){
+            return otherCounts.key(id - DIRECT_SLOTS);
+        }
+
+        // Unpack the code.
+        int third = id % 27;
+        int pair = id / 27;
+        char[] code = {(char) ('a' + pair / 26), (char) ('a' + pair % 26), (char) ('a' + third - 1)};
+        return new String(code, 0, third == 0 ? 2 : 3);
+    }
+
+    @Override
+    public long count(int id) {
+        return id >= DIRECT_SLOTS ? otherCounts.count(id - DIRECT_SLOTS) : directCounts[id];
+    }
+}
@@ -0,0 +1,134 @@
+package com.twitterStatReporter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram records durations, in nanoseconds, into log-linear buckets the way an HDR histogram does. Values
+ * below 128 have a bucket each, every larger power of two is split into 64 buckets, so any recorded value can be read
+ * back to within 1/64 of itself, from a nanosecond up to the largest long, in a fixed 3712 counters. Recording is a
+ * few atomic adds with no locking or allocation, so it can be used on the threads that count the tweets.
+ */
+final class LatencyHistogram {
+
+    // Values below SUB_BUCKETS are counted exactly, each larger power of two is split into HALF buckets.
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * HALF;
+
+    // The number of values recorded in each bucket.
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    // The sum and the largest of the recorded values.
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * record adds a duration to the histogram, negative durations are recorded as 0.
+     * @param nanos - The duration in nanoseconds.
+     */
+    void record(long nanos){
+
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * snapshot copies the counts so quantiles can be read from them while values are still being recorded.
+     * @return the snapshot.
+     */
+    Snapshot snapshot(){
+
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, sum.sum(), max.get());
+    }
+
+    /**
+     * index returns the bucket a value is counted in.
+     * @param value - The value, not negative.
+     * @return the bucket.
+     */
+    private static int index(long value){
+
+        if(value < SUB_BUCKETS){
+            return (int) value;
+        }
+        // Shift the value so its top SUB_BUCKET_BITS - 1 bits pick the bucket within its power of two.
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+    }
+
+    /**
+     * highestValue returns the largest value counted in a bucket.
+     * @param index - The bucket.
+     * @return the largest value of the bucket.
+     */
+    private static long highestValue(int index){
+
+        if(index < SUB_BUCKETS){
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF + HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Snapshot is a copy of the counts of a histogram at one point in time.
+     */
+    static final class Snapshot {
+
+        // The number of values in each bucket.
+        private final long[] counts;
+
+        // The number, sum and largest of the recorded values.
+        final long count;
+        final long sum;
+        final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max){
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * valueAt returns the value the given fraction of the recorded values are at or below.
+         * @param quantile - The fraction, between 0 and 1.
+         * @return the value in nanoseconds, within 1/64 of it, 0 if nothing was recorded.
+         */
+        long valueAt(double quantile){
+
+            if(count == 0){
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for(int i = 0; i < counts.length; i++){
+                seen += counts[i];
+                if(seen >= rank){
+                    return Math.min(highestValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * mean returns the average of the recorded values.
+         * @return the average in nanoseconds, 0 if nothing was recorded.
+         */
+        double mean(){
+            return count == 0 ? 0 : (double) sum / count;
+        }
+    }
+}
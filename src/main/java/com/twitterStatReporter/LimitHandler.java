@@ -0,0 +1,125 @@
+package com.twitterStatReporter;
+
+import java.util.Arrays;
+
+/**
+ * LimitHandler handles the limit notices sent when the stream has matched more tweets than it was allowed to deliver.
+ * Each notice holds a track count, the total number of tweets that were not delivered since the stream connected.
+ *
+ * The notices of an interval may be handled by several workers in any order, so the handler only keeps the timestamp
+ * and track count of each notice until the interval is settled. Intervals are settled one after another in time order
+ * with the track count of the last notice before them, the notices are put in time order and each one adds the rise in
+ * the track count since the notice before it. A track count lower than the one before it is from a new connection,
+ * which counts up from 0 again, so all of it is added. The tweets missed between the last notice of one interval and
+ * the first of the next are counted in the next.
+ */
+public class LimitHandler extends MessageHandler {
+
+    // The timestamp and track count of each notice not yet settled, -1 for a notice without a timestamp.
+    private long[] noticeTimes = new long[4];
+    private long[] noticeTracks = new long[4];
+    private int notices = 0;
+
+    // The number of tweets the settled notices show were missed.
+    private long missed = 0;
+
+    // The timestamp and track count of the latest settled notice, -1 until a notice is settled.
+    private long latestTime = -1;
+    long latestTrack = -1;
+
+    public LimitHandler(){
+        super(MessageType.LIMIT);
+    }
+
+    @Override
+    void handle(String rawJSON) {
+        super.handle(rawJSON);
+
+        long track = MessageClassifier.longField(rawJSON, "track");
+        if(track >= 0){
+            addNotice(MessageClassifier.timestampMs(rawJSON), track);
+        }
+    }
+
+    /**
+     * addNotice keeps a notice until the interval is settled.
+     * @param timestamp - The timestamp of the notice, -1 if it doesn't have one.
+     * @param track - The track count of the notice.
+     */
+    private void addNotice(long timestamp, long track){
+
+        if(notices == noticeTimes.length){
+            noticeTimes = Arrays.copyOf(noticeTimes, notices * 2);
+            noticeTracks = Arrays.copyOf(noticeTracks, notices * 2);
+        }
+        noticeTimes[notices] = timestamp;
+        noticeTracks[notices] = track;
+        notices++;
+    }
+
+    @Override
+    void merge(MessageHandler other) {
+        super.merge(other);
+
+        LimitHandler partial = (LimitHandler) other;
+        for(int i = 0; i < partial.notices; i++){
+            addNotice(partial.noticeTimes[i], partial.noticeTracks[i]);
+        }
+        missed += partial.missed;
+        if(partial.latestTrack >= 0 && partial.latestTime >= latestTime){
+            latestTime = partial.latestTime;
+            latestTrack = partial.latestTrack;
+        }
+    }
+
+    @Override
+    void reset() {
+        super.reset();
+        notices = 0;
+        missed = 0;
+        latestTime = -1;
+        latestTrack = -1;
+    }
+
+    /**
+     * settle puts the notices of the interval in time order and counts the tweets each shows were missed since the
+     * notice before it. Notices with the same timestamp keep the order they were handled in.
+     * @param previousTrack - The track count of the last notice of the intervals before, 0 if there was none.
+     * @return the track count of the last notice, to settle the next interval with.
+     */
+    long settle(long previousTrack){
+
+        // Insertion sort keeps the notices with the same timestamp in order, an interval only has a few.
+        for(int i = 1; i < notices; i++){
+            long time = noticeTimes[i];
+            long track = noticeTracks[i];
+            int j = i - 1;
+            while(j >= 0 && noticeTimes[j] > time){
+                noticeTimes[j + 1] = noticeTimes[j];
+                noticeTracks[j + 1] = noticeTracks[j];
+                j--;
+            }
+            noticeTimes[j + 1] = time;
+            noticeTracks[j + 1] = track;
+        }
+
+        long track = previousTrack;
+        for(int i = 0; i < notices; i++){
+            // A lower track count is from a new connection.
+            missed += noticeTracks[i] >= track ? noticeTracks[i] - track : noticeTracks[i];
+            track = noticeTracks[i];
+            latestTime = Math.max(latestTime, noticeTimes[i]);
+            latestTrack = track;
+        }
+        notices = 0;
+        return track;
+    }
+
+    /**
+     * missedTweets returns the number of undelivered tweets the settled notices show.
+     * @return the number of tweets the limit notices show were missed, 0 if no notices were settled.
+     */
+    long missedTweets(){
+        return missed;
+    }
+}
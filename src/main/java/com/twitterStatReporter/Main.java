@@ -2,6 +2,7 @@ package com.twitterStatReporter;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * TwitterStatReporter is used to gather various statistics on tweets from a stream and create a report on them.
@@ -29,6 +30,9 @@ public class Main {
         // Create a object to gather user input.
         UserInputAndValidation userInputAndValidation = new UserInputAndValidation();
 
+        // Create a config file reader, its defaults are used when there is no config file to load.
+        ConfigFileReader configFile = new ConfigFileReader();
+
         //If the config file exists, verify it is valid or ask the user to input valid values. If it doesn't, force
         // the user to enter their parameters and credentials.
         if(configCheck.exists()){
@@ -36,12 +40,14 @@ public class Main {
             System.out.println("Loading Config File");
 
             // Load the config file
-            ConfigFileReader configFile = new ConfigFileReader();
             configFile.loadConfig();
 
 
-            // If the total run time is not present in the config have the user set a total run time.
-            if(configFile.totalRunTime == 0){
+            // If the total run time is not present in the config have the user set a total run time, unless the
+            // program runs until it is stopped.
+            if(configFile.continuous){
+                userInputAndValidation.setContinuous();
+            }else if(configFile.totalRunTime == 0){
                 userInputAndValidation.setTotalRunTime();
             }else{
                 userInputAndValidation.validateTotalRunTime(configFile.totalRunTime);
@@ -61,36 +67,40 @@ public class Main {
                 userInputAndValidation.validateWriteFlag(configFile.writeToFile);
             }
 
-            // Have the user set their Access token.
-            if(configFile.accessToken == null){
-                userInputAndValidation.setAccessToken();
-            }else{
-                userInputAndValidation.authTokenMap.put("AccessToken", configFile.accessToken);
-                System.out.println("Using access token from config file.");
-            }
-
-            // Have the user set their Access Secret token.
-            if(configFile.accessSecret == null){
-                userInputAndValidation.setAccessSecret();
-            }else{
-                userInputAndValidation.authTokenMap.put("AccessSecret", configFile.accessSecret);
-                System.out.println("Using Access Secret token from config file");
-            }
-
-            // Have the user set their Consumer Key token.
-            if(configFile.consumerKey == null){
-                userInputAndValidation.setConsumerKey();
-            }else{
-                userInputAndValidation.authTokenMap.put("ConsumerKey", configFile.consumerKey);
-                System.out.println("Using Consumer Key token from config file");
-            }
-
-            // Have the user set their Consumer Secret token.
-            if(configFile.consumerSecret == null){
-                userInputAndValidation.setConsumerSecret();
-            }else{
-                userInputAndValidation.authTokenMap.put("ConsumerSecret", configFile.consumerSecret);
-                System.out.println("Using Consumer Secret token from config file.");
+            // Credentials are only needed when gathering from the live stream.
+            if(configFile.replayFile == null){
+
+                // Have the user set their Access token.
+                if(configFile.accessToken == null){
+                    userInputAndValidation.setAccessToken();
+                }else{
+                    userInputAndValidation.authTokenMap.put("AccessToken", configFile.accessToken);
+                    System.out.println("Using access token from config file.");
+                }
+
+                // Have the user set their Access Secret token.
+                if(configFile.accessSecret == null){
+                    userInputAndValidation.setAccessSecret();
+                }else{
+                    userInputAndValidation.authTokenMap.put("AccessSecret", configFile.accessSecret);
+                    System.out.println("Using Access Secret token from config file");
+                }
+
+                // Have the user set their Consumer Key token.
+                if(configFile.consumerKey == null){
+                    userInputAndValidation.setConsumerKey();
+                }else{
+                    userInputAndValidation.authTokenMap.put("ConsumerKey", configFile.consumerKey);
+                    System.out.println("Using Consumer Key token from config file");
+                }
+
+                // Have the user set their Consumer Secret token.
+                if(configFile.consumerSecret == null){
+                    userInputAndValidation.setConsumerSecret();
+                }else{
+                    userInputAndValidation.authTokenMap.put("ConsumerSecret", configFile.consumerSecret);
+                    System.out.println("Using Consumer Secret token from config file.");
+                }
             }
         }else {
             System.out.println("No twitter.config file found, you will now be asked to enter your parameters and " +
@@ -120,10 +130,22 @@ public class Main {
 
 
 
-        // Create the gathering thread.
-        GatheringThread gatherer = new GatheringThread(userInputAndValidation.authTokenMap,
-                userInputAndValidation.totalRunTime, userInputAndValidation.intervalRunTime,
-                userInputAndValidation.writeFlag);
+        // Create the gathering thread, replaying the capture file if one was configured.
+        GatheringThread gatherer;
+        if(configFile.replayFile != null){
+            System.out.println("Replaying capture " + configFile.replayFile + " in " + configFile.replayMode
+                    + " mode");
+            gatherer = new GatheringThread(new ReplayTweetSource(Paths.get(configFile.replayFile),
+                    configFile.replayMode, configFile.replaySpeed,
+                    configFile.handoff.create(configFile.ingestQueueCapacity, configFile.overloadPolicy,
+                            configFile.waitStrategy)),
+                    userInputAndValidation.totalRunTime,
+                    userInputAndValidation.intervalRunTime, userInputAndValidation.writeFlag, configFile);
+        }else{
+            gatherer = new GatheringThread(userInputAndValidation.authTokenMap,
+                    userInputAndValidation.totalRunTime, userInputAndValidation.intervalRunTime,
+                    userInputAndValidation.writeFlag, configFile);
+        }
 
         Thread gathering = new Thread(gatherer);
         gathering.start();
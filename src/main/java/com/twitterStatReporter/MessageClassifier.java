@@ -0,0 +1,131 @@
+package com.twitterStatReporter;
+
+/**
+ * MessageClassifier is used to find the type of a raw stream message by looking only at its first top level key,
+ * without searching or parsing the rest of the message. It also holds helpers to pull a single number out of the
+ * small control messages, such as the timestamp_ms of a message or the track count of a limit notice.
+ */
+public final class MessageClassifier {
+
+    // The field that holds the time a message was created in milliseconds.
+    private static final String TIMESTAMP_FIELD = "\"timestamp_ms\":\"";
+
+    // The message types that are identified by their top level key.
+    private static final MessageType[] KEYED_TYPES = {
+            MessageType.DELETE, MessageType.LIMIT, MessageType.SCRUB_GEO, MessageType.STATUS_WITHHELD,
+            MessageType.USER_WITHHELD, MessageType.WARNING, MessageType.DISCONNECT
+    };
+
+    private MessageClassifier(){
+    }
+
+    /**
+     * classify finds the type of a raw message from its first top level key.
+     * @param rawJSON - The raw json of the message.
+     * @return the message type, STATUS if the first key isn't a control message key.
+     */
+    public static MessageType classify(String rawJSON){
+
+        int length = rawJSON.length();
+        int pos = skipWhitespace(rawJSON, 0);
+        if(pos >= length || rawJSON.charAt(pos) != '{'){
+            return MessageType.UNKNOWN;
+        }
+
+        pos = skipWhitespace(rawJSON, pos + 1);
+        if(pos >= length || rawJSON.charAt(pos) != '"'){
+            return MessageType.UNKNOWN;
+        }
+
+        // Find the end of the first key, control message keys never contain escapes.
+        int keyStart = pos + 1;
+        int keyEnd = rawJSON.indexOf('"', keyStart);
+        if(keyEnd < 0){
+            return MessageType.UNKNOWN;
+        }
+
+        int keyLength = keyEnd - keyStart;
+        for(MessageType type : KEYED_TYPES){
+            if(type.key.length() == keyLength && rawJSON.startsWith(type.key, keyStart)){
+                return type;
+            }
+        }
+        return MessageType.STATUS;
+    }
+
+    /**
+     * timestampMs finds the top level timestamp_ms field of a raw message. The field is the last one written in a
+     * status, delete and limit message so it is searched for from the end of the message.
+     * @param rawJSON - The raw json message.
+     * @return the timestamp in milliseconds or -1 if the message does not contain one.
+     */
+    public static long timestampMs(String rawJSON){
+
+        int start = rawJSON.lastIndexOf(TIMESTAMP_FIELD);
+        if(start < 0){
+            return -1;
+        }
+        return parseLong(rawJSON, start + TIMESTAMP_FIELD.length());
+    }
+
+    /**
+     * longField finds the first occurrence of a numeric field in a small control message and returns its value.
+     * @param rawJSON - The raw json message.
+     * @param field - The field name, without quotes.
+     * @return the value of the field or -1 if the field is missing or isn't a number.
+     */
+    public static long longField(String rawJSON, String field){
+
+        int start = rawJSON.indexOf(field);
+        while(start > 0){
+            int end = start + field.length();
+            if(rawJSON.charAt(start - 1) == '"' && end + 1 < rawJSON.length() && rawJSON.charAt(end) == '"'){
+                int valueStart = skipWhitespace(rawJSON, end + 1);
+                if(valueStart < rawJSON.length() && rawJSON.charAt(valueStart) == ':'){
+                    valueStart = skipWhitespace(rawJSON, valueStart + 1);
+                    // Numbers are sometimes sent as strings, such as timestamp_ms.
+                    if(valueStart < rawJSON.length() && rawJSON.charAt(valueStart) == '"'){
+                        valueStart++;
+                    }
+                    return parseLong(rawJSON, valueStart);
+                }
+            }
+            start = rawJSON.indexOf(field, end);
+        }
+        return -1;
+    }
+
+    /**
+     * parseLong parses the digits starting at the given position.
+     * @param rawJSON - The raw json message.
+     * @param start - The position of the first digit.
+     * @return the parsed value or -1 if there are no digits at the position.
+     */
+    private static long parseLong(String rawJSON, int start){
+
+        long value = 0;
+        int pos = start;
+        while(pos < rawJSON.length()){
+            char c = rawJSON.charAt(pos);
+            if(c < '0' || c > '9'){
+                break;
+            }
+            value = value * 10 + (c - '0');
+            pos++;
+        }
+        return pos == start ? -1 : value;
+    }
+
+    /**
+     * skipWhitespace returns the position of the next non whitespace character.
+     * @param rawJSON - The raw json message.
+     * @param pos - The position to start from.
+     * @return the position of the next non whitespace character, or the length of the message.
+     */
+    private static int skipWhitespace(String rawJSON, int pos){
+        while(pos < rawJSON.length() && rawJSON.charAt(pos) <= ' '){
+            pos++;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,46 @@
+package com.twitterStatReporter;
+
+/**
+ * MessageHandler handles one type of stream message for a report. The messages a ReportGenerator processes are routed
+ * to a handler by their MessageType, and each handler keeps its own counters for the messages it has handled. This
+ * base handler only counts the messages, handlers for messages that carry information the report needs extend it.
+ */
+public class MessageHandler {
+
+    // The type of message this handler handles.
+    final MessageType type;
+
+    // The number of messages handled.
+    long messages = 0;
+
+    /**
+     *
+     * @param type - The type of message this handler handles.
+     */
+    public MessageHandler(MessageType type){
+        this.type = type;
+    }
+
+    /**
+     * handle processes a single message of this handlers type.
+     * @param rawJSON - The raw json of the message.
+     */
+    void handle(String rawJSON){
+        messages++;
+    }
+
+    /**
+     * merge adds what another handler of the same type counted into this handler.
+     * @param other - The handler to merge, of the same type as this one.
+     */
+    void merge(MessageHandler other){
+        messages += other.messages;
+    }
+
+    /**
+     * reset clears what this handler has counted.
+     */
+    void reset(){
+        messages = 0;
+    }
+}
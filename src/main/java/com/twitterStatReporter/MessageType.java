@@ -0,0 +1,26 @@
+package com.twitterStatReporter;
+
+/**
+ * MessageType lists the kinds of messages that are delivered on the sample stream. Every message other than a status
+ * is a json object with a single top level key naming its type, which is held in the key field. Statuses are any
+ * message whose top level key isn't one of these, and UNKNOWN is used for anything that isn't a json object.
+ * https://developer.twitter.com/en/docs/twitter-api/v1/tweets/filter-realtime/guides/streaming-message-types
+ */
+public enum MessageType {
+    STATUS(null),
+    DELETE("delete"),
+    LIMIT("limit"),
+    SCRUB_GEO("scrub_geo"),
+    STATUS_WITHHELD("status_withheld"),
+    USER_WITHHELD("user_withheld"),
+    WARNING("warning"),
+    DISCONNECT("disconnect"),
+    UNKNOWN(null);
+
+    // The top level key of this type of message, null for statuses and unknown messages.
+    final String key;
+
+    MessageType(String key){
+        this.key = key;
+    }
+}
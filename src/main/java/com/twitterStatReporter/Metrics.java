@@ -0,0 +1,286 @@
+package com.twitterStatReporter;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics is the registry of the counters, gauges and latency histograms of the pipeline. The stages register their
+ * metrics once, when their class is loaded or the stage is created, and then only touch a LongAdder or a
+ * LatencyHistogram on the hot path. Gauges and the counters kept elsewhere, such as the messages dropped by the
+ * handoff, are read through a supplier only when the metrics are read. The metrics are read as Prometheus text by the
+ * MetricsReporter, and over JMX as the attributes of the com.twitterStatReporter:type=Metrics MBean.
+ */
+final class Metrics {
+
+    // The name the registry is published under in JMX.
+    private static final String MBEAN_NAME = "com.twitterStatReporter:type=Metrics";
+
+    // The quantiles written for each histogram.
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    // The metrics by name, in the order they were registered, guarded by itself.
+    private static final Map<String, Metric> REGISTRY = new LinkedHashMap<>();
+
+    // Set once the registry has been published in JMX.
+    private static boolean registeredMBean;
+
+    private Metrics(){
+    }
+
+    /**
+     * counter returns the counter with the given name, registering it the first time it is asked for.
+     * @param name - The name of the counter, ending in _total.
+     * @param help - What the counter counts.
+     * @return the counter.
+     */
+    static LongAdder counter(String name, String help){
+
+        synchronized (REGISTRY){
+            Metric metric = REGISTRY.get(name);
+            if(metric == null || metric.adder == null){
+                LongAdder adder = new LongAdder();
+                metric = new Metric(name, help, "counter", adder::sum, null, adder);
+                REGISTRY.put(name, metric);
+            }
+            return metric.adder;
+        }
+    }
+
+    /**
+     * counter registers a counter that is kept elsewhere, replacing any counter already registered with the name.
+     * @param name - The name of the counter, ending in _total.
+     * @param help - What the counter counts.
+     * @param value - Reads the counter.
+     */
+    static void counter(String name, String help, LongSupplier value){
+        register(new Metric(name, help, "counter", value, null, null));
+    }
+
+    /**
+     * gauge registers a value that can go up and down, replacing any gauge already registered with the name.
+     * @param name - The name of the gauge.
+     * @param help - What the gauge measures.
+     * @param value - Reads the gauge.
+     */
+    static void gauge(String name, String help, LongSupplier value){
+        register(new Metric(name, help, "gauge", value, null, null));
+    }
+
+    /**
+     * histogram returns the latency histogram with the given name, registering it the first time it is asked for.
+     * @param name - The name of the histogram, ending in _seconds.
+     * @param help - What the histogram times.
+     * @return the histogram, recording nanoseconds.
+     */
+    static LatencyHistogram histogram(String name, String help){
+
+        synchronized (REGISTRY){
+            Metric metric = REGISTRY.get(name);
+            if(metric == null || metric.histogram == null){
+                metric = new Metric(name, help, "summary", null, new LatencyHistogram(), null);
+                REGISTRY.put(name, metric);
+            }
+            return metric.histogram;
+        }
+    }
+
+    /**
+     * register adds a metric to the registry, replacing any metric already registered with the same name.
+     * @param metric - The metric.
+     */
+    private static void register(Metric metric){
+        synchronized (REGISTRY){
+            REGISTRY.put(metric.name, metric);
+        }
+    }
+
+    /**
+     * metrics copies the registered metrics so they can be read without holding the registry.
+     * @return the metrics, in the order they were registered.
+     */
+    private static List<Metric> metrics(){
+        synchronized (REGISTRY){
+            return new ArrayList<>(REGISTRY.values());
+        }
+    }
+
+    /**
+     * writePrometheus writes every metric in the Prometheus text exposition format. Histograms are written as
+     * summaries, in seconds, with their largest value as a separate _max gauge.
+     * @param out - The builder the metrics are written to.
+     */
+    static void writePrometheus(StringBuilder out){
+
+        for(Metric metric : metrics()){
+            out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+            out.append("# TYPE ").append(metric.name).append(' ').append(metric.type).append('\n');
+            if(metric.histogram == null){
+                out.append(metric.name).append(' ').append(metric.value.getAsLong()).append('\n');
+                continue;
+            }
+
+            LatencyHistogram.Snapshot snapshot = metric.histogram.snapshot();
+            for(double quantile : QUANTILES){
+                out.append(metric.name).append("{quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(snapshot.valueAt(quantile))).append('\n');
+            }
+            out.append(metric.name).append("_sum ").append(seconds(snapshot.sum)).append('\n');
+            out.append(metric.name).append("_count ").append(snapshot.count).append('\n');
+            out.append("# HELP ").append(metric.name).append("_max Largest value of ").append(metric.name)
+                    .append('\n');
+            out.append("# TYPE ").append(metric.name).append("_max gauge\n");
+            out.append(metric.name).append("_max ").append(seconds(snapshot.max)).append('\n');
+        }
+    }
+
+    /**
+     * attributes reads every metric as the attributes of the MBean. Histograms are read as their count, mean, median,
+     * 99th percentile and largest value, in seconds.
+     * @return the attribute values by name.
+     */
+    private static Map<String, Object> attributes(){
+
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        for(Metric metric : metrics()){
+            if(metric.histogram == null){
+                attributes.put(metric.name, metric.value.getAsLong());
+                continue;
+            }
+            LatencyHistogram.Snapshot snapshot = metric.histogram.snapshot();
+            attributes.put(metric.name + "_count", snapshot.count);
+            attributes.put(metric.name + "_mean", seconds((long) snapshot.mean()));
+            attributes.put(metric.name + "_p50", seconds(snapshot.valueAt(0.5)));
+            attributes.put(metric.name + "_p99", seconds(snapshot.valueAt(0.99)));
+            attributes.put(metric.name + "_max", seconds(snapshot.max));
+        }
+        return attributes;
+    }
+
+    /**
+     * registerMBean publishes the registry in the platform MBean server, so it can be read with jconsole or any JMX
+     * client. Publishing it more than once does nothing.
+     */
+    static synchronized void registerMBean(){
+
+        if(registeredMBean){
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName(MBEAN_NAME));
+            registeredMBean = true;
+        } catch (JMException e) {
+            System.out.println("Unable to publish the metrics over JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * seconds converts nanoseconds to seconds.
+     * @param nanos - The time in nanoseconds.
+     * @return the time in seconds.
+     */
+    private static double seconds(long nanos){
+        return nanos / 1_000_000_000.0;
+    }
+
+    /**
+     * Metric is a registered metric, read through its value supplier, or its histogram for a summary.
+     */
+    private static final class Metric {
+
+        final String name;
+        final String help;
+
+        // The Prometheus type of the metric, counter, gauge or summary.
+        final String type;
+
+        // Reads a counter or gauge, null for a histogram.
+        final LongSupplier value;
+
+        // The histogram of a summary, null otherwise.
+        final LatencyHistogram histogram;
+
+        // The adder of a counter kept by the registry, null otherwise.
+        final LongAdder adder;
+
+        Metric(String name, String help, String type, LongSupplier value, LatencyHistogram histogram,
+               LongAdder adder){
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.value = value;
+            this.histogram = histogram;
+            this.adder = adder;
+        }
+    }
+
+    /**
+     * MetricsMBean exposes the registry over JMX as read only attributes. The attributes are read again each time the
+     * MBean info is asked for, so metrics registered after it was published still show up.
+     */
+    private static final class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+
+            Object value = attributes().get(attribute);
+            if(value == null){
+                throw new AttributeNotFoundException("No metric named " + attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+
+            Map<String, Object> attributes = attributes();
+            AttributeList list = new AttributeList();
+            for(String name : names){
+                if(attributes.containsKey(name)){
+                    list.add(new Attribute(name, attributes.get(name)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+
+            List<MBeanAttributeInfo> infos = new ArrayList<>();
+            for(Map.Entry<String, Object> attribute : attributes().entrySet()){
+                infos.add(new MBeanAttributeInfo(attribute.getKey(), attribute.getValue().getClass().getName(),
+                        attribute.getKey(), true, false, false));
+            }
+            return new MBeanInfo(Metrics.class.getName(), "Metrics of the tweet pipeline",
+                    infos.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
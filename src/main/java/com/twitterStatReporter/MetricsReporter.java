@@ -0,0 +1,140 @@
+package com.twitterStatReporter;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MetricsReporter publishes the Metrics of the pipeline while it runs. The metrics are always published over JMX. When
+ * a metrics file is set in the config file they are written to it as Prometheus text every metrics interval, replacing
+ * the file in one move so a reader such as the node exporter textfile collector never sees half a file, and when a
+ * metrics port is set they are served as Prometheus text on http://localhost:port/metrics. The reporter runs on a
+ * single daemon thread so it never keeps the program running, the metrics are written one last time when it stops.
+ */
+final class MetricsReporter {
+
+    // The content type of the Prometheus text exposition format.
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    // The file the metrics are written to, null to not write them.
+    private final Path file;
+
+    // The thread the metrics file is written on, and the http server is started from.
+    private final ScheduledExecutorService reporter;
+
+    // The server the metrics are served on, null to not serve them.
+    private final HttpServer server;
+
+    /**
+     *
+     * @param file - The file the metrics are written to, or null.
+     * @param server - The server the metrics are served on, or null.
+     */
+    private MetricsReporter(Path file, HttpServer server){
+
+        this.file = file;
+        this.server = server;
+        this.reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * start registers the gauges of the handoff the raw tweets are read from and of the heap, and starts publishing
+     * the metrics.
+     * @param config - The loaded config file, used for the metrics file, interval and port.
+     * @param rawTweets - The handoff the raw tweets are read from.
+     * @return the reporter, to stop once the reports have been written.
+     * @throws IOException - thrown if the metrics port cannot be listened on.
+     */
+    static MetricsReporter start(ConfigFileReader config, TweetHandoff rawTweets) throws IOException {
+
+        Metrics.gauge("twitterstats_handoff_depth", "Messages waiting in the stream handoff.", rawTweets::size);
+        Metrics.gauge("twitterstats_handoff_capacity", "Messages the stream handoff can hold.", rawTweets::capacity);
+        Metrics.counter("twitterstats_handoff_dropped_total", "Messages dropped by the overload policy of the stream "
+                + "handoff.", rawTweets::dropped);
+        Metrics.gauge("twitterstats_jvm_heap_used_bytes", "Heap memory in use.",
+                () -> ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        Metrics.gauge("twitterstats_jvm_heap_committed_bytes", "Heap memory committed by the JVM.",
+                () -> ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getCommitted());
+        Metrics.registerMBean();
+
+        HttpServer server = null;
+        if(config.metricsPort > 0){
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), config.metricsPort), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = prometheusText().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                exchange.sendResponseHeaders(200, body.length);
+                try(OutputStream out = exchange.getResponseBody()){
+                    out.write(body);
+                }
+            });
+        }
+
+        MetricsReporter reporter = new MetricsReporter(
+                config.metricsFile != null ? Paths.get(config.metricsFile) : null, server);
+        if(server != null){
+            // Started from the daemon reporter thread so the server's dispatcher thread is a daemon too.
+            reporter.reporter.execute(server::start);
+        }
+        if(reporter.file != null){
+            reporter.reporter.scheduleAtFixedRate(reporter::writeFile, config.metricsInterval, config.metricsInterval,
+                    TimeUnit.SECONDS);
+        }
+        return reporter;
+    }
+
+    /**
+     * stop writes the metrics file one last time and stops serving the metrics.
+     */
+    void stop(){
+
+        reporter.shutdownNow();
+        if(file != null){
+            writeFile();
+        }
+        if(server != null){
+            server.stop(0);
+        }
+    }
+
+    /**
+     * writeFile writes the metrics to a temporary file next to the metrics file and moves it over the metrics file.
+     */
+    private void writeFile(){
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.writeString(temporary, prometheusText());
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Unable to write the metrics to " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * prometheusText reads every metric as Prometheus text.
+     * @return the metrics.
+     */
+    private static String prometheusText(){
+
+        StringBuilder text = new StringBuilder(4096);
+        Metrics.writePrometheus(text);
+        return text.toString();
+    }
+}
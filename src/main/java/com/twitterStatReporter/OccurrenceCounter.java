@@ -0,0 +1,104 @@
+package com.twitterStatReporter;
+
+/**
+ * OccurrenceCounter counts the occurrences of the values of a report field, such as the hashtags or languages seen
+ * during an interval. Each distinct value is given a dense int id when it is first counted so the counts can be held
+ * in primitive arrays and read back by id when the report is written, ids run from 0 to size() - 1. Bounded memory
+ * counters only keep the most common values and report how far their counts may be over.
+ */
+public interface OccurrenceCounter {
+
+    /**
+     * increment adds one occurrence of the given value.
+     * @param key - The value that occurred.
+     */
+    default void increment(String key){
+        add(key, 1);
+    }
+
+    /**
+     * add adds a number of occurrences of the given value.
+     * @param key - The value that occurred.
+     * @param occurrences - The number of times it occurred.
+     */
+    void add(String key, int occurrences);
+
+    /**
+     * size returns the number of ids in use, ids with a count of 0 may be included.
+     * @return one more than the highest id.
+     */
+    int size();
+
+    /**
+     * key returns the value with the given id.
+     * @param id - The id of the value.
+     * @return the value.
+     */
+    String key(int id);
+
+    /**
+     * count returns the number of occurrences of the value with the given id.
+     * @param id - The id of the value.
+     * @return the number of occurrences.
+     */
+    long count(int id);
+
+    /**
+     * merge adds the counts of another counter of the same field into this one, used to combine the partial counters
+     * of the report workers once an interval closes. The other counter is left unchanged.
+     * @param other - The counter to merge.
+     */
+    default void merge(OccurrenceCounter other){
+        for(int id = 0; id < other.size(); id++){
+            long count = other.count(id);
+            if(count > 0){
+                add(other.key(id), (int) count);
+            }
+        }
+    }
+
+    /**
+     * subtract removes the counts of another counter of the same field from this one, used to take an expired pane
+     * out of a sliding window. Every count of the other counter must have been merged into this one. Approximate
+     * counters can't be subtracted from, their counts aren't exact enough to take counts back out.
+     * @param other - The counter to subtract.
+     */
+    default void subtract(OccurrenceCounter other){
+
+        if(isApproximate()){
+            throw new UnsupportedOperationException("Cannot subtract from an approximate counter");
+        }
+        for(int id = 0; id < other.size(); id++){
+            long count = other.count(id);
+            if(count > 0){
+                add(other.key(id), (int) -count);
+            }
+        }
+    }
+
+    /**
+     * error returns how much the count of the value with the given id may overestimate its true number of
+     * occurrences, exact counters always return 0.
+     * @param id - The id of the value.
+     * @return the most the count can be over by.
+     */
+    default long error(int id){
+        return 0;
+    }
+
+    /**
+     * isApproximate checks if the counts of this counter are estimates rather than exact counts.
+     * @return true if the counts are estimates.
+     */
+    default boolean isApproximate(){
+        return false;
+    }
+
+    /**
+     * errorBound returns the most any count of this counter can overestimate its value by.
+     * @return the guaranteed error bound, 0 for exact counters.
+     */
+    default long errorBound(){
+        return 0;
+    }
+}
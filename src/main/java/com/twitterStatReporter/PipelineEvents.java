@@ -0,0 +1,156 @@
+package com.twitterStatReporter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * PipelineEvents holds the JDK Flight Recorder events of the pipeline, so a recording lines up the stream, the
+ * intervals and the reports with the garbage collections, safepoints and the rest of the JVM's own events. The events
+ * cost next to nothing unless a recording has them enabled, the twitterStatReporter.jfc settings file at the root of
+ * the project enables them with thresholds that keep their overhead low enough to leave on in production.
+ */
+final class PipelineEvents {
+
+    // The category the events are shown under.
+    private static final String CATEGORY = "Twitter Stat Reporter";
+
+    private PipelineEvents(){
+    }
+
+    /**
+     * StreamIngest spans the publishing of a batch of TweetHandoff.BATCH_SIZE messages by a tweet source.
+     */
+    @Name("com.twitterStatReporter.StreamIngest")
+    @Label("Stream Ingest")
+    @Category(CATEGORY)
+    @Description("A batch of messages published to the stream handoff by the tweet source")
+    @StackTrace(false)
+    static final class StreamIngest extends Event {
+
+        @Label("Messages")
+        int messages;
+
+        @Label("Dropped")
+        @Description("Messages dropped by the overload policy of the handoff since the stream connected")
+        long dropped;
+
+        /**
+         * published counts a message published by the source, committing the event once it holds a batch.
+         * @param handoff - The handoff the message was published to.
+         * @return the event the next message is counted in.
+         */
+        StreamIngest published(TweetHandoff handoff){
+
+            if(!isEnabled()){
+                return this;
+            }
+            if(messages++ == 0){
+                begin();
+            }
+            if(messages < TweetHandoff.BATCH_SIZE){
+                return this;
+            }
+            dropped = handoff.dropped();
+            commit();
+            return new StreamIngest();
+        }
+    }
+
+    /**
+     * Interval spans an interval from the first message counted in it until its report is handed to the report
+     * writer.
+     */
+    @Name("com.twitterStatReporter.Interval")
+    @Label("Interval")
+    @Category(CATEGORY)
+    @Description("An interval from its first message until it was closed")
+    @StackTrace(false)
+    static final class Interval extends Event {
+
+        @Label("Report Number")
+        long reportNumber;
+
+        @Label("Messages")
+        int messages;
+
+        @Label("Late Messages")
+        @Description("Messages that arrived after their interval was closed, since the previous report")
+        long lateMessages;
+    }
+
+    /**
+     * TweetParse times the extraction of the report fields of a status, only the statuses whose parse time
+     * IntervalAggregate samples are timed.
+     */
+    @Name("com.twitterStatReporter.TweetParse")
+    @Label("Tweet Parse")
+    @Category(CATEGORY)
+    @Description("The extraction of the report fields of a sampled status")
+    @StackTrace(false)
+    static final class TweetParse extends Event {
+
+        @Label("Length")
+        @Description("The length of the status json, in characters")
+        int length;
+
+        @Label("Hashtags")
+        int hashtags;
+
+        @Label("Urls")
+        int urls;
+
+        @Label("User Mentions")
+        int userMentions;
+    }
+
+    /**
+     * TopK times finding the most common values of a report field.
+     */
+    @Name("com.twitterStatReporter.TopK")
+    @Label("Top K")
+    @Category(CATEGORY)
+    @Description("Finding the most common values of a report field")
+    @StackTrace(false)
+    static final class TopK extends Event {
+
+        @Label("Report Number")
+        int reportNumber;
+
+        @Label("Field")
+        String field;
+
+        @Label("Values")
+        @Description("The number of distinct values the most common were picked from")
+        int values;
+
+        @Label("K")
+        int k;
+
+        @Label("Approximate")
+        boolean approximate;
+    }
+
+    /**
+     * ReportWrite times writing a report to the terminal or to file.
+     */
+    @Name("com.twitterStatReporter.ReportWrite")
+    @Label("Report Write")
+    @Category(CATEGORY)
+    @Description("Writing the report of an interval")
+    @StackTrace(false)
+    static final class ReportWrite extends Event {
+
+        @Label("Report Number")
+        int reportNumber;
+
+        @Label("Tweets")
+        int tweets;
+
+        @Label("To File")
+        boolean toFile;
+    }
+}
@@ -0,0 +1,165 @@
+package com.twitterStatReporter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * ReplayTweetSource is a TweetSource that replays a recorded capture of the sample stream instead of connecting to
+ * twitter. The capture is a newline delimited json (NDJSON) file with one raw stream message per line, the file may
+ * optionally be gzip'd. The replay can be paced using the timestamp_ms field of each message to reproduce the original
+ * timing, a scaled version of the original timing, or be pushed into the rawTweets queue as fast as possible to
+ * measure the maximum throughput of the reporting pipeline. Once the capture has been fully replayed, or the thread is
+ * interrupted, it prints out the number of messages replayed and the rate they were replayed at.
+ */
+public class ReplayTweetSource implements TweetSource {
+
+    /**
+     * The pacing modes a capture can be replayed with.
+     * ORIGINAL - Replay the messages with the same gaps between them as when they were recorded.
+     * SCALED - Replay the messages with the recorded gaps divided by the replay speed.
+     * FAST - Replay the messages as fast as the pipeline can accept them.
+     */
+    public enum Mode { ORIGINAL, SCALED, FAST }
+
+    // The number of messages read from the capture.
+    private static final LongAdder RECEIVED = Metrics.counter("twitterstats_messages_received_total",
+            "Messages read from the tweet source.");
+
+    // Blocking queue to hold the raw tweets.
+    TweetHandoff rawTweets;
+
+    // The recorded capture file to replay.
+    private final Path captureFile;
+
+    // The pacing mode used when replaying the capture.
+    private final Mode mode;
+
+    // Speed multiplier used in the scaled mode, 2.0 replays twice as fast as recorded.
+    private final double speed;
+
+    /**
+     *
+     * @param captureFile - Path to the NDJSON capture to replay, gzip'd captures are detected and decompressed.
+     * @param mode - The pacing mode used to replay the capture.
+     * @param speed - Speed multiplier used by the scaled mode, must be greater than zero.
+     * @param rawTweets - The handoff the replayed messages are published to.
+     */
+    public ReplayTweetSource(Path captureFile, Mode mode, double speed, TweetHandoff rawTweets){
+
+        if(speed <= 0){
+            throw new IllegalArgumentException("Replay speed must be greater than zero: " + speed);
+        }
+
+        // Set the capture file
+        this.captureFile = captureFile;
+
+        // Set the pacing mode and speed.
+        this.mode = mode;
+        this.speed = mode == Mode.ORIGINAL ? 1.0 : speed;
+
+        // Set the blocking queue for the raw tweets.
+        this.rawTweets = rawTweets;
+    }
+
+    @Override
+    public TweetHandoff rawTweets() {
+        return rawTweets;
+    }
+
+    @Override
+    public void run() {
+
+        // Number of messages replayed so far.
+        long replayed = 0;
+
+        // The wall clock time the replay started at.
+        long replayStart = System.nanoTime();
+
+        // The timestamp of the first message in the capture, used as the origin of the recorded timeline.
+        long firstTimestamp = -1;
+
+        // The flight recorder event of the batch of messages being published.
+        PipelineEvents.StreamIngest ingest = new PipelineEvents.StreamIngest();
+
+        try(BufferedReader reader = openCapture()){
+            String line;
+            while((line = reader.readLine()) != null && !Thread.currentThread().isInterrupted()){
+
+                // Skip the keep alive newlines that are recorded along with the stream.
+                if(line.isBlank()){
+                    continue;
+                }
+
+                if(mode != Mode.FAST){
+                    long timestamp = MessageClassifier.timestampMs(line);
+
+                    // Messages without a timestamp are replayed straight away.
+                    if(timestamp >= 0){
+                        if(firstTimestamp < 0){
+                            firstTimestamp = timestamp;
+                        }
+                        waitUntil(replayStart + (long) ((timestamp - firstTimestamp) * 1_000_000L / speed));
+                    }
+                }
+
+                RECEIVED.increment();
+                rawTweets.publish(line);
+                ingest = ingest.published(rawTweets);
+                replayed++;
+            }
+        }catch (InterruptedException e){
+            // Interrupted while pacing, stop replaying.
+            Thread.currentThread().interrupt();
+        }catch (IOException e){
+            System.out.println("Unable to replay capture " + captureFile + ": " + e.getMessage());
+        }
+
+        double seconds = (System.nanoTime() - replayStart) / 1_000_000_000.0;
+        System.out.println("Replayed " + replayed + " messages from " + captureFile + " in "
+                + String.format("%.2f", seconds) + " seconds ("
+                + String.format("%.0f", replayed / Math.max(seconds, 0.001)) + " messages/sec)");
+    }
+
+    /**
+     * openCapture opens the capture file for reading, wrapping it in a gzip stream if the file starts with the gzip
+     * magic number.
+     * @return a reader over the lines of the capture.
+     * @throws IOException - thrown if the capture cannot be opened.
+     */
+    private BufferedReader openCapture() throws IOException {
+
+        InputStream in = new BufferedInputStream(Files.newInputStream(captureFile), 1 << 16);
+
+        // Peek at the first two bytes to check for the gzip magic number.
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+
+        if(first == 0x1f && second == 0x8b){
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    /**
+     * waitUntil sleeps the replay thread until the given System.nanoTime deadline.
+     * @param deadline - System.nanoTime value to wait until.
+     * @throws InterruptedException - thrown if the replay is interrupted while waiting.
+     */
+    private void waitUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while((remaining = deadline - System.nanoTime()) > 0){
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+}
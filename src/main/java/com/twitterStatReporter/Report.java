@@ -0,0 +1,287 @@
+package com.twitterStatReporter;
+
+import java.util.List;
+
+/**
+ * Report holds the finished report of one interval, built by the ReportGenerator from the aggregate of the interval
+ * and handed to the ReportSink to be written. It only holds the values of the report, the wording and layout of the
+ * report are left to the ReportFormatter it is written with, so the same report can be written as text, json or csv.
+ * A report never changes once built, so it can be written on another thread without copying.
+ */
+final class Report {
+
+    // The number of the report.
+    final int number;
+
+    // The number of messages counted, the number of tweets that weren't deleted, estimated if the report was sampled,
+    // and the number of deleted tweets.
+    final int tweets;
+    final float actualTweets;
+    final int deletedTweets;
+
+    // The statuses parsed by the adaptive sampler, null when sampling is turned off.
+    final Sampling sampling;
+
+    // Flag set when the counts and percentages are estimated from a sample of the statuses.
+    final boolean estimated;
+
+    // The counts of the limit notices and the other stream control messages seen during the interval.
+    final List<Count> messageCounts;
+
+    // The messages dropped by the stream queue since the stream connected, null if there is no stream queue.
+    final Dropped dropped;
+
+    // The number of messages that arrived after their interval was reported.
+    final long lateMessages;
+
+    // The most common values of each report field.
+    final Ranking hashtags;
+    final Ranking languages;
+    final Ranking domains;
+    final Ranking userMentions;
+
+    // The percentages of tweets with a url, with a photo and that were retweets.
+    final Share urls;
+    final Share photos;
+    final Share retweets;
+
+    // The estimates of the sketches, null when sketches are turned off.
+    final Sketches sketches;
+
+    // The time, in milliseconds since the epoch, the interval was due to close, 0 if not known.
+    final long closedAt;
+
+    /**
+     *
+     * @param number - The number of the report.
+     * @param tweets - The number of messages counted.
+     * @param actualTweets - The number of tweets that weren't deleted.
+     * @param deletedTweets - The number of deleted tweets.
+     * @param sampling - The statuses parsed by the adaptive sampler, null when sampling is turned off.
+     * @param messageCounts - The counts of the stream control messages.
+     * @param dropped - The messages dropped by the stream queue, null if there is no stream queue.
+     * @param lateMessages - The number of messages that arrived after their interval was reported.
+     * @param rankings - The most common hashtags, languages, domains and user mentions, in that order.
+     * @param shares - The percentages of tweets with a url, with a photo and that were retweets, in that order.
+     * @param sketches - The estimates of the sketches, null when sketches are turned off.
+     * @param closedAt - The time the interval was due to close, 0 if not known.
+     */
+    Report(int number, int tweets, float actualTweets, int deletedTweets, Sampling sampling,
+           List<Count> messageCounts, Dropped dropped, long lateMessages, Ranking[] rankings, Share[] shares,
+           Sketches sketches, long closedAt){
+
+        this.number = number;
+        this.tweets = tweets;
+        this.actualTweets = actualTweets;
+        this.deletedTweets = deletedTweets;
+        this.sampling = sampling;
+        this.estimated = sampling != null && sampling.parsed < sampling.statuses;
+        this.messageCounts = List.copyOf(messageCounts);
+        this.dropped = dropped;
+        this.lateMessages = lateMessages;
+        this.hashtags = rankings[0];
+        this.languages = rankings[1];
+        this.domains = rankings[2];
+        this.userMentions = rankings[3];
+        this.urls = shares[0];
+        this.photos = shares[1];
+        this.retweets = shares[2];
+        this.sketches = sketches;
+        this.closedAt = closedAt;
+    }
+
+    /**
+     * rankings lists the most common values of each report field in the order they are written.
+     * @return the hashtags, languages, domains and user mentions.
+     */
+    List<Ranking> rankings(){
+        return List.of(hashtags, languages, domains, userMentions);
+    }
+
+    /**
+     * shares lists the percentages of tweets in the order they are written.
+     * @return the url, photo and retweet percentages.
+     */
+    List<Share> shares(){
+        return List.of(urls, photos, retweets);
+    }
+
+    /**
+     * Count is a named count, such as the number of limit notices or the estimated number of distinct hashtags.
+     */
+    static final class Count {
+
+        // The name of the count in the json and csv formats, and the text written before the report number in the
+        // text format.
+        final String name;
+        final String label;
+
+        final long value;
+
+        // Written after the value in the text format, such as a percent sign, usually empty.
+        final String unit;
+
+        Count(String name, String label, long value, String unit){
+            this.name = name;
+            this.label = label;
+            this.value = value;
+            this.unit = unit;
+        }
+    }
+
+    /**
+     * Sampling is the number of statuses seen and the number whose fields were parsed by the adaptive sampler.
+     */
+    static final class Sampling {
+
+        final long statuses;
+        final long parsed;
+
+        Sampling(long statuses, long parsed){
+            this.statuses = statuses;
+            this.parsed = parsed;
+        }
+
+        /**
+         * percent returns the percentage of statuses that were parsed.
+         * @return the sampling rate as a percentage, 100 if there were no statuses.
+         */
+        double percent(){
+            return statuses == 0 ? 100 : 100.0 * parsed / statuses;
+        }
+    }
+
+    /**
+     * Dropped is the number of messages dropped by the stream queue, along with its overload policy and capacity.
+     */
+    static final class Dropped {
+
+        final long messages;
+        final String policy;
+        final int capacity;
+
+        Dropped(long messages, String policy, int capacity){
+            this.messages = messages;
+            this.policy = policy;
+            this.capacity = capacity;
+        }
+    }
+
+    /**
+     * Ranking is the most common values of a report field, most common first.
+     */
+    static final class Ranking {
+
+        // The name of the field in the json and csv formats, and in the text format.
+        final String name;
+        final String field;
+
+        // The number of values asked for.
+        final int k;
+
+        // Flag set when only the heavy hitters were counted, and how far any count may be over.
+        final boolean approximate;
+        final long errorBound;
+
+        final List<Entry> entries;
+
+        Ranking(String name, String field, int k, boolean approximate, long errorBound, List<Entry> entries){
+            this.name = name;
+            this.field = field;
+            this.k = k;
+            this.approximate = approximate;
+            this.errorBound = errorBound;
+            this.entries = List.copyOf(entries);
+        }
+    }
+
+    /**
+     * Entry is one of the most common values of a field and its count. The count of a sampled report is an estimate,
+     * written with the low and high ends of its 95% confidence interval.
+     */
+    static final class Entry {
+
+        final String value;
+        final long count;
+        final long low;
+        final long high;
+
+        // How far the count may be over, 0 unless the field only counted its heavy hitters.
+        final long error;
+
+        Entry(String value, long count, long low, long high, long error){
+            this.value = value;
+            this.count = count;
+            this.low = low;
+            this.high = high;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Share is the percentage of tweets with a property. The percentage of a sampled report is an estimate, written
+     * with the low and high ends of its 95% confidence interval.
+     */
+    static final class Share {
+
+        // The name of the share in the json and csv formats, and what the tweets did in the text format.
+        final String name;
+        final String description;
+
+        final float percent;
+        final double low;
+        final double high;
+
+        Share(String name, String description, float percent, double low, double high){
+            this.name = name;
+            this.description = description;
+            this.percent = percent;
+            this.low = low;
+            this.high = high;
+        }
+    }
+
+    /**
+     * Sketches is the estimated number of distinct values of the report fields and the estimated counts of the
+     * hashtags and user mentions asked for in the config file.
+     */
+    static final class Sketches {
+
+        // The distinct estimates and their relative error.
+        final List<Count> distinct;
+        final double relativeError;
+
+        final List<PointQuery> queries;
+
+        Sketches(List<Count> distinct, double relativeError, List<PointQuery> queries){
+            this.distinct = List.copyOf(distinct);
+            this.relativeError = relativeError;
+            this.queries = List.copyOf(queries);
+        }
+    }
+
+    /**
+     * PointQuery is the estimated count of a hashtag or user mention, never under the true count and over by at most
+     * the error bound with the given confidence.
+     */
+    static final class PointQuery {
+
+        // What was looked up, hashtag or user mention, and the symbol it is written with.
+        final String kind;
+        final char symbol;
+
+        final String value;
+        final long estimate;
+        final long errorBound;
+        final double confidence;
+
+        PointQuery(String kind, char symbol, String value, long estimate, long errorBound, double confidence){
+            this.kind = kind;
+            this.symbol = symbol;
+            this.value = value;
+            this.estimate = estimate;
+            this.errorBound = errorBound;
+            this.confidence = confidence;
+        }
+    }
+}
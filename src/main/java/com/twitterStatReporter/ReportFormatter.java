@@ -0,0 +1,52 @@
+package com.twitterStatReporter;
+
+/**
+ * ReportFormatter renders a Report for the ReportSink to write. Formatters append to a buffer the sink reuses for
+ * every report, so rendering a report creates next to no garbage. Implementations are not thread safe, the sink
+ * creates its own formatter.
+ */
+interface ReportFormatter {
+
+    /**
+     * The available formats, selected with the ReportFormat field of the config file.
+     * TEXT - The human readable report, each report written to its own "Report N.txt" file (TextReportFormatter).
+     * JSON - One json object per report, appended to "Reports.jsonl" (JsonReportFormatter).
+     * CSV - One row per value of each report, appended to "Reports.csv" (CsvReportFormatter).
+     */
+    enum Format {
+        TEXT, JSON, CSV;
+
+        /**
+         * create builds a new formatter of this type.
+         * @param toFile - Flag set when the reports are written to file rather than to the terminal.
+         * @return a new formatter.
+         */
+        ReportFormatter create(boolean toFile){
+            if(this == JSON){
+                return new JsonReportFormatter();
+            }
+            return this == CSV ? new CsvReportFormatter() : new TextReportFormatter(toFile);
+        }
+    }
+
+    /**
+     * header returns the text written once at the start of each file, or of the terminal output, before any report.
+     * @return the header, empty if there is none.
+     */
+    String header();
+
+    /**
+     * fileName returns the file a report is written to when the reports are written to file. Reports that share a
+     * file are appended to it in report order.
+     * @param report - The report.
+     * @return the name of the file.
+     */
+    String fileName(Report report);
+
+    /**
+     * format appends a report to the buffer.
+     * @param report - The report.
+     * @param out - The buffer the report is appended to.
+     */
+    void format(Report report, StringBuilder out);
+}
@@ -0,0 +1,324 @@
+package com.twitterStatReporter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ReportSink writes the finished reports on its own thread, so a slow disk or terminal never holds up the counting
+ * of the next interval. Reports are handed over with submit and written in the order they were submitted. The writer
+ * thread takes every report waiting at once, renders them with the ReportFormatter into a buffer it reuses for every
+ * report, encodes the buffer into a reused direct byte buffer, and writes the reports that share a file with as few
+ * channel writes as the buffer allows. Reports written to the terminal are written whole while holding System.out, so
+ * the lines of two reports, or of a report and another message, are never interleaved.
+ *
+ * Files are created, replacing any file left by an earlier run, the first time a report is written to them and
+ * appended to after that. The reports arrive in order, so once a report goes to another file the file before it is
+ * never written again, and only the file being written is remembered however long the run is. Files are closed after
+ * each batch of reports, so every report is on disk once written.
+ */
+final class ReportSink {
+
+    // The size of the buffers the reports are rendered and encoded into, larger batches are written in pieces.
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Metrics of the reports written.
+    private static final LatencyHistogram WRITE_TIME = Metrics.histogram("twitterstats_report_write_seconds",
+            "Time to render and write a report.");
+    private static final LongAdder REPORTS_WRITTEN = Metrics.counter("twitterstats_reports_written_total",
+            "Reports written.");
+    private static final LatencyHistogram EMISSION_DELAY = Metrics.histogram("twitterstats_report_delay_seconds",
+            "Time from a window being due to close until its report was written.");
+
+    // Put on the queue to stop the writer thread once every report before it has been written.
+    private static final Report END = new Report(-1, 0, 0, 0, null, List.of(), null, 0, new Report.Ranking[4],
+            new Report.Share[3], null, 0);
+
+    // Renders the reports.
+    private final ReportFormatter formatter;
+
+    // Flag set when the reports are written to file rather than to the terminal, and the directory of the files.
+    private final boolean toFile;
+    private final Path directory;
+
+    // The reports waiting to be written.
+    private final BlockingQueue<Report> reports = new LinkedBlockingQueue<>();
+
+    // The thread the reports are written on.
+    private final Thread writer;
+
+    // The buffers the reports are rendered and encoded into, only used by the writer thread.
+    private final StringBuilder text = new StringBuilder(BUFFER_SIZE);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    // The reports rendered into the buffer and not yet written, with the events timing them.
+    private final List<Report> rendered = new ArrayList<>();
+    private final List<PipelineEvents.ReportWrite> events = new ArrayList<>();
+    private final List<Long> started = new ArrayList<>();
+
+    // The file being written, null for the terminal or before the first report, and whether the buffer starts the
+    // file so it replaces any file left by an earlier run.
+    private String fileName;
+    private boolean replace;
+
+    // Whether the header was written to the terminal.
+    private boolean headerWritten;
+
+    /**
+     *
+     * @param formatter - Renders the reports.
+     * @param toFile - Flag set when the reports are written to file rather than to the terminal.
+     * @param directory - The directory the report files are written to.
+     */
+    private ReportSink(ReportFormatter formatter, boolean toFile, Path directory){
+
+        this.formatter = formatter;
+        this.toFile = toFile;
+        this.directory = directory;
+        this.writer = WorkerThreads.namedThreads("report-sink").newThread(this::run);
+    }
+
+    /**
+     * start creates a sink for the report format in the config file and starts its writer thread.
+     * @param config - The loaded config file, used for the report format.
+     * @param writeToFile - Flag to indicate if the reports are written to the terminal (1) or to file (2).
+     * @return the sink, to close once the last report has been submitted.
+     */
+    static ReportSink start(ConfigFileReader config, int writeToFile){
+        return start(config.reportFormat.create(writeToFile == 2), writeToFile == 2, Paths.get(""));
+    }
+
+    /**
+     * start creates a sink with the given formatter and starts its writer thread.
+     * @param formatter - Renders the reports.
+     * @param toFile - Flag set when the reports are written to file rather than to the terminal.
+     * @param directory - The directory the report files are written to, the working directory for the program's
+     *                  reports.
+     * @return the sink, to close once the last report has been submitted.
+     */
+    static ReportSink start(ReportFormatter formatter, boolean toFile, Path directory){
+
+        ReportSink sink = new ReportSink(formatter, toFile, directory);
+        sink.writer.start();
+        return sink;
+    }
+
+    /**
+     * submit hands a report over to be written.
+     * @param report - The report.
+     */
+    void submit(Report report){
+        reports.add(report);
+    }
+
+    /**
+     * close stops the writer thread once every report submitted so far has been written. Reports submitted after
+     * it is closed are not written.
+     */
+    void close(){
+        reports.add(END);
+    }
+
+    /**
+     * awaitTermination waits for the writer thread to write the last report and stop.
+     * @param timeout - The most time to wait.
+     * @param unit - The unit of the timeout.
+     * @return true if the writer thread stopped, false if the timeout elapsed first.
+     * @throws InterruptedException - thrown if interrupted while waiting.
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        writer.join(Math.max(1, unit.toMillis(timeout)));
+        return !writer.isAlive();
+    }
+
+    /**
+     * run writes the reports in batches until the sink is closed, then reports how long after their intervals
+     * closed the reports were written.
+     */
+    private void run(){
+
+        List<Report> batch = new ArrayList<>();
+        boolean open = true;
+        try{
+            while(open){
+                batch.add(reports.take());
+                reports.drainTo(batch);
+                for(Report report : batch){
+                    if(report == END){
+                        open = false;
+                        break;
+                    }
+                    render(report);
+                }
+                write();
+                batch.clear();
+            }
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+
+        LatencyHistogram.Snapshot delay = EMISSION_DELAY.snapshot();
+        if(delay.count > 0){
+            System.out.println("Reports were written on average "
+                    + String.format("%.1f", delay.mean() / 1_000_000) + " ms, and at most "
+                    + TimeUnit.NANOSECONDS.toMillis(delay.max) + " ms, after their interval closed");
+        }
+    }
+
+    /**
+     * render renders a report into the buffer, first writing the reports already in the buffer if the report goes
+     * to another file or the buffer is full.
+     * @param report - The report.
+     */
+    private void render(Report report){
+
+        PipelineEvents.ReportWrite event = new PipelineEvents.ReportWrite();
+        event.begin();
+        long start = System.nanoTime();
+
+        if(toFile){
+            String name = formatter.fileName(report);
+            if(!name.equals(fileName)){
+                // The report starts a new file.
+                write();
+                fileName = name;
+                text.append(formatter.header());
+                replace = true;
+            }else if(text.length() >= BUFFER_SIZE){
+                write();
+            }
+        }else{
+            if(text.length() >= BUFFER_SIZE){
+                write();
+            }
+            if(!headerWritten){
+                text.append(formatter.header());
+                headerWritten = true;
+            }
+        }
+
+        formatter.format(report, text);
+        rendered.add(report);
+        events.add(event);
+        started.add(start);
+    }
+
+    /**
+     * write writes the rendered reports to their file or to the terminal and records how long each took.
+     */
+    private void write(){
+
+        if(rendered.isEmpty()){
+            return;
+        }
+        try{
+            if(toFile){
+                // The first write to a file this run replaces it, later writes append.
+                StandardOpenOption mode = replace ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND;
+                replace = false;
+                try(FileChannel file = FileChannel.open(directory.resolve(fileName), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, mode)){
+                    encode(file);
+                }
+            }else{
+                synchronized (System.out){
+                    System.out.flush();
+                    encode(Channels.newChannel(System.out));
+                    System.out.flush();
+                }
+            }
+        }catch (IOException e){
+            System.out.println("Unable to write report " + rendered.get(0).number
+                    + (rendered.size() > 1 ? " to " + rendered.get(rendered.size() - 1).number : "") + " to "
+                    + fileName + ": " + e.getMessage());
+            clear();
+            return;
+        }
+
+        long now = System.nanoTime();
+        long nowMillis = System.currentTimeMillis();
+        for(int i = 0; i < rendered.size(); i++){
+            Report report = rendered.get(i);
+            WRITE_TIME.record(now - started.get(i));
+            REPORTS_WRITTEN.increment();
+            if(report.closedAt > 0){
+                EMISSION_DELAY.record(TimeUnit.MILLISECONDS.toNanos(nowMillis - report.closedAt));
+            }
+            PipelineEvents.ReportWrite event = events.get(i);
+            if(event.shouldCommit()){
+                event.reportNumber = report.number;
+                event.tweets = report.tweets;
+                event.toFile = toFile;
+                event.commit();
+            }
+            if(toFile){
+                System.out.println("Finished writing report "+ report.number +"!");
+            }
+        }
+        clear();
+    }
+
+    /**
+     * encode encodes the text buffer as UTF-8 into the byte buffer and writes it to the channel, a piece at a time
+     * if it doesn't fit.
+     * @param channel - The channel the reports are written to.
+     * @throws IOException - thrown if the channel can't be written to.
+     */
+    private void encode(WritableByteChannel channel) throws IOException {
+
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        CoderResult result;
+        do{
+            result = encoder.encode(chars, bytes, true);
+            drain(channel);
+        }while(result.isOverflow());
+        while(encoder.flush(bytes).isOverflow()){
+            drain(channel);
+        }
+        drain(channel);
+    }
+
+    /**
+     * drain writes the bytes encoded so far to the channel.
+     * @param channel - The channel the reports are written to.
+     * @throws IOException - thrown if the channel can't be written to.
+     */
+    private void drain(WritableByteChannel channel) throws IOException {
+
+        bytes.flip();
+        while(bytes.hasRemaining()){
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    /**
+     * clear empties the buffer once its reports have been written, or couldn't be.
+     */
+    private void clear(){
+
+        text.setLength(0);
+        rendered.clear();
+        events.clear();
+        started.clear();
+    }
+}
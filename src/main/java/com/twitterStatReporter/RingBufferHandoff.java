@@ -0,0 +1,367 @@
+package com.twitterStatReporter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RingBufferHandoff is a lock free TweetHandoff built on a preallocated ring of slots, in the style of the LMAX
+ * Disruptor and Dmitry Vyukov's bounded queue. Each slot has a sequence number that says whose turn it is: the single
+ * producer may fill a slot once its sequence equals the producer's position, and a consumer may take it once its
+ * sequence is one past the consumer position. Publishing is a plain write and an ordered store, nothing is allocated
+ * and no lock is taken per message. Consumers claim slots by advancing a shared head with a compare and set, so every
+ * worker of the EventTimeWindows stage can drain the handoff at the same time, and drain claims a whole batch of
+ * messages with a single compare and set.
+ *
+ * How a consumer waits for a message to arrive is set by the WaitStrategy, trading cpu use for handoff latency.
+ */
+public final class RingBufferHandoff implements TweetHandoff {
+
+    /**
+     * The ways a consumer can wait for a message, selected with the WaitStrategy field of the config file.
+     * BUSY_SPIN - Spin on the cpu, the lowest latency but uses a whole core per waiting consumer.
+     * YIELD - Spin briefly then yield the cpu to other threads between checks.
+     * SLEEP - Spin, then yield, then park for short periods, close to YIELD latency while using very little cpu.
+     * BLOCKING - Wait on a lock condition the producer signals, the least cpu but the highest latency.
+     */
+    public enum WaitStrategy { BUSY_SPIN, YIELD, SLEEP, BLOCKING }
+
+    // The number of times a waiting thread spins, then yields, before the SLEEP strategy starts parking. Spinning on
+    // a single cpu only delays the thread being waited on, so it is skipped there.
+    private static final int SPIN_TRIES = Runtime.getRuntime().availableProcessors() > 1 ? 100 : 0;
+    private static final int YIELD_TRIES = SPIN_TRIES + 100;
+
+    // How long the SLEEP strategy and a blocked producer park for at a time.
+    private static final long PARK_NANOS = 50_000;
+
+    // Indexes of the producer tail and the consumer head in the cursors array, 128 bytes apart so the producer and
+    // the consumers don't write to the same cache line.
+    private static final int TAIL = 15;
+    private static final int HEAD = 31;
+
+    // The messages held in each slot, null once taken.
+    private final String[] messages;
+
+    // The sequence of each slot, slot i starts at i.
+    private final AtomicLongArray slotSequences;
+
+    // The producer tail and the consumer head, the positions of the next slot to fill and to take.
+    private final AtomicLongArray cursors = new AtomicLongArray(HEAD + 16);
+
+    // The producer's own copy of the tail, only the producer writes it.
+    private long tail;
+
+    // The number of slots minus one, the number of slots is a power of two.
+    private final int mask;
+
+    // The policy used when the ring is full.
+    private final Policy policy;
+
+    // How consumers wait for messages.
+    private final WaitStrategy waitStrategy;
+
+    // The number of messages dropped by the policy.
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Lock and condition the BLOCKING strategy waits on, and the number of consumers waiting on it.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    /**
+     *
+     * @param capacity - The minimum number of messages held in the ring, rounded up to a power of two.
+     * @param policy - The policy used when a message is published to a full ring.
+     * @param waitStrategy - How consumers wait for messages to arrive.
+     */
+    public RingBufferHandoff(int capacity, Policy policy, WaitStrategy waitStrategy){
+
+        if(capacity < 1 || capacity > 1 << 30){
+            throw new IllegalArgumentException("Ring buffer capacity must be between 1 and 2^30: " + capacity);
+        }
+        int slots = Integer.highestOneBit(capacity * 2 - 1);
+        this.mask = slots - 1;
+        this.policy = policy;
+        this.waitStrategy = waitStrategy;
+
+        // Preallocate the slots, each slot's sequence starts at its index so the producer can fill it first.
+        this.messages = new String[slots];
+        this.slotSequences = new AtomicLongArray(slots);
+        for(int i = 0; i < slots; i++){
+            slotSequences.lazySet(i, i);
+        }
+    }
+
+    @Override
+    public void publish(String message){
+
+        if(tryPublish(message)){
+            return;
+        }
+
+        switch (policy){
+            case BLOCK:
+                // Wait for a consumer to free a slot, a producer that is shutting down loses the message.
+                int attempts = 0;
+                while(!tryPublish(message)){
+                    if(Thread.currentThread().isInterrupted()){
+                        dropped.incrementAndGet();
+                        return;
+                    }
+                    backOff(attempts++);
+                }
+                break;
+            case DROP_NEWEST:
+                dropped.incrementAndGet();
+                break;
+            case DROP_OLDEST:
+                while(!tryPublish(message)){
+                    if(take() != null){
+                        dropped.incrementAndGet();
+                    }
+                }
+                break;
+            case SAMPLE:
+                // Full, so the message is dropped whatever the sample says.
+                dropped.incrementAndGet();
+                break;
+        }
+    }
+
+    /**
+     * tryPublish fills the slot at the tail if it is free. Under the SAMPLE policy messages are dropped at random
+     * once the ring is over half full.
+     * @param message - The message to publish.
+     * @return false if the ring was full, true if the message was published or sampled out.
+     */
+    private boolean tryPublish(String message){
+
+        int index = (int) tail & mask;
+        if(slotSequences.get(index) != tail){
+            return false;
+        }
+
+        if(policy == Policy.SAMPLE){
+            int capacity = mask + 1;
+            int half = capacity / 2;
+            long depth = tail - cursors.get(HEAD);
+            if(depth > half && ThreadLocalRandom.current().nextInt(capacity - half) >= capacity - depth){
+                dropped.incrementAndGet();
+                return true;
+            }
+        }
+
+        // Fill the slot, the ordered store of its sequence makes the message visible to the consumers.
+        messages[index] = message;
+        slotSequences.lazySet(index, tail + 1);
+        tail++;
+
+        if(waitStrategy == WaitStrategy.BLOCKING){
+            // A full store so that a consumer about to wait either sees the message or is signalled.
+            cursors.set(TAIL, tail);
+            if(waiters.get() > 0){
+                lock.lock();
+                try {
+                    notEmpty.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }else{
+            cursors.lazySet(TAIL, tail);
+        }
+        return true;
+    }
+
+    /**
+     * take claims and empties the slot at the head if it has been filled.
+     * @return the message, or null if the ring is empty.
+     */
+    private String take(){
+
+        while(true){
+            long head = cursors.get(HEAD);
+            int index = (int) head & mask;
+            long difference = slotSequences.get(index) - (head + 1);
+            if(difference == 0){
+                if(cursors.compareAndSet(HEAD, head, head + 1)){
+                    return release(index, head);
+                }
+            }else if(difference < 0){
+                return null;
+            }
+            // Another consumer took the slot first, try again at the new head.
+        }
+    }
+
+    @Override
+    public String peek(){
+
+        while(true){
+            long head = cursors.get(HEAD);
+            int index = (int) head & mask;
+            if(slotSequences.get(index) - (head + 1) < 0){
+                return null;
+            }
+            // The message is only the oldest if no consumer claimed the slot while it was read.
+            String message = messages[index];
+            if(message != null && cursors.get(HEAD) == head){
+                return message;
+            }
+        }
+    }
+
+    /**
+     * release empties a claimed slot and hands it back to the producer for the next lap of the ring.
+     * @param index - The index of the slot.
+     * @param position - The position the slot was claimed at.
+     * @return the message the slot held.
+     */
+    private String release(int index, long position){
+        String message = messages[index];
+        messages[index] = null;
+        slotSequences.lazySet(index, position + mask + 1);
+        return message;
+    }
+
+    @Override
+    public String poll(long timeout, TimeUnit unit) throws InterruptedException {
+
+        String message = take();
+        if(message != null){
+            return message;
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int attempts = 0;
+        while((message = take()) == null){
+            if(Thread.interrupted()){
+                throw new InterruptedException();
+            }
+            long remaining = deadline - System.nanoTime();
+            if(remaining <= 0){
+                return null;
+            }
+            waitForMessage(attempts++, remaining);
+        }
+        return message;
+    }
+
+    @Override
+    public int drain(String[] batch){
+
+        while(true){
+            // Count the filled slots from the head, up to the size of the batch.
+            long head = cursors.get(HEAD);
+            int available = 0;
+            while(available < batch.length
+                    && slotSequences.get((int) (head + available) & mask) == head + available + 1){
+                available++;
+            }
+            if(available == 0){
+                if(slotSequences.get((int) head & mask) - (head + 1) < 0){
+                    return 0;
+                }
+                // Another consumer moved the head, count again.
+                continue;
+            }
+
+            // Claim the whole batch with one compare and set.
+            if(cursors.compareAndSet(HEAD, head, head + available)){
+                for(int i = 0; i < available; i++){
+                    batch[i] = release((int) (head + i) & mask, head + i);
+                }
+                return available;
+            }
+        }
+    }
+
+    /**
+     * waitForMessage waits once using the wait strategy, the caller checks for a message again afterwards.
+     * @param attempts - The number of times the caller has already waited.
+     * @param remaining - The most time left to wait, in nanoseconds.
+     * @throws InterruptedException - thrown if the consumer is interrupted while blocked.
+     */
+    private void waitForMessage(int attempts, long remaining) throws InterruptedException {
+
+        switch (waitStrategy){
+            case BUSY_SPIN:
+                Thread.onSpinWait();
+                break;
+            case YIELD:
+                if(attempts < SPIN_TRIES){
+                    Thread.onSpinWait();
+                }else{
+                    Thread.yield();
+                }
+                break;
+            case SLEEP:
+                if(attempts < SPIN_TRIES){
+                    Thread.onSpinWait();
+                }else if(attempts < YIELD_TRIES){
+                    Thread.yield();
+                }else{
+                    LockSupport.parkNanos(Math.min(remaining, PARK_NANOS));
+                }
+                break;
+            case BLOCKING:
+                // Register as a waiter before the final check so the producer knows to signal.
+                waiters.incrementAndGet();
+                lock.lock();
+                try {
+                    if(isEmpty()){
+                        notEmpty.awaitNanos(remaining);
+                    }
+                } finally {
+                    lock.unlock();
+                    waiters.decrementAndGet();
+                }
+                break;
+        }
+    }
+
+    /**
+     * backOff waits once for a full ring to be drained, spinning then yielding then parking.
+     * @param attempts - The number of times the producer has already waited.
+     */
+    private void backOff(int attempts){
+        if(attempts < SPIN_TRIES){
+            Thread.onSpinWait();
+        }else if(attempts < YIELD_TRIES){
+            Thread.yield();
+        }else{
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    @Override
+    public boolean isEmpty(){
+        return cursors.get(HEAD) >= cursors.get(TAIL);
+    }
+
+    @Override
+    public int size(){
+        long head = cursors.get(HEAD);
+        return (int) Math.max(0, cursors.get(TAIL) - head);
+    }
+
+    @Override
+    public long dropped(){
+        return dropped.get();
+    }
+
+    @Override
+    public Policy policy(){
+        return policy;
+    }
+
+    @Override
+    public int capacity(){
+        return mask + 1;
+    }
+}
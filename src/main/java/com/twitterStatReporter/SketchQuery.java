@@ -0,0 +1,109 @@
+package com.twitterStatReporter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * SketchQuery answers the questions the sketches answer for a single report over a longer period. It reads the
+ * sketches saved to the sketch directory for each interval that starts in the asked for range, merges them and prints
+ * the estimated number of distinct hashtags, users, mentioned users and domains over the range, and the estimated
+ * occurrences of each hashtag and user mention asked about.
+ *
+ * Each sketch file holds one interval, named by the interval's start, even when the reports cover a sliding window, so
+ * merging the files of a range counts every interval once, and runs over different periods can be queried together.
+ * The sketches must have been made with the same sizes to be merged.
+ *
+ * Usage: SketchQuery sketchDirectory from to [#hashtag|@userMention ...]
+ * Times are ISO local date times, such as 2024-03-05T14:00, in the system time zone, or milliseconds since the epoch.
+ */
+public final class SketchQuery {
+
+    private SketchQuery(){
+    }
+
+    /**
+     * main merges the sketches of the intervals in the range and prints their estimates.
+     * @param args - The sketch directory, the from and to times and the values to look up.
+     * @throws IOException - thrown if the sketch directory or a sketch file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+
+        if(args.length < 3){
+            System.out.println("Usage: SketchQuery sketchDirectory from to [#hashtag|@userMention ...]");
+            return;
+        }
+        Path directory = Paths.get(args[0]);
+        long from;
+        long to;
+        try{
+            from = ArchiveQuery.parseTime(args[1]);
+            to = ArchiveQuery.parseTime(args[2]);
+        }catch (DateTimeParseException e){
+            System.out.println("Unable to read the range: " + e.getMessage());
+            return;
+        }
+
+        // Find the sketch files of the intervals that start in the range, in time order.
+        List<Path> files;
+        try(Stream<Path> listing = Files.list(directory)){
+            files = listing.filter(file -> IntervalSketches.start(file) >= from && IntervalSketches.start(file) < to)
+                    .sorted(Comparator.comparingLong(IntervalSketches::start))
+                    .collect(Collectors.toList());
+        }
+        String range = ArchiveQuery.time(from) + " to " + ArchiveQuery.time(to);
+        if(files.isEmpty()){
+            System.out.println("No sketches were saved in " + directory + " for intervals starting from " + range);
+            return;
+        }
+
+        // Merge the sketches of every interval in the range.
+        IntervalSketches merged = IntervalSketches.read(files.get(0));
+        for(Path file : files.subList(1, files.size())){
+            try{
+                merged.merge(IntervalSketches.read(file));
+            }catch (IllegalArgumentException e){
+                throw new IOException("The sketches in " + file + " can't be merged: " + e.getMessage(), e);
+            }
+        }
+
+        System.out.println("Merged the sketches of " + files.size() + " intervals starting from "
+                + ArchiveQuery.time(IntervalSketches.start(files.get(0))) + " to "
+                + ArchiveQuery.time(IntervalSketches.start(files.get(files.size() - 1))));
+        String distinctError = String.format(" (+/- %.1f%%)", merged.distinctHashtags.relativeError() * 100);
+        System.out.println("Estimated distinct hashtags from " + range + " = "
+                + merged.distinctHashtags.estimate() + distinctError);
+        System.out.println("Estimated distinct users from " + range + " = "
+                + merged.distinctUsers.estimate() + distinctError);
+        System.out.println("Estimated distinct mentioned users from " + range + " = "
+                + merged.distinctUserMentions.estimate() + distinctError);
+        System.out.println("Estimated distinct domains from " + range + " = "
+                + merged.distinctDomains.estimate() + distinctError);
+
+        // Look up each value, hashtags are written with a # and user mentions with an @.
+        for(int i = 3; i < args.length; i++){
+            String value = args[i];
+            CountMinSketch counts;
+            String kind;
+            if(value.length() > 1 && value.charAt(0) == '#'){
+                counts = merged.hashtagCounts;
+                kind = "hashtag";
+            }else if(value.length() > 1 && value.charAt(0) == '@'){
+                counts = merged.userMentionCounts;
+                kind = "user mention";
+            }else{
+                System.out.println("Skipped " + value + ", hashtags are written with a # and user mentions with an @");
+                continue;
+            }
+            System.out.println("Estimated occurrences of " + kind + " " + value + " from " + range + " = "
+                    + counts.estimate(value.substring(1)) + String.format(
+                    " (over by at most %d with %.0f%% confidence)", counts.errorBound(), counts.confidence() * 100));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.twitterStatReporter;
+
+import java.util.ArrayDeque;
+
+/**
+ * SlidingWindow keeps the aggregate of a window that is longer than the interval and slides by one interval each
+ * report, such as the top hashtags over the last 15 minutes refreshed every minute. The aggregate of each interval is
+ * a pane of the window. When a pane closes it is merged into the window aggregate and the pane that slid out of the
+ * window is subtracted, so each report costs the size of a pane rather than going over every tweet in the window
+ * again. Until the window has filled the reports cover the panes seen so far.
+ *
+ * A SlidingWindow is only ever used by one thread, the report writer.
+ */
+final class SlidingWindow {
+
+    // The number of panes in the window.
+    private final int panesPerWindow;
+
+    // The panes in the window, oldest first.
+    private final ArrayDeque<IntervalAggregate> panes;
+
+    // The aggregate of every pane in the window.
+    private final IntervalAggregate window;
+
+    /**
+     *
+     * @param panesPerWindow - The number of panes in the window, the window length divided by the interval length.
+     * @param config - The loaded config file, used to create the window aggregate.
+     */
+    SlidingWindow(int panesPerWindow, ConfigFileReader config){
+        this.panesPerWindow = panesPerWindow;
+        this.panes = new ArrayDeque<>(panesPerWindow + 1);
+        this.window = new IntervalAggregate(config);
+    }
+
+    /**
+     * slide adds a pane to the window and removes the pane that slid out of it.
+     * @param pane - The aggregate of the interval that just closed.
+     * @return the aggregate of the window ending with the pane, it changes on the next slide.
+     */
+    IntervalAggregate slide(IntervalAggregate pane){
+
+        panes.addLast(pane);
+        window.merge(pane);
+        if(panes.size() > panesPerWindow){
+            window.subtract(panes.removeFirst(), panes);
+        }
+
+        // Late messages and the messages past the last report are reported per pane.
+        window.lateMessages = pane.lateMessages;
+        window.messagesPastLastReport = pane.messagesPastLastReport;
+        return window;
+    }
+}
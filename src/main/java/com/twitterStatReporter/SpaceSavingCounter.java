@@ -0,0 +1,345 @@
+package com.twitterStatReporter;
+
+import java.util.Arrays;
+
+/**
+ * SpaceSavingCounter is a bounded memory OccurrenceCounter that keeps track of the heavy hitters of a field using the
+ * Space-Saving algorithm (Metwally, Agrawal and El Abbadi). At most capacity values are counted at once. When a new
+ * value arrives and every counter is in use, the value with the lowest count is evicted and the new value takes over
+ * its counter, inheriting its count as the error of the new value. Every count is an overestimate by at most its
+ * error, and any value that occurred more than total / capacity times is guaranteed to still be counted, so the top
+ * values of a field can be reported with error bounds in a fixed amount of memory no matter how many distinct values
+ * the interval holds.
+ *
+ * The counters are held in arrays indexed by slot, a min-heap of slots ordered by count finds the counter to evict and
+ * an open addressing table of slots finds the counter of a value. Ids of this OccurrenceCounter are the slots.
+ */
+public final class SpaceSavingCounter implements OccurrenceCounter {
+
+    // The maximum number of values counted at once.
+    private final int capacity;
+
+    // The values, their hash codes, their counts and the error of their counts, indexed by slot.
+    private String[] keys;
+    private int[] hashes;
+    private long[] counts;
+    private long[] errors;
+
+    // The number of slots in use.
+    private int size;
+
+    // Min-heap of slots ordered by count, and the position of each slot in the heap.
+    private int[] heap;
+    private int[] heapPositions;
+
+    // Open addressing table of slot + 1 for each value, 0 marks an empty entry. The length is a power of two at least
+    // twice the number of slots.
+    private int[] table;
+
+    // The total number of occurrences added, used for the guaranteed error bound.
+    private long total;
+
+    /**
+     *
+     * @param capacity - The maximum number of values to count at once, the memory budget of the counter.
+     */
+    public SpaceSavingCounter(int capacity){
+
+        if(capacity < 1){
+            throw new IllegalArgumentException("Space-Saving capacity must be at least 1: " + capacity);
+        }
+        this.capacity = capacity;
+
+        // Start small and grow up to the capacity so short intervals don't pay for the whole budget.
+        int initial = Math.min(capacity, 64);
+        this.keys = new String[initial];
+        this.hashes = new int[initial];
+        this.counts = new long[initial];
+        this.errors = new long[initial];
+        this.heap = new int[initial];
+        this.heapPositions = new int[initial];
+        this.table = new int[Integer.highestOneBit(initial * 2 - 1) * 2];
+    }
+
+    @Override
+    public void add(String key, int occurrences) {
+        add(key, occurrences, 0);
+    }
+
+    /**
+     * add adds a number of occurrences of the given value, along with the error already carried by that number.
+     * @param key - The value that occurred.
+     * @param occurrences - The number of times it occurred.
+     * @param error - The amount the occurrences may overestimate the true number by.
+     */
+    void add(String key, long occurrences, long error){
+
+        total += occurrences;
+        int hash = key.hashCode();
+        int index = find(key, hash);
+
+        int slot;
+        if(table[index] != 0){
+            // The value is already counted.
+            slot = table[index] - 1;
+        }else if(size < capacity){
+            // There is a free counter for the value.
+            if(size == keys.length){
+                grow();
+                index = find(key, hash);
+            }
+            slot = size++;
+            keys[slot] = key;
+            hashes[slot] = hash;
+            counts[slot] = 0;
+            errors[slot] = 0;
+            heap[slot] = slot;
+            heapPositions[slot] = slot;
+            table[index] = slot + 1;
+            siftUp(slot);
+        }else{
+            // Evict the value with the lowest count and hand its counter to the new value.
+            slot = heap[0];
+            remove(slot);
+            keys[slot] = key;
+            hashes[slot] = hash;
+            errors[slot] = counts[slot];
+            table[find(key, hash)] = slot + 1;
+        }
+
+        counts[slot] += occurrences;
+        errors[slot] += error;
+        siftDown(heapPositions[slot]);
+    }
+
+    @Override
+    public void merge(OccurrenceCounter other) {
+
+        if(!(other instanceof SpaceSavingCounter)){
+            for(int id = 0; id < other.size(); id++){
+                if(other.count(id) > 0){
+                    add(other.key(id), other.count(id), other.error(id));
+                }
+            }
+            return;
+        }
+        SpaceSavingCounter partial = (SpaceSavingCounter) other;
+
+        // A value missing from a full counter may have occurred up to that counter's lowest count times, so it is
+        // counted as having occurred that many times, with the same error, to keep every count an overestimate.
+        long missingHere = size == capacity ? counts[heap[0]] : 0;
+        long missingThere = partial.size == partial.capacity ? partial.counts[partial.heap[0]] : 0;
+
+        // Combine the values of both counters.
+        int combined = 0;
+        String[] mergedKeys = new String[size + partial.size];
+        long[] mergedCounts = new long[size + partial.size];
+        long[] mergedErrors = new long[size + partial.size];
+        for(int slot = 0; slot < size; slot++){
+            int otherSlot = partial.table[partial.find(keys[slot], hashes[slot])] - 1;
+            mergedKeys[combined] = keys[slot];
+            mergedCounts[combined] = counts[slot] + (otherSlot >= 0 ? partial.counts[otherSlot] : missingThere);
+            mergedErrors[combined] = errors[slot] + (otherSlot >= 0 ? partial.errors[otherSlot] : missingThere);
+            combined++;
+        }
+        for(int slot = 0; slot < partial.size; slot++){
+            if(table[find(partial.keys[slot], partial.hashes[slot])] == 0){
+                mergedKeys[combined] = partial.keys[slot];
+                mergedCounts[combined] = partial.counts[slot] + missingHere;
+                mergedErrors[combined] = partial.errors[slot] + missingHere;
+                combined++;
+            }
+        }
+
+        // Keep the values with the highest counts, up to the capacity.
+        Integer[] order = new Integer[combined];
+        for(int i = 0; i < combined; i++){
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(mergedCounts[b], mergedCounts[a]));
+
+        long mergedTotal = total + partial.total;
+        size = 0;
+        Arrays.fill(table, 0);
+        for(int i = 0; i < Math.min(combined, capacity); i++){
+            add(mergedKeys[order[i]], mergedCounts[order[i]], mergedErrors[order[i]]);
+        }
+        total = mergedTotal;
+    }
+
+    /**
+     * clear removes every value, leaving the counter as if nothing had been added.
+     */
+    void clear(){
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+        total = 0;
+        Arrays.fill(table, 0);
+    }
+
+    /**
+     * find returns the table index holding the given value, or the empty index it would be inserted at.
+     * @param key - The value to find.
+     * @param hash - The hash code of the value.
+     * @return the table index.
+     */
+    private int find(String key, int hash){
+
+        int mask = table.length - 1;
+        int index = mix(hash) & mask;
+        while(table[index] != 0){
+            int slot = table[index] - 1;
+            if(hashes[slot] == hash && keys[slot].equals(key)){
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * remove removes a slot from the table, shifting back any entries after it so lookups don't stop early.
+     * @param slot - The slot to remove.
+     */
+    private void remove(int slot){
+
+        int mask = table.length - 1;
+        int hole = find(keys[slot], hashes[slot]);
+        int index = hole;
+        while(true){
+            index = (index + 1) & mask;
+            if(table[index] == 0){
+                break;
+            }
+            // An entry can fill the hole if its home index isn't cyclically between the hole and itself.
+            int home = mix(hashes[table[index] - 1]) & mask;
+            boolean between = hole <= index ? (home > hole && home <= index) : (home > hole || home <= index);
+            if(!between){
+                table[hole] = table[index];
+                hole = index;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    /**
+     * grow doubles the slot arrays, up to the capacity, and rebuilds the table.
+     */
+    private void grow(){
+
+        int length = Math.min(capacity, keys.length * 2);
+        keys = Arrays.copyOf(keys, length);
+        hashes = Arrays.copyOf(hashes, length);
+        counts = Arrays.copyOf(counts, length);
+        errors = Arrays.copyOf(errors, length);
+        heap = Arrays.copyOf(heap, length);
+        heapPositions = Arrays.copyOf(heapPositions, length);
+
+        table = new int[Integer.highestOneBit(length * 2 - 1) * 2];
+        int mask = table.length - 1;
+        for(int slot = 0; slot < size; slot++){
+            int index = mix(hashes[slot]) & mask;
+            while(table[index] != 0){
+                index = (index + 1) & mask;
+            }
+            table[index] = slot + 1;
+        }
+    }
+
+    /**
+     * siftUp moves the slot at the given heap position up until its parent has a lower or equal count.
+     * @param position - The heap position of the slot.
+     */
+    private void siftUp(int position){
+
+        int slot = heap[position];
+        while(position > 0){
+            int parent = (position - 1) >>> 1;
+            if(counts[heap[parent]] <= counts[slot]){
+                break;
+            }
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(slot, position);
+    }
+
+    /**
+     * siftDown moves the slot at the given heap position down until its children have higher or equal counts.
+     * @param position - The heap position of the slot.
+     */
+    private void siftDown(int position){
+
+        int slot = heap[position];
+        while(true){
+            int child = position * 2 + 1;
+            if(child >= size){
+                break;
+            }
+            if(child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]){
+                child++;
+            }
+            if(counts[slot] <= counts[heap[child]]){
+                break;
+            }
+            place(heap[child], position);
+            position = child;
+        }
+        place(slot, position);
+    }
+
+    /**
+     * place puts a slot at a heap position and records the position.
+     * @param slot - The slot.
+     * @param position - The heap position.
+     */
+    private void place(int slot, int position){
+        heap[position] = slot;
+        heapPositions[slot] = position;
+    }
+
+    /**
+     * mix spreads the bits of a hash code so that values with similar hash codes don't cluster in the table.
+     * @param hash - The hash code.
+     * @return the mixed hash.
+     */
+    private static int mix(int hash){
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String key(int id) {
+        return keys[id];
+    }
+
+    @Override
+    public long count(int id) {
+        return counts[id];
+    }
+
+    @Override
+    public long error(int id) {
+        return errors[id];
+    }
+
+    @Override
+    public boolean isApproximate() {
+        return true;
+    }
+
+    /**
+     * errorBound returns the most any count can overestimate its value by, the total occurrences divided by the
+     * capacity. Any value that occurred more often than this is guaranteed to be counted.
+     * @return the guaranteed error bound.
+     */
+    @Override
+    public long errorBound(){
+        return total / capacity;
+    }
+}
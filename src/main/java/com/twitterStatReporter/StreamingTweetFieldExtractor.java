@@ -0,0 +1,493 @@
+package com.twitterStatReporter;
+
+/**
+ * StreamingTweetFieldExtractor walks the raw json of a tweet once, from start to end, and only pulls out the fields
+ * the reports need: lang, retweet_count, the id of the user, the hashtag text, expanded url and user mention screen
+ * names in the entities section, and the media types in the extended_entities section. Every other value is skipped
+ * over without being parsed, no tree is built and no numbers are boxed. Strings are only created for the values that
+ * are kept, and only need to be copied through a buffer when they contain escape sequences.
+ */
+public class StreamingTweetFieldExtractor implements TweetFieldExtractor {
+
+    // Which of the entities arrays is being read, used to know which field of the array objects to keep.
+    private static final int HASHTAGS = 0;
+    private static final int URLS = 1;
+    private static final int USER_MENTIONS = 2;
+
+    // The raw json currently being walked.
+    private String json;
+
+    // The position of the next character to read.
+    private int pos;
+
+    // The start and end of the last key that was read.
+    private int keyStart;
+    private int keyEnd;
+
+    // Buffer reused to unescape strings that contain escape sequences.
+    private final StringBuilder unescapeBuffer = new StringBuilder(64);
+
+    // The fields being filled in.
+    private TweetFields fields;
+
+    @Override
+    public void extract(String rawJSON, TweetFields fields) {
+
+        fields.reset();
+        this.json = rawJSON;
+        this.pos = 0;
+        this.fields = fields;
+
+        try{
+            boolean sawEntities = false;
+
+            expect('{');
+            if(!endOfObject()){
+                do{
+                    readKey();
+                    if(keyIs("lang")){
+                        fields.language = readStringOrNull();
+                    }else if(keyIs("retweet_count")){
+                        fields.retweetCount = readInt();
+                    }else if(keyIs("user")){
+                        readUser();
+                    }else if(keyIs("entities")){
+                        readEntities();
+                        sawEntities = true;
+                    }else if(keyIs("extended_entities")){
+                        readExtendedEntities();
+                    }else{
+                        skipValue();
+                    }
+                }while(nextMember('}'));
+            }
+
+            if(!sawEntities){
+                throw new IllegalArgumentException("Tweet does not contain an entities section");
+            }
+        }finally {
+            // Don't hold on to the tweet once it has been processed.
+            this.json = null;
+            this.fields = null;
+        }
+    }
+
+    /**
+     * readUser reads the user object and pulls out the id of the user.
+     */
+    private void readUser(){
+
+        if(skipNull()){
+            return;
+        }
+        expect('{');
+        if(endOfObject()){
+            return;
+        }
+        do{
+            readKey();
+            if(keyIs("id")){
+                fields.userId = skipNull() ? -1 : readLong();
+            }else{
+                skipValue();
+            }
+        }while(nextMember('}'));
+    }
+
+    /**
+     * readEntities reads the entities object and pulls out the hashtags, urls and user mentions arrays.
+     */
+    private void readEntities(){
+
+        if(skipNull()){
+            return;
+        }
+        expect('{');
+        if(endOfObject()){
+            return;
+        }
+        do{
+            readKey();
+            if(keyIs("hashtags")){
+                readEntityArray(HASHTAGS, "text");
+            }else if(keyIs("urls")){
+                readEntityArray(URLS, "expanded_url");
+            }else if(keyIs("user_mentions")){
+                readEntityArray(USER_MENTIONS, "screen_name");
+            }else{
+                skipValue();
+            }
+        }while(nextMember('}'));
+    }
+
+    /**
+     * readEntityArray reads an array of entity objects and keeps the given field of each object.
+     * @param kind - Which entity array is being read, HASHTAGS, URLS or USER_MENTIONS.
+     * @param field - The name of the field to keep from each object.
+     */
+    private void readEntityArray(int kind, String field){
+
+        if(skipNull()){
+            return;
+        }
+        expect('[');
+        if(endOfArray()){
+            return;
+        }
+        do{
+            expect('{');
+            if(endOfObject()){
+                continue;
+            }
+            do{
+                readKey();
+                if(keyIs(field)){
+                    String value = readStringOrNull();
+                    if(value != null){
+                        if(kind == HASHTAGS){
+                            fields.addHashtag(value);
+                        }else if(kind == URLS){
+                            fields.addUrl(value);
+                        }else{
+                            fields.addUserMention(value);
+                        }
+                    }
+                }else{
+                    skipValue();
+                }
+            }while(nextMember('}'));
+        }while(nextMember(']'));
+    }
+
+    /**
+     * readExtendedEntities reads the extended_entities object and checks if one of its media objects is a photo.
+     */
+    private void readExtendedEntities(){
+
+        if(skipNull()){
+            return;
+        }
+        expect('{');
+        if(endOfObject()){
+            return;
+        }
+        do{
+            readKey();
+            if(keyIs("media") && !skipNull()){
+                expect('[');
+                if(endOfArray()){
+                    continue;
+                }
+                do{
+                    expect('{');
+                    if(endOfObject()){
+                        continue;
+                    }
+                    do{
+                        readKey();
+                        if(keyIs("type") && peek() == '"'){
+                            // Compare the media type in place rather than creating a string for it.
+                            int start = pos + 1;
+                            skipString();
+                            if(pos - start - 1 == 5 && json.startsWith("photo", start)){
+                                fields.hasPhoto = true;
+                            }
+                        }else{
+                            skipValue();
+                        }
+                    }while(nextMember('}'));
+                }while(nextMember(']'));
+            }else{
+                skipValue();
+            }
+        }while(nextMember('}'));
+    }
+
+    /**
+     * readKey reads an object key and the colon that follows it, the key is left in keyStart and keyEnd.
+     */
+    private void readKey(){
+
+        skipWhitespace();
+        if(peek() != '"'){
+            throw unexpected();
+        }
+        keyStart = pos + 1;
+        skipString();
+        keyEnd = pos - 1;
+        expect(':');
+    }
+
+    /**
+     * keyIs checks if the last key read matches the given name without creating a string for the key.
+     * @param name - The key name to compare against.
+     * @return true if the last key read is the given name.
+     */
+    private boolean keyIs(String name){
+        return keyEnd - keyStart == name.length() && json.startsWith(name, keyStart);
+    }
+
+    /**
+     * readStringOrNull reads a string value, or a null value.
+     * @return the string, or null if the value was null.
+     */
+    private String readStringOrNull(){
+
+        if(skipNull()){
+            return null;
+        }
+        if(peek() != '"'){
+            throw unexpected();
+        }
+
+        int start = ++pos;
+        while(true){
+            char c = charAt(pos);
+            if(c == '"'){
+                return json.substring(start, pos++);
+            }
+            if(c == '\\'){
+                // Only strings with escape sequences need to be copied through the buffer.
+                unescapeBuffer.setLength(0);
+                unescapeBuffer.append(json, start, pos);
+                return readEscapedString();
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * readEscapedString finishes reading a string that contains escape sequences into the unescape buffer.
+     * @return the unescaped string.
+     */
+    private String readEscapedString(){
+
+        while(true){
+            char c = charAt(pos++);
+            if(c == '"'){
+                return unescapeBuffer.toString();
+            }
+            if(c != '\\'){
+                unescapeBuffer.append(c);
+                continue;
+            }
+            char escaped = charAt(pos++);
+            switch (escaped){
+                case 'b': unescapeBuffer.append('\b'); break;
+                case 'f': unescapeBuffer.append('\f'); break;
+                case 'n': unescapeBuffer.append('\n'); break;
+                case 'r': unescapeBuffer.append('\r'); break;
+                case 't': unescapeBuffer.append('\t'); break;
+                case 'u':
+                    int codeUnit = 0;
+                    for(int i = 0; i < 4; i++){
+                        int digit = Character.digit(charAt(pos++), 16);
+                        if(digit < 0){
+                            throw unexpected();
+                        }
+                        codeUnit = (codeUnit << 4) | digit;
+                    }
+                    unescapeBuffer.append((char) codeUnit);
+                    break;
+                default: unescapeBuffer.append(escaped);
+            }
+        }
+    }
+
+    /**
+     * readInt reads an integer value, a null value is read as 0.
+     * @return the integer.
+     */
+    private int readInt(){
+
+        if(skipNull()){
+            return 0;
+        }
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(readLong(), Integer.MAX_VALUE));
+    }
+
+    /**
+     * readLong reads a long value, values too large for a long are capped.
+     * @return the long.
+     */
+    private long readLong(){
+
+        skipWhitespace();
+        boolean negative = false;
+        if(peek() == '-'){
+            negative = true;
+            pos++;
+        }
+        long value = 0;
+        int start = pos;
+        char c;
+        while(pos < json.length() && (c = json.charAt(pos)) >= '0' && c <= '9'){
+            value = value > (Long.MAX_VALUE - 9) / 10 ? Long.MAX_VALUE : value * 10 + (c - '0');
+            pos++;
+        }
+        if(pos == start){
+            throw unexpected();
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * skipValue skips over the next value, whatever its type. Objects and arrays are skipped by tracking their depth
+     * without looking at their contents beyond the strings they hold.
+     */
+    private void skipValue(){
+
+        skipWhitespace();
+        char c = charAt(pos);
+        if(c == '"'){
+            skipString();
+        }else if(c == '{' || c == '['){
+            int depth = 0;
+            do{
+                c = charAt(pos);
+                if(c == '"'){
+                    skipString();
+                    continue;
+                }
+                if(c == '{' || c == '['){
+                    depth++;
+                }else if(c == '}' || c == ']'){
+                    depth--;
+                }
+                pos++;
+            }while(depth > 0);
+        }else{
+            // Numbers, true, false and null run until the next separator.
+            while(pos < json.length() && (c = json.charAt(pos)) != ',' && c != '}' && c != ']'
+                    && c > ' '){
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * skipString skips over a string value, the position is left just after the closing quote.
+     */
+    private void skipString(){
+
+        pos++;
+        while(true){
+            char c = charAt(pos++);
+            if(c == '"'){
+                return;
+            }
+            if(c == '\\'){
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * skipNull skips a null value if one is next.
+     * @return true if a null value was skipped.
+     */
+    private boolean skipNull(){
+
+        skipWhitespace();
+        if(json.startsWith("null", pos)){
+            pos += 4;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * nextMember reads the separator after an object member or array element.
+     * @param close - The closing character of the object or array being read.
+     * @return true if there is another member, false if the object or array has been closed.
+     */
+    private boolean nextMember(char close){
+
+        skipWhitespace();
+        char c = charAt(pos++);
+        if(c == ','){
+            return true;
+        }
+        if(c == close){
+            return false;
+        }
+        pos--;
+        throw unexpected();
+    }
+
+    /**
+     * endOfObject checks for, and consumes, the closing brace of an empty object.
+     * @return true if the object was empty.
+     */
+    private boolean endOfObject(){
+        skipWhitespace();
+        if(peek() == '}'){
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * endOfArray checks for, and consumes, the closing bracket of an empty array.
+     * @return true if the array was empty.
+     */
+    private boolean endOfArray(){
+        skipWhitespace();
+        if(peek() == ']'){
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * expect skips whitespace and consumes the expected character.
+     * @param expected - The character that should be next.
+     */
+    private void expect(char expected){
+        skipWhitespace();
+        if(charAt(pos) != expected){
+            throw unexpected();
+        }
+        pos++;
+    }
+
+    /**
+     * skipWhitespace moves the position past any whitespace.
+     */
+    private void skipWhitespace(){
+        while(pos < json.length() && json.charAt(pos) <= ' '){
+            pos++;
+        }
+    }
+
+    /**
+     * peek returns the next character without consuming it.
+     * @return the next character.
+     */
+    private char peek(){
+        return charAt(pos);
+    }
+
+    /**
+     * charAt returns the character at the given index, failing if the json ends early.
+     * @param index - The index of the character.
+     * @return the character at the index.
+     */
+    private char charAt(int index){
+        if(index >= json.length()){
+            throw new IllegalArgumentException("Unexpected end of tweet json at position " + index);
+        }
+        return json.charAt(index);
+    }
+
+    /**
+     * unexpected builds the exception thrown when the json doesn't have the expected structure.
+     * @return the exception to throw.
+     */
+    private IllegalArgumentException unexpected(){
+        return new IllegalArgumentException("Unexpected character '" + json.charAt(Math.min(pos, json.length() - 1))
+                + "' in tweet json at position " + pos);
+    }
+}
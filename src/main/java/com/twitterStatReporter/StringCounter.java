@@ -0,0 +1,179 @@
+package com.twitterStatReporter;
+
+import java.util.Arrays;
+
+/**
+ * StringCounter is a dictionary encoded OccurrenceCounter. Each distinct string is interned to a dense int id the
+ * first time it is counted, the strings, their hashes and their counts are held in growable arrays indexed by the id,
+ * and an open addressing table of ids is used to find the id of a string. Counting a string that has been seen before
+ * takes a single hash probe and does not allocate, and each distinct string costs a few ints of memory on top of the
+ * string itself rather than a map entry and a boxed Integer.
+ */
+public final class StringCounter implements OccurrenceCounter {
+
+    // The strings, their hash codes and their counts, indexed by id.
+    private String[] keys;
+    private int[] hashes;
+    private int[] counts;
+
+    // The number of ids that have been handed out.
+    private int size;
+
+    // Open addressing table of id + 1 for each string, 0 marks an empty slot. The length is a power of two.
+    private int[] table;
+
+    // The number of ids the table can hold before it is grown, kept at half the table length.
+    private int threshold;
+
+    public StringCounter(){
+        this(16);
+    }
+
+    /**
+     *
+     * @param expectedKeys - The number of distinct strings expected, used to size the arrays.
+     */
+    public StringCounter(int expectedKeys){
+        int capacity = Math.max(4, expectedKeys);
+        this.keys = new String[capacity];
+        this.hashes = new int[capacity];
+        this.counts = new int[capacity];
+        this.table = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+        this.threshold = table.length / 2;
+    }
+
+    @Override
+    public void add(String key, int occurrences) {
+        // Find the id first, finding it can grow the counts array.
+        int id = idOf(key);
+        counts[id] += occurrences;
+    }
+
+    /**
+     * idOf returns the id of the given string, giving it the next id if it hasn't been seen before.
+     * @param key - The string to find.
+     * @return the id of the string.
+     */
+    int idOf(String key){
+
+        int hash = key.hashCode();
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+
+        while(true){
+            int entry = table[slot];
+            if(entry == 0){
+                break;
+            }
+            int id = entry - 1;
+            if(hashes[id] == hash && keys[id].equals(key)){
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // The string hasn't been seen before, give it the next id.
+        if(size == keys.length){
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        int id = size++;
+        keys[id] = key;
+        hashes[id] = hash;
+        table[slot] = id + 1;
+
+        if(size > threshold){
+            rehash();
+        }
+        return id;
+    }
+
+    @Override
+    public void subtract(OccurrenceCounter other) {
+        OccurrenceCounter.super.subtract(other);
+
+        // Strings whose count dropped to 0 keep their id, drop them once they are most of the ids so a counter that
+        // is subtracted from for a long time doesn't keep every string it has ever seen.
+        int zeros = 0;
+        for(int id = 0; id < size; id++){
+            if(counts[id] == 0){
+                zeros++;
+            }
+        }
+        if(zeros > size / 2){
+            removeZeroCounts();
+        }
+    }
+
+    /**
+     * removeZeroCounts drops the strings with a count of 0 and gives the rest new dense ids.
+     */
+    private void removeZeroCounts(){
+
+        int kept = 0;
+        for(int id = 0; id < size; id++){
+            if(counts[id] != 0){
+                keys[kept] = keys[id];
+                hashes[kept] = hashes[id];
+                counts[kept] = counts[id];
+                kept++;
+            }
+        }
+        Arrays.fill(keys, kept, size, null);
+        Arrays.fill(counts, kept, size, 0);
+        size = kept;
+        rebuildTable(table.length);
+    }
+
+    /**
+     * rehash doubles the size of the id table and reinserts every id.
+     */
+    private void rehash(){
+        rebuildTable(table.length * 2);
+    }
+
+    /**
+     * rebuildTable creates an id table of the given length and inserts every id.
+     * @param length - The length of the table, a power of two.
+     */
+    private void rebuildTable(int length){
+
+        table = new int[length];
+        threshold = table.length / 2;
+        int mask = table.length - 1;
+        for(int id = 0; id < size; id++){
+            int slot = mix(hashes[id]) & mask;
+            while(table[slot] != 0){
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    /**
+     * mix spreads the bits of a hash code so that strings with similar hash codes don't cluster in the table.
+     * @param hash - The hash code.
+     * @return the mixed hash.
+     */
+    private static int mix(int hash){
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String key(int id) {
+        return keys[id];
+    }
+
+    @Override
+    public long count(int id) {
+        return counts[id];
+    }
+}
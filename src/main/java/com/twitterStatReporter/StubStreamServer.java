@@ -0,0 +1,374 @@
+package com.twitterStatReporter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * StubStreamServer serves a sample stream on the local machine, so the whole program, from twitter4j reading the
+ * chunked http stream to the reports, can be load and soak tested without twitter. Point the program at it with
+ * StreamBaseURL = http://localhost:port/1.1/ in the config file, the credentials can be any values.
+ *
+ * The stream is either a recorded capture, looped, or synthetic statuses and deletes generated from a seed so every
+ * run serves the same messages. The timestamp_ms of each message is rewritten to the time it is sent so the intervals
+ * of the program follow the wall clock however often the messages are looped. The shape of the stream is set with
+ * key=value arguments:
+ *
+ * port - The port to listen on, 8089 by default.
+ * source - A capture to loop, gzip'd or not, or synthetic (default).
+ * rate - Messages sent a second, 1000 by default, 0 to send as fast as the connection takes them.
+ * burstEvery, burstSeconds, burstFactor - The last burstSeconds of every burstEvery seconds are sent at burstFactor
+ *                                         times the rate. No bursts by default.
+ * stallEvery, stallSeconds, keepAlive - Nothing but the keep alive newlines is sent for the last stallSeconds of every
+ *                                       stallEvery seconds, and not even those if keepAlive is false. No stalls by
+ *                                       default.
+ * disconnectEvery - Each connection is closed after this many seconds, the client has to reconnect. Never by default.
+ * seed - The seed of the synthetic messages, 1 by default.
+ *
+ * The bursts and stalls follow the time since the server started, so they don't move when the client reconnects. The
+ * number of messages sent, the rate and the connections are printed every 10 seconds.
+ */
+public final class StubStreamServer {
+
+    // The number of synthetic messages generated and looped.
+    private static final int SYNTHETIC_MESSAGES = 20000;
+
+    // The most messages sent before the connection is flushed when sending as fast as possible.
+    private static final int UNPACED_BATCH = 256;
+
+    // The field whose value is rewritten to the time the message is sent.
+    private static final String TIMESTAMP_FIELD = "\"timestamp_ms\":\"";
+
+    // The line ending of each message, and the keep alive sent on its own.
+    private static final byte[] NEWLINE = {'\r', '\n'};
+
+    // The settings of the stream.
+    private final int rate;
+    private final int burstEvery;
+    private final int burstSeconds;
+    private final double burstFactor;
+    private final int stallEvery;
+    private final int stallSeconds;
+    private final boolean keepAlive;
+    private final int disconnectEvery;
+
+    // The messages looped, each split around the value of its timestamp_ms. The part after it is null for messages
+    // without one.
+    private final byte[][] before;
+    private final byte[][] after;
+
+    // The time the server started, the stream's shape is measured from.
+    private final long started = System.nanoTime();
+
+    // The totals of the server.
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong open = new AtomicLong();
+
+    /**
+     *
+     * @param options - The key=value arguments.
+     * @param messages - The messages to loop.
+     */
+    private StubStreamServer(Map<String, String> options, List<String> messages){
+
+        this.rate = option(options, "rate", 1000);
+        this.burstEvery = option(options, "burstEvery", 0);
+        this.burstSeconds = option(options, "burstSeconds", 5);
+        this.burstFactor = Double.parseDouble(options.getOrDefault("burstFactor", "5"));
+        this.stallEvery = option(options, "stallEvery", 0);
+        this.stallSeconds = option(options, "stallSeconds", 10);
+        this.keepAlive = Boolean.parseBoolean(options.getOrDefault("keepAlive", "true"));
+        this.disconnectEvery = option(options, "disconnectEvery", 0);
+
+        this.before = new byte[messages.size()][];
+        this.after = new byte[messages.size()][];
+        for(int i = 0; i < messages.size(); i++){
+            String message = messages.get(i);
+            int field = message.lastIndexOf(TIMESTAMP_FIELD);
+            int end = field < 0 ? -1 : message.indexOf('"', field + TIMESTAMP_FIELD.length());
+            if(end < 0){
+                before[i] = message.getBytes(StandardCharsets.UTF_8);
+            }else{
+                before[i] = message.substring(0, field + TIMESTAMP_FIELD.length()).getBytes(StandardCharsets.UTF_8);
+                after[i] = message.substring(end).getBytes(StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    /**
+     * main loads or generates the messages and serves them until the process is stopped.
+     * @param args - The key=value arguments.
+     * @throws IOException - thrown if the capture cannot be read or the port cannot be listened on.
+     */
+    public static void main(String[] args) throws IOException {
+
+        Map<String, String> options = new HashMap<>();
+        for(String arg : args){
+            int equals = arg.indexOf('=');
+            if(equals < 1){
+                System.out.println("Usage: StubStreamServer [key=value]..., see the README for the keys");
+                return;
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+
+        String source = options.getOrDefault("source", "synthetic");
+        List<String> messages = source.equals("synthetic")
+                ? synthetic(option(options, "seed", 1), SYNTHETIC_MESSAGES)
+                : load(source);
+        if(messages.isEmpty()){
+            System.out.println("No messages to serve in " + source);
+            return;
+        }
+        StubStreamServer stub = new StubStreamServer(options, messages);
+
+        int port = option(options, "port", 8089);
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", stub::serve);
+        server.setExecutor(Executors.newCachedThreadPool(WorkerThreads.namedThreads("stub-stream")));
+        server.start();
+        System.out.println("Serving " + messages.size() + " " + source + " messages on http://localhost:" + port
+                + "/1.1/statuses/sample.json");
+
+        Executors.newSingleThreadScheduledExecutor(WorkerThreads.namedThreads("stub-stats"))
+                .scheduleAtFixedRate(stub::printStats, 10, 10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * serve streams the messages to a client of the sample endpoint until the client disconnects or the connection
+     * is closed by disconnectEvery.
+     * @param exchange - The request.
+     * @throws IOException - thrown if the response cannot be written.
+     */
+    private void serve(HttpExchange exchange) throws IOException {
+
+        if(!exchange.getRequestURI().getPath().endsWith("/statuses/sample.json")){
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        connections.incrementAndGet();
+        open.incrementAndGet();
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        long connected = System.nanoTime();
+        try(OutputStream out = new BufferedOutputStream(exchange.getResponseBody(), 1 << 16)){
+
+            // Messages are sent as the credit built up at the current rate allows.
+            int next = (int) (connections.get() * 7919 % before.length);
+            double credit = 0;
+            long last = System.nanoTime();
+            long lastKeepAlive = last;
+            while(true){
+                long now = System.nanoTime();
+                if(disconnectEvery > 0 && now - connected >= TimeUnit.SECONDS.toNanos(disconnectEvery)){
+                    return;
+                }
+                long second = TimeUnit.NANOSECONDS.toSeconds(now - started);
+                if(inLastSeconds(second, stallEvery, stallSeconds)){
+                    if(keepAlive && now - lastKeepAlive >= TimeUnit.SECONDS.toNanos(1)){
+                        out.write(NEWLINE);
+                        out.flush();
+                        lastKeepAlive = now;
+                    }
+                    last = now;
+                    credit = 0;
+                    TimeUnit.MILLISECONDS.sleep(10);
+                    continue;
+                }
+
+                int count;
+                if(rate <= 0){
+                    count = UNPACED_BATCH;
+                }else{
+                    double current = inLastSeconds(second, burstEvery, burstSeconds) ? rate * burstFactor : rate;
+                    credit = Math.min(credit + (now - last) * current / 1_000_000_000.0, current);
+                    count = (int) credit;
+                    credit -= count;
+                }
+                last = now;
+                if(count == 0){
+                    TimeUnit.MILLISECONDS.sleep(1);
+                    continue;
+                }
+
+                byte[] timestamp = Long.toString(System.currentTimeMillis()).getBytes(StandardCharsets.US_ASCII);
+                for(int i = 0; i < count; i++){
+                    out.write(before[next]);
+                    if(after[next] != null){
+                        out.write(timestamp);
+                        out.write(after[next]);
+                    }
+                    out.write(NEWLINE);
+                    next = next + 1 == before.length ? 0 : next + 1;
+                }
+                out.flush();
+                sent.addAndGet(count);
+            }
+        }catch (IOException e){
+            // The client disconnected.
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }finally {
+            open.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    /**
+     * inLastSeconds checks if a time falls in the last seconds of a repeating period.
+     * @param second - The time, in seconds since the server started.
+     * @param period - The length of the period in seconds, 0 for no period.
+     * @param seconds - The number of seconds at the end of each period.
+     * @return true if the time is in the last seconds of its period.
+     */
+    private static boolean inLastSeconds(long second, int period, int seconds){
+        return period > 0 && second % period >= period - seconds;
+    }
+
+    /**
+     * printStats prints the number of messages sent and the connections.
+     */
+    private void printStats(){
+
+        long total = sent.get();
+        double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+        System.out.println("Sent " + total + " messages (" + String.format("%.0f", total / seconds)
+                + " messages/sec) over " + connections.get() + " connections, " + open.get() + " open");
+    }
+
+    /**
+     * load reads the messages of a capture, skipping the keep alive blank lines.
+     * @param capture - The path of the capture, gzip'd or not.
+     * @return the messages.
+     * @throws IOException - thrown if the capture cannot be read.
+     */
+    private static List<String> load(String capture) throws IOException {
+
+        InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(capture)), 1 << 16);
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        if(first == 0x1f && second == 0x8b){
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+
+        List<String> messages = new ArrayList<>();
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))){
+            String line;
+            while((line = reader.readLine()) != null){
+                if(!line.isBlank()){
+                    messages.add(line);
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * synthetic generates statuses and deletes shaped like those of the sample stream. Hashtags, domains, languages
+     * and user mentions are picked with a skew so a few values are much more common than the rest, as in the real
+     * stream.
+     * @param seed - The seed of the random numbers.
+     * @param count - The number of messages.
+     * @return the messages.
+     */
+    static List<String> synthetic(long seed, int count){
+
+        String[] languages = {"en", "ja", "es", "und", "pt", "ar", "th", "ko", "tr", "fr", "in", "ru", "de", "it"};
+        String[] domains = {"twitter.com", "youtube.com", "bit.ly", "instagram.com", "t.co", "spotify.com",
+                "nytimes.com", "twitch.tv", "github.com", "reddit.com"};
+        SplittableRandom random = new SplittableRandom(seed);
+        List<String> messages = new ArrayList<>(count);
+        StringBuilder json = new StringBuilder(1024);
+
+        for(int i = 0; i < count; i++){
+            json.setLength(0);
+            long id = 1_400_000_000_000_000_000L + i;
+            if(random.nextInt(100) < 20){
+                json.append("{\"delete\":{\"status\":{\"id\":").append(id).append(",\"id_str\":\"").append(id)
+                        .append("\",\"user_id\":").append(random.nextInt(100_000)).append("},\"timestamp_ms\":\"0\"}}");
+                messages.add(json.toString());
+                continue;
+            }
+
+            json.append("{\"created_at\":\"Mon Jan 01 00:00:00 +0000 2024\",\"id\":").append(id)
+                    .append(",\"id_str\":\"").append(id).append("\",\"text\":\"synthetic status ").append(i)
+                    .append("\",\"user\":{\"id\":").append(skewed(random, 100_000)).append(",\"screen_name\":\"user")
+                    .append(skewed(random, 100_000)).append("\"},\"retweet_count\":").append(random.nextInt(4) == 0
+                            ? random.nextInt(1000) : 0)
+                    .append(",\"entities\":{\"hashtags\":[");
+            int hashtags = random.nextInt(4) == 0 ? 1 + random.nextInt(3) : 0;
+            for(int h = 0; h < hashtags; h++){
+                json.append(h > 0 ? "," : "").append("{\"text\":\"tag").append(skewed(random, 5000))
+                        .append("\",\"indices\":[0,1]}");
+            }
+            json.append("],\"urls\":[");
+            if(random.nextInt(3) == 0){
+                json.append("{\"url\":\"https://t.co/x\",\"expanded_url\":\"https://")
+                        .append(domains[skewed(random, domains.length)]).append("/item/").append(i)
+                        .append("\",\"indices\":[0,1]}");
+            }
+            json.append("],\"user_mentions\":[");
+            int mentions = random.nextInt(3) == 0 ? 1 + random.nextInt(2) : 0;
+            for(int m = 0; m < mentions; m++){
+                json.append(m > 0 ? "," : "").append("{\"screen_name\":\"user").append(skewed(random, 100_000))
+                        .append("\",\"id\":1,\"indices\":[0,1]}");
+            }
+            json.append("]},\"lang\":\"").append(languages[skewed(random, languages.length)]).append('"');
+            if(random.nextInt(10) == 0){
+                json.append(",\"extended_entities\":{\"media\":[{\"id\":1,\"type\":\"photo\",\"media_url\":\"x\"}]}");
+            }
+            json.append(",\"timestamp_ms\":\"0\"}");
+            messages.add(json.toString());
+        }
+        return messages;
+    }
+
+    /**
+     * skewed picks a number below a bound, small numbers being far more likely than large ones.
+     * @param random - The random numbers.
+     * @param bound - The bound.
+     * @return the number.
+     */
+    private static int skewed(SplittableRandom random, int bound){
+        double r = random.nextDouble();
+        return (int) (bound * r * r * r);
+    }
+
+    /**
+     * option reads a whole number option.
+     * @param options - The key=value arguments.
+     * @param key - The key of the option.
+     * @param defaultValue - The value used when the option isn't given.
+     * @return the value.
+     */
+    private static int option(Map<String, String> options, String key, int defaultValue){
+        String value = options.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
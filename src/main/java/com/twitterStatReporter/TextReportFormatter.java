@@ -0,0 +1,163 @@
+package com.twitterStatReporter;
+
+/**
+ * TextReportFormatter renders a report as the human readable report the program has always written. Reports written
+ * to file get a banner and have their sections separated by blank lines, each report is written to its own
+ * "Report N.txt" file.
+ */
+final class TextReportFormatter implements ReportFormatter {
+
+    // Flag set when the reports are written to file, where they get a banner and blank lines between sections.
+    private final boolean toFile;
+
+    /**
+     *
+     * @param toFile - Flag set when the reports are written to file rather than to the terminal.
+     */
+    TextReportFormatter(boolean toFile){
+        this.toFile = toFile;
+    }
+
+    @Override
+    public String header() {
+        return "";
+    }
+
+    @Override
+    public String fileName(Report report) {
+        return "Report " + report.number + ".txt";
+    }
+
+    @Override
+    public void format(Report report, StringBuilder out) {
+
+        int number = report.number;
+        if(toFile){
+            out.append("=============== Report ").append(number).append(" ===============\n");
+        }
+        out.append("Total Tweets this interval count for report ").append(number).append(" = ")
+                .append(report.tweets).append('\n');
+        out.append("Number of actual tweets this interval for report ").append(number).append(" = ")
+                .append(report.actualTweets).append('\n');
+        out.append("Number of deleted tweets this interval for report ").append(number).append(" = ")
+                .append(report.deletedTweets).append('\n');
+        if(report.sampling != null){
+            out.append("Sampling rate in effect for report ").append(number).append(" = ")
+                    .append(String.format("%.1f", report.sampling.percent())).append("% (")
+                    .append(report.sampling.parsed).append(" of ").append(report.sampling.statuses)
+                    .append(" statuses parsed").append(report.estimated ? ", counts and percentages are estimates)"
+                            : ")").append('\n');
+        }
+
+        // The limit notices, the other stream control messages and the messages that were lost.
+        for(Report.Count count : report.messageCounts){
+            count(count, number, out);
+        }
+        if(report.dropped != null){
+            out.append("Number of messages dropped by the stream queue since the stream connected for report ")
+                    .append(number).append(" = ").append(report.dropped.messages).append(" (")
+                    .append(report.dropped.policy).append(", capacity ").append(report.dropped.capacity)
+                    .append(")\n");
+        }
+        out.append("Number of messages that arrived after their interval was reported for report ").append(number)
+                .append(" = ").append(report.lateMessages).append('\n');
+
+        section(out);
+        ranking(report, report.hashtags, out);
+        section(out);
+        ranking(report, report.languages, out);
+        section(out);
+        share(report, report.urls, out);
+        share(report, report.photos, out);
+        section(out);
+        ranking(report, report.domains, out);
+        section(out);
+        ranking(report, report.userMentions, out);
+        section(out);
+        share(report, report.retweets, out);
+
+        // The distinct counts and point queries estimated by the sketches.
+        if(report.sketches != null){
+            section(out);
+            String distinctError = String.format(" (+/- %.1f%%)", report.sketches.relativeError * 100);
+            for(Report.Count distinct : report.sketches.distinct){
+                out.append(distinct.label).append(' ').append(number).append(" = ").append(distinct.value)
+                        .append(distinctError).append('\n');
+            }
+            for(Report.PointQuery query : report.sketches.queries){
+                out.append("Estimated occurrences of ").append(query.kind).append(' ').append(query.symbol)
+                        .append(query.value).append(" during report ").append(number).append(" = ")
+                        .append(query.estimate).append(String.format(" (over by at most %d with %.0f%% confidence)",
+                                query.errorBound, query.confidence * 100)).append('\n');
+            }
+        }
+    }
+
+    /**
+     * section separates the sections of a report written to file with a blank line.
+     * @param out - The buffer the report is appended to.
+     */
+    private void section(StringBuilder out){
+        if(toFile){
+            out.append('\n');
+        }
+    }
+
+    /**
+     * count appends the line of a named count.
+     * @param count - The count.
+     * @param number - The number of the report.
+     * @param out - The buffer the report is appended to.
+     */
+    private static void count(Report.Count count, int number, StringBuilder out){
+        out.append(count.label).append(' ').append(number).append(" = ").append(count.value).append(count.unit)
+                .append('\n');
+    }
+
+    /**
+     * ranking appends the most common values of a field, with how far they may be over when only the heavy hitters
+     * were counted, and their confidence intervals when the report was sampled.
+     * @param report - The report.
+     * @param ranking - The most common values of the field.
+     * @param out - The buffer the report is appended to.
+     */
+    private static void ranking(Report report, Report.Ranking ranking, StringBuilder out){
+
+        out.append("Top ").append(ranking.k).append(" most common ").append(ranking.field)
+                .append(" occurrences - report ").append(report.number);
+        if(ranking.approximate){
+            out.append(" (approximate, counts are over by at most ").append(ranking.errorBound).append(')');
+        }
+        out.append('\n');
+
+        for(Report.Entry entry : ranking.entries){
+            out.append("Report: ").append(report.number).append(" - ").append(ranking.field).append(": ")
+                    .append(entry.value).append(", Occurrences: ").append(entry.count);
+            if(report.estimated){
+                out.append(" (estimated, 95% confidence interval ").append(entry.low).append(" to ")
+                        .append(entry.high).append(')');
+            }
+            if(ranking.approximate){
+                out.append(" (over by at most ").append(entry.error).append(')');
+            }
+            out.append('\n');
+        }
+    }
+
+    /**
+     * share appends the percentage of tweets with a property, with its confidence interval when the report was
+     * sampled.
+     * @param report - The report.
+     * @param share - The percentage.
+     * @param out - The buffer the report is appended to.
+     */
+    private static void share(Report report, Report.Share share, StringBuilder out){
+
+        out.append("Percentage of tweets that ").append(share.description).append(" during report ")
+                .append(report.number).append(" interval: ").append(share.percent).append('%');
+        if(report.estimated){
+            out.append(String.format(" (95%% confidence interval %.2f%% to %.2f%%)", share.low, share.high));
+        }
+        out.append('\n');
+    }
+}
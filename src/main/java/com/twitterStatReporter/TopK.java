@@ -0,0 +1,120 @@
+package com.twitterStatReporter;
+
+/**
+ * TopK finds the k most common values of an OccurrenceCounter. It walks the ids of the counter once, keeping the best
+ * k ids seen so far in a bounded min-heap whose root is the worst of them, so finding the top k of n values takes
+ * O(n log k) time and only k ints of memory, the counter itself is never copied or sorted. Values are ordered by their
+ * count, most common first, and values with the same count are ordered by the value itself so the result is the
+ * same every time.
+ */
+public final class TopK {
+
+    private TopK(){
+    }
+
+    /**
+     * select finds the ids of the k most common values of the counter. Values with a count of 0 are never selected.
+     * @param occurrences - The counter to search.
+     * @param k - The number of values to find.
+     * @return the ids of up to k values, most common first.
+     */
+    public static int[] select(OccurrenceCounter occurrences, int k){
+
+        if(k <= 0){
+            return new int[0];
+        }
+
+        // Min-heap of ids, the root is the worst of the best k ids seen so far. A counter holding fewer than k values
+        // only needs room for those.
+        int[] heap = new int[Math.min(k, occurrences.size())];
+        int heapSize = 0;
+
+        for(int id = 0; id < occurrences.size(); id++){
+            if(occurrences.count(id) == 0){
+                continue;
+            }
+            if(heapSize < heap.length){
+                heap[heapSize] = id;
+                siftUp(occurrences, heap, heapSize++);
+            }else if(isBetter(occurrences, id, heap[0])){
+                heap[0] = id;
+                siftDown(occurrences, heap, heapSize, 0);
+            }
+        }
+
+        // Repeatedly move the worst id to the end to order the ids from most to least common.
+        int[] top = new int[heapSize];
+        for(int i = heapSize - 1; i >= 0; i--){
+            top[i] = heap[0];
+            heap[0] = heap[i];
+            siftDown(occurrences, heap, i, 0);
+        }
+        return top;
+    }
+
+    /**
+     * isBetter checks if one value should rank above another, a higher count ranks higher and equal counts are ranked
+     * by the value.
+     * @param occurrences - The counter holding the values.
+     * @param id - The id of the value to check.
+     * @param otherId - The id of the value to compare against.
+     * @return true if the value ranks above the other value.
+     */
+    private static boolean isBetter(OccurrenceCounter occurrences, int id, int otherId){
+
+        long count = occurrences.count(id);
+        long otherCount = occurrences.count(otherId);
+        if(count != otherCount){
+            return count > otherCount;
+        }
+        return occurrences.key(id).compareTo(occurrences.key(otherId)) < 0;
+    }
+
+    /**
+     * siftUp moves the id at the given index up the heap until its parent ranks below it.
+     * @param occurrences - The counter holding the values.
+     * @param heap - The heap of ids.
+     * @param index - The index of the id to move.
+     */
+    private static void siftUp(OccurrenceCounter occurrences, int[] heap, int index){
+
+        int id = heap[index];
+        while(index > 0){
+            int parent = (index - 1) >>> 1;
+            if(!isBetter(occurrences, heap[parent], id)){
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = id;
+    }
+
+    /**
+     * siftDown moves the id at the given index down the heap until both its children rank above it.
+     * @param occurrences - The counter holding the values.
+     * @param heap - The heap of ids.
+     * @param heapSize - The number of ids in the heap.
+     * @param index - The index of the id to move.
+     */
+    private static void siftDown(OccurrenceCounter occurrences, int[] heap, int heapSize, int index){
+
+        int id = heap[index];
+        while(true){
+            int child = index * 2 + 1;
+            if(child >= heapSize){
+                break;
+            }
+            // Pick the worse of the two children.
+            if(child + 1 < heapSize && isBetter(occurrences, heap[child], heap[child + 1])){
+                child++;
+            }
+            if(!isBetter(occurrences, id, heap[child])){
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = id;
+    }
+}
@@ -0,0 +1,33 @@
+package com.twitterStatReporter;
+
+/**
+ * TweetFieldExtractor is used to pull the fields the reports need out of a raw status message. Implementations are
+ * not thread safe, each ReportGenerator creates its own extractor.
+ */
+public interface TweetFieldExtractor {
+
+    /**
+     * The available extractors, selected with the ParserMode field of the config file.
+     * STREAMING - Walks the raw json once and only pulls out the report fields (StreamingTweetFieldExtractor).
+     * DOM - Builds a full JSONObject for each tweet and reads the report fields from it (DomTweetFieldExtractor).
+     */
+    enum Parser {
+        STREAMING, DOM;
+
+        /**
+         * create builds a new extractor of this type.
+         * @return a new extractor.
+         */
+        TweetFieldExtractor create(){
+            return this == DOM ? new DomTweetFieldExtractor() : new StreamingTweetFieldExtractor();
+        }
+    }
+
+    /**
+     * extract resets the passed fields object and fills it in from the raw status message.
+     * @param rawJSON - The raw json of a status message.
+     * @param fields - The fields object to fill in.
+     * @throws IllegalArgumentException - thrown if the message is not valid json or is missing the entities section.
+     */
+    void extract(String rawJSON, TweetFields fields);
+}
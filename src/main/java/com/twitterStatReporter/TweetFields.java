@@ -0,0 +1,88 @@
+package com.twitterStatReporter;
+
+import java.util.Arrays;
+
+/**
+ * TweetFields holds the fields of a single tweet that the reports are built from. A TweetFieldExtractor fills in the
+ * fields from a raw tweet and the ReportGenerator counts them. The object is reset and reused for every tweet so that
+ * the hot path does not allocate a holder per tweet, the arrays only grow when a tweet has more entities than any
+ * previous tweet.
+ */
+public final class TweetFields {
+
+    // The lang field of the tweet, null if it was missing.
+    String language;
+
+    // The text of each hashtag in the entities section, minus the # symbol.
+    String[] hashtags = new String[8];
+
+    // The number of hashtags held in the hashtags array.
+    int hashtagCount;
+
+    // The expanded_url of each url in the entities section.
+    String[] expandedUrls = new String[4];
+
+    // The number of urls held in the expandedUrls array.
+    int urlCount;
+
+    // The screen_name of each user mention in the entities section.
+    String[] userMentions = new String[8];
+
+    // The number of user mentions held in the userMentions array.
+    int userMentionCount;
+
+    // True if one of the media objects in the extended_entities section is a photo.
+    boolean hasPhoto;
+
+    // The retweet_count of the tweet.
+    int retweetCount;
+
+    // The id of the user that posted the tweet, -1 if it was missing.
+    long userId = -1;
+
+    /**
+     * reset clears the fields so the object can be filled in with the next tweet.
+     */
+    void reset(){
+        language = null;
+        hashtagCount = 0;
+        urlCount = 0;
+        userMentionCount = 0;
+        hasPhoto = false;
+        retweetCount = 0;
+        userId = -1;
+    }
+
+    /**
+     * addHashtag adds a hashtag to the hashtags array, growing it if needed.
+     * @param hashtag - The hashtag text.
+     */
+    void addHashtag(String hashtag){
+        if(hashtagCount == hashtags.length){
+            hashtags = Arrays.copyOf(hashtags, hashtagCount * 2);
+        }
+        hashtags[hashtagCount++] = hashtag;
+    }
+
+    /**
+     * addUrl adds an expanded url to the expandedUrls array, growing it if needed.
+     * @param expandedUrl - The expanded url.
+     */
+    void addUrl(String expandedUrl){
+        if(urlCount == expandedUrls.length){
+            expandedUrls = Arrays.copyOf(expandedUrls, urlCount * 2);
+        }
+        expandedUrls[urlCount++] = expandedUrl;
+    }
+
+    /**
+     * addUserMention adds a user mention to the userMentions array, growing it if needed.
+     * @param screenName - The screen name of the mentioned user.
+     */
+    void addUserMention(String screenName){
+        if(userMentionCount == userMentions.length){
+            userMentions = Arrays.copyOf(userMentions, userMentionCount * 2);
+        }
+        userMentions[userMentionCount++] = screenName;
+    }
+}
@@ -0,0 +1,107 @@
+package com.twitterStatReporter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TweetHandoff is the bounded transport raw messages cross between the threads of the pipeline, such as from the
+ * TweetSource to the workers of the EventTimeWindows stage. Each handoff has a single producer that adds messages
+ * with publish, which applies the overload policy once the handoff is full, and consumers that
+ * take messages one at a time with poll or in batches with drain. Every message the policy drops is counted so the
+ * totals can be written in the reports.
+ */
+public interface TweetHandoff {
+
+    // The number of messages consumers drain from a handoff at a time.
+    int BATCH_SIZE = 256;
+
+    /**
+     * The policies used when a message is published to a full handoff, selected with the OverloadPolicy field of the
+     * config file.
+     * BLOCK - Wait for space, slowing down the producer. Nothing is dropped unless the producer is interrupted.
+     * DROP_NEWEST - Drop the message being published.
+     * DROP_OLDEST - Drop the oldest waiting message to make space for the new one.
+     * SAMPLE - Start dropping messages at random once the handoff is half full, the chance of keeping a message falls
+     *          from 1 at half full to 0 when full, so the handoff sheds load gradually rather than all at once.
+     */
+    enum Policy { BLOCK, DROP_NEWEST, DROP_OLDEST, SAMPLE }
+
+    /**
+     * The available transports, selected with the Handoff field of the config file.
+     * RING - A preallocated lock free ring buffer (RingBufferHandoff).
+     * QUEUE - A lock based ArrayBlockingQueue (BoundedTweetQueue), kept as a fallback.
+     */
+    enum Transport {
+        RING, QUEUE;
+
+        /**
+         * create builds a new handoff of this type.
+         * @param capacity - The maximum number of messages held in the handoff.
+         * @param policy - The policy used when a message is published to a full handoff.
+         * @param waitStrategy - How the ring buffer waits for messages, unused by the queue.
+         * @return a new handoff.
+         */
+        TweetHandoff create(int capacity, Policy policy, RingBufferHandoff.WaitStrategy waitStrategy){
+            return this == QUEUE ? new BoundedTweetQueue(capacity, policy)
+                    : new RingBufferHandoff(capacity, policy, waitStrategy);
+        }
+    }
+
+    /**
+     * publish adds a message to the handoff, applying the overload policy if it is full. Only one thread may publish
+     * to a handoff.
+     * @param message - The raw message to add.
+     */
+    void publish(String message);
+
+    /**
+     * poll takes the oldest message, waiting up to the timeout for one to arrive.
+     * @param timeout - How long to wait for a message.
+     * @param unit - The unit of the timeout.
+     * @return the message, or null if none arrived before the timeout.
+     * @throws InterruptedException - thrown if the consumer is interrupted while waiting.
+     */
+    String poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * drain takes as many waiting messages as fit in the batch without waiting.
+     * @param batch - The array the messages are copied into, from index 0.
+     * @return the number of messages taken, 0 if the handoff was empty.
+     */
+    int drain(String[] batch);
+
+    /**
+     * peek returns the oldest message without taking it.
+     * @return the oldest message, or null if the handoff is empty.
+     */
+    String peek();
+
+    /**
+     * isEmpty checks if there are no waiting messages.
+     * @return true if the handoff is empty.
+     */
+    boolean isEmpty();
+
+    /**
+     * size returns the number of waiting messages.
+     * @return the number of messages in the handoff.
+     */
+    int size();
+
+    /**
+     * dropped returns the number of messages dropped by the overload policy since the handoff was created.
+     * @return the number of dropped messages.
+     */
+    long dropped();
+
+    /**
+     * policy returns the overload policy of the handoff.
+     * @return the policy.
+     */
+    Policy policy();
+
+    /**
+     * capacity returns the maximum number of messages held in the handoff.
+     * @return the capacity.
+     */
+    int capacity();
+}
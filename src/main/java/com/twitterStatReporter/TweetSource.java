@@ -0,0 +1,17 @@
+package com.twitterStatReporter;
+
+/**
+ * TweetSource is used to abstract where the raw tweets that feed the reports come from. A tweet source is run on its
+ * own thread by the gatheringThread and publishes tweets in their raw json form to a bounded TweetHandoff that the
+ * workers of the EventTimeWindows stage consume from. The source should keep producing tweets until it is
+ * interrupted or it runs out of tweets to produce. The live twitter sample stream (gatherRawSampleStream) and the
+ * recorded capture replay (ReplayTweetSource) are the current implementations.
+ */
+public interface TweetSource extends Runnable {
+
+    /**
+     * rawTweets returns the handoff this source publishes the raw json tweets to.
+     * @return the handoff holding the raw tweets produced by this source.
+     */
+    TweetHandoff rawTweets();
+}
@@ -18,6 +18,9 @@ public class UserInputAndValidation {
     // Int to hold the interval time, in seconds, for the program.
     int intervalRunTime;
 
+    // Flag used to indicate the program runs until it is stopped, there is no total runtime in this mode.
+    boolean continuous;
+
     // Create a Hash Map to store the keys
     HashMap<String, String> authTokenMap;
 
@@ -60,6 +63,16 @@ public class UserInputAndValidation {
         }
     }
 
+    /**
+     * Used to run the program until it is stopped instead of for a total run time, any interval run time greater
+     * than zero is then valid.
+     */
+    public void setContinuous(){
+        this.continuous = true;
+        this.totalRunTime = 0;
+        System.out.println("Running continuously until stopped");
+    }
+
     /**
      * Used to set and check that the interval run time given is an integer and its value is not greater then the total
      * runtime previously set.
@@ -79,7 +92,7 @@ public class UserInputAndValidation {
         }while (intervalRunTime <= 0);
 
         // Validate that the number given was less than the total run time.
-        if(intervalRunTime > totalRunTime){
+        if(!continuous && intervalRunTime > totalRunTime){
             do{
                 System.out.print("Please enter an interval time less than or equal to your current total run time: "
                         + totalRunTime);
@@ -95,7 +108,7 @@ public class UserInputAndValidation {
      * @param intervalRunTime - time in seconds the user would like each interval to last.
      */
     public void validateIntervalRunTime(int intervalRunTime){
-        if(intervalRunTime > totalRunTime || intervalRunTime <= 0){
+        if((!continuous && intervalRunTime > totalRunTime) || intervalRunTime <= 0){
             setIntervalRunTime();
         }else{
             this.intervalRunTime = intervalRunTime;
@@ -222,7 +235,7 @@ public class UserInputAndValidation {
                 System.out.println("1 - To have the report(s) print to the terminal.\n");
                 System.out.println("2 - To have the report(s) written to a file(s).\n");
                 writeFlag = inputScanner.nextInt();
-            }while(writeFlag > totalRunTime);
+            }while(writeFlag > 2 || writeFlag <= 0);
         }
     }
 
@@ -0,0 +1,33 @@
+package com.twitterStatReporter;
+
+/**
+ * WarningHandler handles the stall warnings sent when the client is falling behind in reading the stream. Each
+ * warning holds how full the servers queue for the connection is, the handler keeps the highest value seen.
+ */
+public class WarningHandler extends MessageHandler {
+
+    // The highest percent_full reported by the stall warnings, -1 until a warning is seen.
+    long highestPercentFull = -1;
+
+    public WarningHandler(){
+        super(MessageType.WARNING);
+    }
+
+    @Override
+    void handle(String rawJSON) {
+        super.handle(rawJSON);
+        highestPercentFull = Math.max(highestPercentFull, MessageClassifier.longField(rawJSON, "percent_full"));
+    }
+
+    @Override
+    void merge(MessageHandler other) {
+        super.merge(other);
+        highestPercentFull = Math.max(highestPercentFull, ((WarningHandler) other).highestPercentFull);
+    }
+
+    @Override
+    void reset() {
+        super.reset();
+        highestPercentFull = -1;
+    }
+}
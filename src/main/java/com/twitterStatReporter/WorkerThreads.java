@@ -0,0 +1,74 @@
+package com.twitterStatReporter;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WorkerThreads creates the executors the interval and report work runs on. The threads are named after the work they
+ * run so they can be told apart in a thread dump. When virtual threads are turned on in the config file, and the
+ * running JVM supports them, each task gets its own virtual thread instead, so a long run never pins more than a few
+ * platform threads no matter how much work overlaps.
+ */
+final class WorkerThreads {
+
+    // Set once the missing virtual thread support has been reported, so it is only reported once.
+    private static volatile boolean reportedUnsupported;
+
+    private WorkerThreads(){
+    }
+
+    /**
+     * newPool creates an executor for a number of tasks that may all block at the same time.
+     * @param name - The name given to the threads of the executor.
+     * @param threads - The most threads the executor runs at once, 0 for as many as there are tasks. Ignored for
+     *                virtual threads.
+     * @param virtualThreads - Flag to run each task on its own virtual thread, if the JVM supports them.
+     * @return the executor.
+     */
+    static ExecutorService newPool(String name, int threads, boolean virtualThreads){
+
+        if(virtualThreads){
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+            if(virtual != null){
+                return virtual;
+            }
+        }
+
+        ThreadFactory factory = namedThreads(name);
+        return threads > 0 ? Executors.newFixedThreadPool(threads, factory) : Executors.newCachedThreadPool(factory);
+    }
+
+    /**
+     * namedThreads creates a thread factory that numbers the threads it creates after the given name.
+     * @param name - The name given to the threads.
+     * @return the thread factory.
+     */
+    static ThreadFactory namedThreads(String name){
+
+        AtomicInteger created = new AtomicInteger();
+        return task -> new Thread(task, name + "-" + created.incrementAndGet());
+    }
+
+    /**
+     * newVirtualThreadPerTaskExecutor looks up Executors.newVirtualThreadPerTaskExecutor, which only exists from
+     * Java 21, so the project can still be built for and run on Java 11.
+     * @return the executor, or null if the JVM doesn't support virtual threads.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor(){
+
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            if(!reportedUnsupported){
+                reportedUnsupported = true;
+                System.out.println("Virtual threads are not supported by Java " + Runtime.version().feature()
+                        + ", using platform threads instead");
+            }
+            return null;
+        }
+    }
+}
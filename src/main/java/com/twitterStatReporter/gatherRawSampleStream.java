@@ -3,42 +3,77 @@ package com.twitterStatReporter;
 import twitter4j.RawStreamListener;
 import twitter4j.TwitterStream;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * GatherRawSampleStream is used to gather tweets in their json form from a twitterStream object. It adds these
- * raw tweets to a blocking queue that is passed to each intervalThread. Once the gathering stream thread is interrupted
- * it closes and shuts down the stream, this occurs after totalRunTime.
+ * raw tweets to a bounded TweetHandoff that the workers of the EventTimeWindows stage take them from, the handoff's
+ * overload policy decides what happens when the workers fall behind. Once the gathering stream thread is interrupted
+ * it closes and shuts down the stream, this occurs after totalRunTime. This is the live implementation of TweetSource.
+ * When a CaptureLog is given every message is also offered to it, so the stream is recorded to disk without the
+ * stream's thread waiting on the disk.
  */
-public class gatherRawSampleStream implements Runnable{
+public class gatherRawSampleStream implements TweetSource{
+
+    // The number of messages read from the stream.
+    private static final LongAdder RECEIVED = Metrics.counter("twitterstats_messages_received_total",
+            "Messages read from the tweet source.");
 
     // Blocking queue to hold the raw tweets.
-    BlockingQueue<String> rawTweets;
+    TweetHandoff rawTweets;
 
     // Auth stream to gather a sample of tweets from.
     private final TwitterStream authStream;
 
+    // The most time, in seconds, to wait for the capture to write the messages waiting in its backlog.
+    private static final int CAPTURE_CLOSE_TIMEOUT = 10;
+
+    // The capture the raw messages are recorded to, null when the stream isn't captured.
+    private final CaptureLog capture;
+
     // Stream listener to listen to the sample stream.
     private final RawStreamListener streamListener;
 
+    // The flight recorder event of the batch of messages being published, only used by the stream's thread.
+    private PipelineEvents.StreamIngest ingest = new PipelineEvents.StreamIngest();
+
+    /**
+     *
+     * @param authenticatedStream - TwitterStream object that has been created using the users credentials.
+     * @param rawTweets - The handoff the raw tweets are published to.
+     */
+    public gatherRawSampleStream(TwitterStream authenticatedStream, TweetHandoff rawTweets){
+        this(authenticatedStream, rawTweets, null);
+    }
+
     /**
      *
      * @param authenticatedStream - TwitterStream object that has been created using the users credentials.
+     * @param rawTweets - The handoff the raw tweets are published to.
+     * @param capture - The capture the raw messages are recorded to, or null to not record them.
      */
-    public gatherRawSampleStream(TwitterStream authenticatedStream){
+    gatherRawSampleStream(TwitterStream authenticatedStream, TweetHandoff rawTweets, CaptureLog capture){
 
         // Set the authStream
         this.authStream = authenticatedStream;
 
-        // Create the blocking queue for the raw tweets.
-        this.rawTweets = new LinkedBlockingQueue<>();
+        // Set the blocking queue for the raw tweets.
+        this.rawTweets = rawTweets;
+
+        // Set the capture.
+        this.capture = capture;
 
         // Create a stream listner and update the onMessage method to add the tweets to the rawTweets queue.
         this.streamListener = new RawStreamListener() {
             @Override
             public void onMessage(String rawJSON) {
-                rawTweets.add(rawJSON);
+                RECEIVED.increment();
+                if(capture != null){
+                    capture.offer(rawJSON);
+                }
+                rawTweets.publish(rawJSON);
+                ingest = ingest.published(rawTweets);
             }
 
             @Override
@@ -48,6 +83,11 @@ public class gatherRawSampleStream implements Runnable{
         };
     }
 
+    @Override
+    public TweetHandoff rawTweets() {
+        return rawTweets;
+    }
+
     @Override
     public void run() {
 
@@ -69,6 +109,15 @@ public class gatherRawSampleStream implements Runnable{
 
             // Shutdown the auth stream.
             authStream.shutdown();
+
+            // Write the rest of the capture.
+            if(capture != null){
+                try{
+                    capture.close(CAPTURE_CLOSE_TIMEOUT, TimeUnit.SECONDS);
+                }catch (InterruptedException interrupted){
+                    Thread.currentThread().interrupt();
+                }
+            }
         }
     }
 }